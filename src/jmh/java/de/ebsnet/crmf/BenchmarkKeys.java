@@ -0,0 +1,204 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Optional;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMEncryptor;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.openssl.jcajce.JcaPKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
+import org.bouncycastle.openssl.jcajce.JcePEMEncryptorBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Key material for the benchmarks. Everything is generated on the fly, files are written to a temp
+ * directory that is removed by {@link #delete}.
+ */
+/* default */ final class BenchmarkKeys {
+  /* default */ static final char[] PASSWORD = "benchmark".toCharArray();
+
+  /* default */ static final CSRMetadata METADATA =
+      new CSRMetadata(
+          "benchmark",
+          "9900000000000",
+          URI.create("https://as4.example.com/msh"),
+          "pki@example.com",
+          "SM-PKI-DE",
+          "DE",
+          Optional.empty(),
+          Optional.of("Berlin"),
+          Optional.empty(),
+          Optional.empty());
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private final String curve;
+  private final KeyPair keyPair;
+  private final X509Certificate certificate;
+  private Path directory;
+
+  /* default */ BenchmarkKeys(final String curve)
+      throws GeneralSecurityException, IOException, OperatorCreationException {
+    this.curve = curve;
+    this.keyPair = generateKeyPair(curve);
+    this.certificate = selfSigned(this.keyPair);
+  }
+
+  /* default */ static KeyPair generateKeyPair(final String curve)
+      throws GeneralSecurityException {
+    final var gen = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+    gen.initialize(new ECGenParameterSpec(curve));
+    return gen.generateKeyPair();
+  }
+
+  private static X509Certificate selfSigned(final KeyPair keyPair)
+      throws GeneralSecurityException, OperatorCreationException {
+    return selfSigned(keyPair, builder(keyPair));
+  }
+
+  private static JcaX509v3CertificateBuilder builder(final KeyPair keyPair) {
+    final var subject = METADATA.toSubject();
+    final var now = Instant.now();
+    return new JcaX509v3CertificateBuilder(
+        subject,
+        BigInteger.ONE,
+        Date.from(now),
+        Date.from(now.plus(Duration.ofDays(1))),
+        subject,
+        keyPair.getPublic());
+  }
+
+  private static X509Certificate selfSigned(
+      final KeyPair keyPair, final JcaX509v3CertificateBuilder builder)
+      throws GeneralSecurityException, OperatorCreationException {
+    final var holder =
+        builder.build(
+            new JcaContentSignerBuilder("SHA256withECDSA")
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(keyPair.getPrivate()));
+    return new JcaX509CertificateConverter()
+        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+        .getCertificate(holder);
+  }
+
+  /**
+   * A self-signed certificate with the key usage extensions of a {@link KeyType}.
+   *
+   * @param type
+   * @return
+   */
+  /* default */ X509Certificate certificate(final KeyType type)
+      throws GeneralSecurityException, OperatorCreationException, CertIOException {
+    final var builder = builder(this.keyPair);
+    builder.addExtension(Extension.keyUsage, true, type.keyUsage());
+    if (type.extendedKeyUsage().isPresent()) {
+      builder.addExtension(Extension.extendedKeyUsage, false, type.extendedKeyUsage().get());
+    }
+    return selfSigned(this.keyPair, builder);
+  }
+
+  /* default */ KeyPair keyPair() {
+    return this.keyPair;
+  }
+
+  /* default */ X509Certificate certificate() {
+    return this.certificate;
+  }
+
+  /* default */ Path plainKey() throws IOException {
+    return write("plain.key", this.keyPair, null);
+  }
+
+  /* default */ Path pemEncryptedKey() throws IOException {
+    return write(
+        "pem_encrypted.key",
+        this.keyPair,
+        new JcePEMEncryptorBuilder("AES-256-CBC")
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .build(PASSWORD));
+  }
+
+  /* default */ Path pkcs8EncryptedKey() throws IOException, OperatorCreationException {
+    final var encryptor =
+        new JceOpenSSLPKCS8EncryptorBuilder(JcaPKCS8Generator.AES_256_CBC)
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .setPassword(PASSWORD)
+            .build();
+    return write(
+        "pkcs8_encrypted.key", new JcaPKCS8Generator(this.keyPair.getPrivate(), encryptor), null);
+  }
+
+  /* default */ Path certificateFile() throws IOException {
+    return write("cert.pem", this.certificate, null);
+  }
+
+  /**
+   * A PEM bundle that contains the certificate {@code count} times.
+   *
+   * @param count
+   * @return
+   * @throws IOException
+   */
+  /* default */ Path bundleFile(final int count) throws IOException {
+    final var path = directory().resolve("bundle_" + count + ".pem");
+    try (var writer = new JcaPEMWriter(Files.newBufferedWriter(path))) {
+      for (int idx = 0; idx < count; idx++) {
+        writer.writeObject(this.certificate);
+      }
+    }
+    return path;
+  }
+
+  private Path write(final String name, final Object object, final PEMEncryptor encryptor)
+      throws IOException {
+    final var path = directory().resolve(name);
+    try (var writer = new JcaPEMWriter(Files.newBufferedWriter(path))) {
+      writer.writeObject(object, encryptor);
+    }
+    return path;
+  }
+
+  private Path directory() throws IOException {
+    if (this.directory == null) {
+      this.directory = Files.createTempDirectory("csr_benchmark_" + this.curve);
+    }
+    return this.directory;
+  }
+
+  /**
+   * Delete the files written so far, they contain unencrypted private keys.
+   *
+   * @throws IOException
+   */
+  /* default */ void delete() throws IOException {
+    if (this.directory != null) {
+      try (var files = Files.walk(this.directory)) {
+        for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(file);
+        }
+      }
+      this.directory = null;
+    }
+  }
+}
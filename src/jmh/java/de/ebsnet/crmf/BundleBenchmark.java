@@ -0,0 +1,67 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.CertificateBundle;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for opening large PEM certificate bundles. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleBenchmark {
+  @Param({"1000", "10000"})
+  private int certificates;
+
+  private BenchmarkKeys keys;
+  private Path bundle;
+
+  @Setup
+  public void setup() throws GeneralSecurityException, IOException, OperatorCreationException {
+    this.keys = new BenchmarkKeys("brainpoolP256r1");
+    this.bundle = this.keys.bundleFile(this.certificates);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.keys.delete();
+  }
+
+  /** Locate the entries without decoding them. */
+  @Benchmark
+  public int openBundle() throws IOException, GeneralSecurityException {
+    return CertificateBundle.open(this.bundle).size();
+  }
+
+  /** Decode a single entry, e.g. to look up one certificate of the bundle. */
+  @Benchmark
+  public X509Certificate openBundleAndDecodeLast() throws IOException, GeneralSecurityException {
+    final var opened = CertificateBundle.open(this.bundle);
+    return opened.get(opened.size() - 1);
+  }
+
+  /** Decode every entry. */
+  @Benchmark
+  public X509Certificate[] loadCertificateChain() throws IOException, GeneralSecurityException {
+    return X509Util.loadCertificateChain(this.bundle);
+  }
+}
@@ -0,0 +1,82 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.Triple;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.crmf.CRMFException;
+import org.bouncycastle.cert.crmf.CertificateReqMessages;
+import org.bouncycastle.cert.crmf.CertificateRequestMessage;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for the CSR and renewal signing paths. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSRBenchmark {
+  @Param({"brainpoolP256r1", "brainpoolP384r1", "brainpoolP512r1"})
+  private String curve;
+
+  private KeyPair keyPair;
+  private Triple<KeyPair> triple;
+  private X509Certificate[] chain;
+  private X500Name subject;
+  private CertificateReqMessages messages;
+
+  @Setup
+  public void setup()
+      throws GeneralSecurityException, IOException, OperatorCreationException, CRMFException {
+    final var keys = new BenchmarkKeys(this.curve);
+    this.keyPair = keys.keyPair();
+    this.triple =
+        new Triple<>(
+            BenchmarkKeys.generateKeyPair(this.curve),
+            BenchmarkKeys.generateKeyPair(this.curve),
+            BenchmarkKeys.generateKeyPair(this.curve));
+    this.chain = new X509Certificate[] {keys.certificate()};
+    this.subject = BenchmarkKeys.METADATA.toSubject();
+    this.messages = Initial.generateCertReqMessages(this.triple, BenchmarkKeys.METADATA);
+  }
+
+  @Benchmark
+  public CertificateRequestMessage certReqMsg()
+      throws IOException, OperatorCreationException, CRMFException {
+    return CSRUtil.certReqMsg(
+        this.keyPair,
+        KeyType.TLS,
+        this.subject,
+        BenchmarkKeys.METADATA.uri(),
+        BenchmarkKeys.METADATA.email());
+  }
+
+  @Benchmark
+  public ContentInfo generateCSR() throws IOException, OperatorCreationException, CRMFException {
+    return Initial.generateCSR(this.triple, BenchmarkKeys.METADATA);
+  }
+
+  @Benchmark
+  public CMSSignedData outerSignature()
+      throws IOException, GeneralSecurityException, OperatorCreationException, CMSException {
+    return RenewalUtil.outerSignature(this.keyPair.getPrivate(), this.chain, this.messages);
+  }
+}
@@ -0,0 +1,88 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.PKCS12Builder;
+import de.ebsnet.crmf.util.PKCS12Profile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for storing and loading PKCS#12 keystores per {@link PKCS12Profile}. {@code PROVIDER}
+ * is the baseline of {@link KeyStore#store} with the defaults of the BouncyCastle provider, {@code
+ * FAST} uses {@link PKCS12Profile#PBES2_AES256} with a single iteration to show the cost of the
+ * KDF.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyStoreBenchmark {
+  private static final String PROVIDER = "PROVIDER";
+  private static final String FAST = "FAST";
+
+  @Param({PROVIDER, "PBES2_AES256", FAST})
+  private String profile;
+
+  @Param({"1", "100"})
+  private int entries;
+
+  private KeyStore keyStore;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws GeneralSecurityException, IOException, OperatorCreationException {
+    final var keys = new BenchmarkKeys("brainpoolP256r1");
+    this.keyStore = KeyStore.getInstance("PKCS12", BouncyCastleProvider.PROVIDER_NAME);
+    this.keyStore.load(null, BenchmarkKeys.PASSWORD);
+    for (int idx = 0; idx < this.entries; idx++) {
+      this.keyStore.setKeyEntry(
+          "entry" + idx,
+          keys.keyPair().getPrivate(),
+          BenchmarkKeys.PASSWORD,
+          new X509Certificate[] {keys.certificate()});
+    }
+    this.encoded = store();
+  }
+
+  @Benchmark
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public byte[] store() throws IOException, GeneralSecurityException {
+    if (PROVIDER.equals(this.profile)) {
+      final var out = new ByteArrayOutputStream();
+      this.keyStore.store(out, BenchmarkKeys.PASSWORD);
+      return out.toByteArray();
+    }
+    final var builder =
+        FAST.equals(this.profile)
+            ? new PKCS12Builder(BenchmarkKeys.PASSWORD, PKCS12Profile.PBES2_AES256, 1)
+            : new PKCS12Builder(BenchmarkKeys.PASSWORD, PKCS12Profile.valueOf(this.profile));
+    builder.addAll(this.keyStore, BenchmarkKeys.PASSWORD);
+    return builder.build();
+  }
+
+  @Benchmark
+  public KeyStore load() throws IOException, GeneralSecurityException {
+    final var loaded = KeyStore.getInstance("PKCS12", BouncyCastleProvider.PROVIDER_NAME);
+    loaded.load(new ByteArrayInputStream(this.encoded), BenchmarkKeys.PASSWORD);
+    return loaded;
+  }
+}
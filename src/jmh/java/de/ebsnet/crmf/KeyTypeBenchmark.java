@@ -0,0 +1,50 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for classifying received certificates by their {@link KeyType}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyTypeBenchmark {
+  @Param({"SIG", "ENC", "TLS"})
+  private KeyType type;
+
+  private byte[] certificate;
+
+  @Setup
+  public void setup() throws GeneralSecurityException, IOException, OperatorCreationException {
+    this.certificate = new BenchmarkKeys("brainpoolP256r1").certificate(this.type).getEncoded();
+  }
+
+  /** Decode only the ASN.1 structure and read the key usage extensions once. */
+  @Benchmark
+  public Optional<KeyType> fromDer() {
+    return KeyType.fromCertificate(this.certificate);
+  }
+
+  /** Parse an {@link java.security.cert.X509Certificate} and classify it, as before. */
+  @Benchmark
+  public Optional<KeyType> fromParsedCertificate() throws GeneralSecurityException, IOException {
+    return KeyType.fromCertificate(X509Util.loadCertificateChain(this.certificate)[0]);
+  }
+}
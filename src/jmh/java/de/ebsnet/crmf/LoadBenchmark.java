@@ -0,0 +1,96 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.KeyPairCache;
+import de.ebsnet.crmf.util.KeyPairUtil;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks for loading keys and certificates from PEM files. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+  private static final Optional<char[]> NO_PASS = Optional.empty();
+  private static final Optional<char[]> PASS = Optional.of(BenchmarkKeys.PASSWORD);
+
+  @Param({"brainpoolP256r1", "brainpoolP384r1", "brainpoolP512r1"})
+  private String curve;
+
+  private Path plainKey;
+  private Path pemEncryptedKey;
+  private Path pkcs8EncryptedKey;
+  private Path certificate;
+  private KeyPairCache cache;
+  private BenchmarkKeys keys;
+
+  @Setup
+  public void setup() throws GeneralSecurityException, IOException, OperatorCreationException {
+    this.keys = new BenchmarkKeys(this.curve);
+    this.plainKey = this.keys.plainKey();
+    this.pemEncryptedKey = this.keys.pemEncryptedKey();
+    this.pkcs8EncryptedKey = this.keys.pkcs8EncryptedKey();
+    this.certificate = this.keys.certificateFile();
+    this.cache = new KeyPairCache(1, Duration.ofHours(1));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    this.cache.close();
+    this.keys.delete();
+  }
+
+  @Benchmark
+  public KeyPair loadPlainKeyPair() throws IOException {
+    return KeyPairUtil.loadKeyPair(this.plainKey, NO_PASS);
+  }
+
+  @Benchmark
+  public KeyPair loadPEMEncryptedKeyPair() throws IOException {
+    return KeyPairUtil.loadKeyPair(this.pemEncryptedKey, PASS);
+  }
+
+  @Benchmark
+  public KeyPair loadPKCS8EncryptedKeyPair() throws IOException {
+    return KeyPairUtil.loadKeyPair(this.pkcs8EncryptedKey, PASS);
+  }
+
+  @Benchmark
+  public KeyPair loadCachedPKCS8EncryptedKeyPair() throws IOException {
+    return this.cache.load(this.pkcs8EncryptedKey, PASS);
+  }
+
+  @Benchmark
+  public X509Certificate[] loadCertificateChain() throws IOException, GeneralSecurityException {
+    return X509Util.loadCertificateChain(this.certificate);
+  }
+
+  @Benchmark
+  public KeyStore pemToPKCS12() throws IOException, GeneralSecurityException {
+    return PEM2PKCS12.pemToPKCS12(
+        this.plainKey, NO_PASS, this.certificate, "benchmark", BenchmarkKeys.PASSWORD);
+  }
+}
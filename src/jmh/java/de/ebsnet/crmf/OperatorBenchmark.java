@@ -0,0 +1,70 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.OperatorCache;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509ExtensionUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The operator factories a CSR and a renewal need, created per request as before {@link
+ * OperatorCache} and taken from the cache. Compare the {@code gc.alloc.rate.norm} of both
+ * benchmarks for the allocations per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperatorBenchmark {
+  private static final String SIGNATURE_ALGORITHM = "SHA384withECDSA";
+
+  private PrivateKey privateKey;
+
+  @Setup
+  public void setup() throws GeneralSecurityException {
+    this.privateKey = BenchmarkKeys.generateKeyPair("brainpoolP256r1").getPrivate();
+  }
+
+  @Benchmark
+  public void perRequest(final Blackhole blackhole) throws OperatorCreationException {
+    blackhole.consume(
+        new X509ExtensionUtils(
+            new BcDigestCalculatorProvider()
+                .get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1))));
+    blackhole.consume(
+        new JcaContentSignerBuilder(SIGNATURE_ALGORITHM)
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .build(this.privateKey));
+    blackhole.consume(
+        new JcaDigestCalculatorProviderBuilder()
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .build());
+  }
+
+  @Benchmark
+  public void cached(final Blackhole blackhole) throws OperatorCreationException {
+    blackhole.consume(OperatorCache.extensionUtils());
+    blackhole.consume(OperatorCache.contentSigner(SIGNATURE_ALGORITHM, this.privateKey));
+    blackhole.consume(OperatorCache.digestCalculatorProvider());
+  }
+}
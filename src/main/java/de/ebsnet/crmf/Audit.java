@@ -0,0 +1,138 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import de.ebsnet.crmf.util.CertificateChainBuilder;
+import de.ebsnet.crmf.util.SignatureCache;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Subcommand to validate a large number of issued certificates. Each certificate is validated
+ * against the SM-PKI trust chain, including the signature of every link, the validity periods, the
+ * CA constraints and the key usage required for its {@link KeyType}. Certificates are validated in
+ * parallel and the chains and signatures of the CA certificates are only verified once for the
+ * whole run.
+ */
+@Command(
+    name = "audit",
+    mixinStandardHelpOptions = true,
+    description = "Validate issued certificates against the SM-PKI trust chain")
+public final class Audit implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(Audit.class.getSimpleName());
+
+  @Option(
+      names = {"--certificates"},
+      required = true,
+      description =
+          "Certificate file or directory of certificate files to validate. Directories are searched recursively for .pem, .cer, .crt and .der files. Can be repeated")
+  private Path[] certificates;
+
+  @Option(
+      names = {"--trust-chain"},
+      required = true,
+      description = "Path to root and SubCA certificates, in any order. Can be repeated")
+  private Path[] trustChain;
+
+  @Option(
+      names = {"--parallelism"},
+      description =
+          "Number of certificates validated in parallel. Defaults to the number of CPU cores")
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  @Spec private CommandSpec spec;
+
+  @Override
+  public Integer call() throws IOException, CertificateException, InterruptedException {
+    if (this.parallelism < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--parallelism must be at least 1");
+    }
+    final var signatures = new SignatureCache();
+    final var builder = CertificateChainBuilder.load(signatures, this.trustChain);
+    final var failed = new AtomicInteger();
+    var total = 0L;
+    try (var pipeline = new CSRPipeline(this.parallelism);
+        var files = files()) {
+      final var inFlight = pipeline.inFlight();
+      for (final var iter = files.iterator(); iter.hasNext(); ) {
+        final var file = iter.next();
+        total++;
+        inFlight.supply(
+            () -> validate(builder, file),
+            (ignored, ex) -> {
+              if (ex != null) {
+                failed.incrementAndGet();
+                LOG.severe(() -> file + ": " + CSRPipeline.cause(ex).getMessage());
+              }
+            });
+      }
+      inFlight.await();
+    }
+    final var certs = total;
+    LOG.info(
+        () ->
+            (certs - failed.get())
+                + " of "
+                + certs
+                + " certificates are valid, "
+                + signatures.size()
+                + " verified signatures cached");
+    return failed.get() == 0 ? 0 : 1;
+  }
+
+  private Stream<Path> files() throws IOException {
+    Stream<Path> files = Stream.empty();
+    for (final var path : this.certificates) {
+      final var found =
+          Files.isDirectory(path)
+              ? Files.walk(path).filter(Files::isRegularFile).filter(Audit::isCertificate)
+              : Stream.of(path);
+      files = Stream.concat(files, found);
+    }
+    return files;
+  }
+
+  /* default */ static boolean isCertificate(final Path path) {
+    final var name = path.getFileName().toString();
+    return name.endsWith(".pem")
+        || name.endsWith(".cer")
+        || name.endsWith(".crt")
+        || name.endsWith(".der");
+  }
+
+  /**
+   * Validate the certificate in a file. Further certificates in the file are used as
+   * intermediates, the chain must still end in the trust chain.
+   */
+  private static X509Certificate[] validate(final CertificateChainBuilder builder, final Path file)
+      throws IOException, CertificateException, InvalidCertificateChain {
+    final var certs = X509Util.loadCertificateChain(file);
+    if (certs.length == 0) {
+      throw new CertificateException("file does not contain a certificate");
+    }
+    final var leaf = certs[0];
+    final var keyType =
+        KeyType.fromCertificate(leaf)
+            .orElseThrow(
+                () ->
+                    new InvalidCertificateChain(
+                        leaf.getSubjectX500Principal()
+                            + " does not have the key usage of an SM-PKI certificate"));
+    return builder.build(
+        Optional.of(keyType.keyUsage()), leaf, Arrays.copyOfRange(certs, 1, certs.length));
+  }
+}
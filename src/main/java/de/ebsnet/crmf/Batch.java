@@ -0,0 +1,321 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import de.ebsnet.crmf.data.ManifestRow;
+import de.ebsnet.crmf.data.Triple;
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import de.ebsnet.crmf.exception.InvalidManifest;
+import de.ebsnet.crmf.util.KeyPairCache;
+import de.ebsnet.crmf.util.KeyPairPool;
+import de.ebsnet.crmf.util.ManifestReader;
+import de.ebsnet.crmf.util.TrustChain;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Subcommand to generate initial and renewal CSRs for many market participants in a single run.
+ * Every row of the manifest results in one CSR, so the JVM and security provider startup is only
+ * paid once. Rows that reference a previous key and certificate are renewals, signed with the
+ * previous key after its certificate was validated against {@code --trust-chain}. Rows are
+ * streamed from the manifest and processed in parallel on a {@link CSRPipeline}. Each CSR is
+ * written as soon as it is generated, so memory usage does not grow with the manifest.
+ */
+@Command(
+    name = "batch",
+    mixinStandardHelpOptions = true,
+    description =
+        "Generate initial CSRs, or renewals for rows with a previous key and certificate, for every entry of a CSV manifest")
+public final class Batch implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(Batch.class.getSimpleName());
+
+  /* default */ static final String COL_NAME = "name";
+  /* default */ static final String COL_GLN = "gln";
+  /* default */ static final String COL_URI = "uri";
+  /* default */ static final String COL_EMAIL = "email";
+  /* default */ static final String COL_PKI = "pki";
+  /* default */ static final String COL_COUNTRY = "country";
+  /* default */ static final String COL_STATE = "state";
+  /* default */ static final String COL_CITY = "city";
+  /* default */ static final String COL_POSTAL_CODE = "postal-code";
+  /* default */ static final String COL_STREET = "street";
+  /* default */ static final String COL_ENCRYPTION = "encryption";
+  /* default */ static final String COL_SIGNATURE = "signature";
+  /* default */ static final String COL_TLS = "tls";
+  /* default */ static final String COL_OUT = "out";
+  /* default */ static final String COL_PREVIOUS_KEYPAIR = "previous-keypair";
+  /* default */ static final String COL_PREVIOUS_CERTIFICATE = "previous-certificate";
+
+  private static final String DEFAULT_PKI = "SM-PKI-DE";
+  private static final String DEFAULT_COUNTRY = "DE";
+  private static final String CSR_SUFFIX = ".csr";
+
+  @Option(
+      names = {"--manifest"},
+      required = true,
+      description =
+          "Path to the CSV manifest. The first line names the columns: name, gln, uri, email, encryption, signature, tls (required for initial CSRs) and pki, country, state, city, postal-code, street, out (optional). Rows with previous-keypair and previous-certificate generate a renewal signed with the previous key, whose certificate is validated against --trust-chain. The metadata of a renewal is taken from the previous certificate, so name, gln, uri and email may be empty. Relative paths are resolved against the manifest directory")
+  private Path manifest;
+
+  @Option(
+      names = {"--out"},
+      required = true,
+      description =
+          "Directory to write the CSRs to. Without an `out` column, the CSR is written to `<gln>.csr`")
+  private Path out;
+
+  @Option(
+      names = {"--key-pass"},
+      description = "Password for all keys in the manifest")
+  private Optional<char[]> keyPass = Optional.empty();
+
+  @Option(
+      names = {"--trust-chain"},
+      description =
+          "Path to the trust chain of the sub CA used for all renewals. The chain is only loaded and validated once")
+  private Path[] trustChain = new Path[0];
+
+  @Option(
+      names = {"--parallelism"},
+      description = "Number of CSRs to generate in parallel. Defaults to the number of CPU cores")
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--max-in-flight"},
+      description =
+          "Maximum number of rows that are processed at the same time. Defaults to 4 times `--parallelism`")
+  private Optional<Integer> maxInFlight = Optional.empty();
+
+  @Option(
+      names = {"--generate-keys"},
+      description =
+          "Generate a new key triple for rows without key columns. The keys are encrypted with `--key-pass` and written to `<gln>_enc.pem`, `<gln>_sig.pem` and `<gln>_tls.pem` in the output directory")
+  private boolean generateKeys;
+
+  @Mixin private KeyGenOptions keyGenOptions;
+
+  @Mixin private KeyCacheOptions keyCacheOptions;
+
+  @Spec private CommandSpec spec;
+
+  @Override
+  public Integer call()
+      throws IOException,
+          InvalidManifest,
+          GeneralSecurityException,
+          InvalidCertificateChain,
+          InterruptedException {
+    if (this.generateKeys && this.keyPass.isEmpty()) {
+      throw new ParameterException(
+          this.spec.commandLine(), "--generate-keys requires --key-pass to encrypt the new keys");
+    }
+    if (this.parallelism < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--parallelism must be at least 1");
+    }
+    if (this.maxInFlight.isPresent() && this.maxInFlight.get() < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--max-in-flight must be at least 1");
+    }
+    Files.createDirectories(this.out);
+    final var trust = TrustChain.load(this.trustChain);
+    final var failed = new AtomicInteger();
+    var total = 0L;
+    try (var reader = new ManifestReader(this.manifest);
+        var pipeline = new CSRPipeline(this.parallelism);
+        var keyPool = this.generateKeys ? this.keyGenOptions.pool(this.parallelism) : null;
+        var keys = this.keyCacheOptions.cache()) {
+      final var inFlight =
+          pipeline.inFlight(
+              this.maxInFlight.orElse(this.parallelism * CSRPipeline.IN_FLIGHT_PER_THREAD));
+      while (true) {
+        final Optional<ManifestRow> row;
+        try {
+          row = reader.next();
+        } catch (InvalidManifest ex) {
+          if (!reader.hasHeader()) {
+            throw ex;
+          }
+          total++;
+          failed.incrementAndGet();
+          LOG.severe(ex::getMessage);
+          continue;
+        }
+        if (row.isEmpty()) {
+          break;
+        }
+        total++;
+        // rows are only read as fast as they are processed, so memory usage stays flat
+        final var current = row.get();
+        inFlight.submit(
+            () ->
+                current.optional(COL_PREVIOUS_CERTIFICATE).isPresent()
+                    ? renew(pipeline, keyPool, keys, trust, current)
+                    : generate(pipeline, keyPool, keys, current),
+            reportFailure(current, failed));
+      }
+      inFlight.await();
+    }
+    final var rows = total;
+    LOG.info(() -> "generated " + (rows - failed.get()) + " of " + rows + " CSRs");
+    return failed.get() == 0 ? 0 : 1;
+  }
+
+  private CompletableFuture<Path> generate(
+      final CSRPipeline pipeline,
+      final KeyPairPool keyPool,
+      final KeyPairCache keys,
+      final ManifestRow row) {
+    final CSRMetadata metadata;
+    final Path target;
+    try {
+      metadata = metadata(row);
+      target = this.out.resolve(row.optional(COL_OUT).orElse(metadata.gln() + CSR_SUFFIX));
+    } catch (InvalidManifest ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+    return pipeline
+        .supply(() -> keyPairs(row, keyPool, keys, metadata.gln()))
+        .thenCompose(keyPairs -> pipeline.generateCertReqMessages(keyPairs, metadata))
+        .thenCompose(messages -> write(pipeline, target, CSRUtil.asContentInfo(messages)));
+  }
+
+  /**
+   * Generate a renewal, signed with the previous key. The trust chain is shared between all rows,
+   * only the previous certificate of the row is loaded and validated against it.
+   */
+  private CompletableFuture<Path> renew(
+      final CSRPipeline pipeline,
+      final KeyPairPool keyPool,
+      final KeyPairCache keys,
+      final TrustChain trust,
+      final ManifestRow row) {
+    return pipeline
+        .supply(() -> previous(row, keys, trust))
+        .thenCompose(previous -> renew(pipeline, keyPool, keys, trust, row, previous));
+  }
+
+  private CompletableFuture<Path> renew(
+      final CSRPipeline pipeline,
+      final KeyPairPool keyPool,
+      final KeyPairCache keys,
+      final TrustChain trust,
+      final ManifestRow row,
+      final Previous previous) {
+    final var metadata = previous.metadata();
+    final var target = this.out.resolve(row.optional(COL_OUT).orElse(metadata.gln() + CSR_SUFFIX));
+    return pipeline
+        .supply(() -> keyPairs(row, keyPool, keys, metadata.gln()))
+        .thenCompose(
+            keyPairs -> {
+              Renew.checkNewTriple(previous.keyPair(), keyPairs);
+              return pipeline.generateCertReqMessages(keyPairs, metadata);
+            })
+        .thenCompose(
+            messages ->
+                pipeline.supply(
+                    () ->
+                        RenewalUtil.outerSignature(
+                            previous.keyPair().getPrivate(),
+                            previous.leafChain(),
+                            trust,
+                            messages)))
+        .thenCompose(signed -> write(pipeline, target, Renew.asContentInfo(signed)));
+  }
+
+  private Previous previous(final ManifestRow row, final KeyPairCache keys, final TrustChain trust)
+      throws InvalidManifest, IOException, GeneralSecurityException, InvalidCertificateChain {
+    final var leafChain =
+        trust.leafCertificates(
+            X509Util.loadCertificateChain(row.requiredPath(COL_PREVIOUS_CERTIFICATE)));
+    return new Previous(
+        keys.load(row.requiredPath(COL_PREVIOUS_KEYPAIR), this.keyPass),
+        leafChain,
+        CSRMetadata.fromCertificate(leafChain[0]));
+  }
+
+  private static CompletableFuture<Path> write(
+      final CSRPipeline pipeline, final Path target, final ContentInfo contentInfo) {
+    return pipeline.supply(
+        () -> Files.write(target, contentInfo.getEncoded(), StandardOpenOption.CREATE_NEW));
+  }
+
+  /**
+   * Load the key triple of a row. If key generation is enabled and the row does not reference any
+   * keys, a new triple is taken from {@code keyPool} and written next to the CSR instead.
+   */
+  private Triple<KeyPair> keyPairs(
+      final ManifestRow row,
+      final KeyPairPool keyPool,
+      final KeyPairCache keys,
+      final String gln)
+      throws InvalidManifest, IOException, InterruptedException, GeneralSecurityException {
+    if (keyPool != null
+        && row.optional(COL_ENCRYPTION).isEmpty()
+        && row.optional(COL_SIGNATURE).isEmpty()
+        && row.optional(COL_TLS).isEmpty()) {
+      final var triple = keyPool.takeTriple();
+      Keygen.writeTriple(this.out, gln, triple, this.keyPass.orElseThrow(), keyPool.random());
+      return triple;
+    }
+    return new Triple<>(
+        keys.load(row.requiredPath(COL_ENCRYPTION), this.keyPass),
+        keys.load(row.requiredPath(COL_SIGNATURE), this.keyPass),
+        keys.load(row.requiredPath(COL_TLS), this.keyPass));
+  }
+
+  private static BiConsumer<Path, Throwable> reportFailure(
+      final ManifestRow row, final AtomicInteger failed) {
+    return (written, ex) -> {
+      if (ex != null) {
+        failed.incrementAndGet();
+        LOG.severe(
+            () ->
+                "cannot generate CSR for line "
+                    + row.line()
+                    + ": "
+                    + CSRPipeline.cause(ex).getMessage());
+      }
+    };
+  }
+
+  /* default */ static CSRMetadata metadata(final ManifestRow row) throws InvalidManifest {
+    final URI uri;
+    try {
+      uri = URI.create(row.required(COL_URI));
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidManifest(row.manifest(), row.line(), "invalid uri: " + ex.getMessage());
+    }
+    return new CSRMetadata(
+        row.required(COL_NAME),
+        row.required(COL_GLN),
+        uri,
+        row.required(COL_EMAIL),
+        row.optional(COL_PKI).orElse(DEFAULT_PKI),
+        row.optional(COL_COUNTRY).orElse(DEFAULT_COUNTRY),
+        row.optional(COL_STATE),
+        row.optional(COL_CITY),
+        row.optional(COL_POSTAL_CODE),
+        row.optional(COL_STREET));
+  }
+
+  /** The key and certificates of the previous triple that sign a renewal. */
+  private record Previous(KeyPair keyPair, X509Certificate[] leafChain, CSRMetadata metadata) {}
+}
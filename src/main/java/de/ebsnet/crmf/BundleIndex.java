@@ -0,0 +1,436 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.CertificateBundle;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.security.auth.x500.X500Principal;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+
+/**
+ * Index over a {@link CertificateBundle} that maps subject DN, GLN, serial number,
+ * SubjectKeyIdentifier and {@link KeyType} to the position of the entries in the file. Lookups
+ * only decode the matching certificates.
+ *
+ * <p>The index is stored next to the bundle as {@code <bundle>.idx}, a tab separated text file
+ * that records the size and modification time of the bundle it was built for. It is rebuilt when
+ * the bundle changes. Opened indexes are kept for the lifetime of the process, so repeated lookups,
+ * e.g. in {@link Serve}, do not read the index again.
+ *
+ * <p>A bundle rewritten with the same size within the granularity of the modification time is not
+ * detected by these checks. Every decoded certificate is therefore compared with the serial number
+ * and subject of its entry, and the bundle is indexed again if they differ.
+ */
+public final class BundleIndex {
+  private static final Logger LOG = Logger.getLogger(BundleIndex.class.getSimpleName());
+
+  private static final String SUFFIX = ".idx";
+  private static final String HEADER = "# CSRGenerator bundle index v1";
+  private static final String SEPARATOR = "\t";
+  private static final String NONE = "-";
+  private static final String PEM = "pem";
+  private static final String DER = "der";
+  private static final int HEADER_FIELDS = 4;
+  private static final int ENTRY_FIELDS = 9;
+  private static final int HEX = 16;
+
+  private static final Map<Path, BundleIndex> OPENED = new ConcurrentHashMap<>();
+
+  private final Path path;
+  private final long size;
+  private final FileTime lastModified;
+  private final CertificateBundle bundle;
+  private final List<Entry> entries;
+  private final Map<String, List<Entry>> bySubject;
+  private final Map<String, List<Entry>> byGln;
+  private final Map<BigInteger, List<Entry>> bySerial;
+  private final Map<String, List<Entry>> bySki;
+
+  private BundleIndex(
+      final Path path,
+      final long size,
+      final FileTime lastModified,
+      final CertificateBundle bundle,
+      final List<Entry> entries) {
+    this.path = path;
+    this.size = size;
+    this.lastModified = lastModified;
+    this.bundle = bundle;
+    this.entries = entries;
+    this.bySubject = group(entries, Entry::subject);
+    this.byGln = group(entries, Entry::gln);
+    this.bySerial = group(entries, Entry::serial);
+    this.bySki = group(entries, Entry::ski);
+  }
+
+  private static <K> Map<K, List<Entry>> group(
+      final List<Entry> entries, final Function<Entry, K> key) {
+    return entries.stream()
+        .filter(entry -> key.apply(entry) != null)
+        .collect(Collectors.groupingBy(key));
+  }
+
+  /**
+   * Open the index of a bundle. The sidecar index is read if it matches the bundle, otherwise the
+   * bundle is scanned and the index is written.
+   *
+   * @param bundle PEM or DER certificate bundle
+   * @return
+   * @throws IOException
+   * @throws CertificateException if the bundle cannot be parsed
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public static BundleIndex open(final Path bundle) throws IOException, CertificateException {
+    final var path = bundle.toAbsolutePath().normalize();
+    final var size = Files.size(path);
+    final var lastModified = Files.getLastModifiedTime(path);
+    final var opened = OPENED.get(path);
+    if (opened != null && opened.matches(size, lastModified)) {
+      return opened;
+    }
+    var index = read(path, size, lastModified);
+    if (index.isEmpty()) {
+      index = Optional.of(build(path, size, lastModified));
+    }
+    OPENED.put(path, index.get());
+    return index.get();
+  }
+
+  /**
+   * Path of the sidecar index of a bundle.
+   *
+   * @param bundle
+   * @return
+   */
+  public static Path sidecar(final Path bundle) {
+    return bundle.resolveSibling(bundle.getFileName() + SUFFIX);
+  }
+
+  private boolean matches(final long size, final FileTime lastModified) {
+    return this.size == size && this.lastModified.equals(lastModified);
+  }
+
+  /** Read the sidecar index, if it exists and was built for the current bundle. */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static Optional<BundleIndex> read(
+      final Path bundle, final long size, final FileTime lastModified) throws IOException {
+    final var sidecar = sidecar(bundle);
+    if (!Files.isRegularFile(sidecar)) {
+      return Optional.empty();
+    }
+    try (var lines = Files.lines(sidecar, StandardCharsets.UTF_8)) {
+      final var iter = lines.iterator();
+      final var header = iter.hasNext() ? iter.next().split(SEPARATOR, -1) : new String[0];
+      if (header.length != HEADER_FIELDS
+          || !HEADER.equals(header[0])
+          || Long.parseLong(header[2]) != size
+          || Long.parseLong(header[3]) != lastModified.toMillis()) {
+        LOG.info(() -> "index " + sidecar + " is outdated");
+        return Optional.empty();
+      }
+      final var entries = new ArrayList<Entry>();
+      while (iter.hasNext()) {
+        final var entry = Entry.parse(entries.size(), iter.next());
+        if (!entry.isWithin(size)) {
+          LOG.warning(() -> "ignoring index " + sidecar + " with an entry outside of the bundle");
+          return Optional.empty();
+        }
+        entries.add(entry);
+      }
+      final var offsets = entries.stream().mapToInt(Entry::offset).toArray();
+      final var lengths = entries.stream().mapToInt(Entry::length).toArray();
+      return Optional.of(
+          new BundleIndex(
+              bundle,
+              size,
+              lastModified,
+              CertificateBundle.open(bundle, PEM.equals(header[1]), offsets, lengths),
+              List.copyOf(entries)));
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      // NumberFormatException is an IllegalArgumentException, as is an unknown key type
+      LOG.warning(() -> "ignoring invalid index " + sidecar + ": " + ex);
+      return Optional.empty();
+    }
+  }
+
+  /** Scan the bundle, decode every certificate once and write the sidecar index. */
+  private static BundleIndex build(final Path bundle, final long size, final FileTime lastModified)
+      throws IOException, CertificateException {
+    final var scanned = CertificateBundle.open(bundle);
+    final var entries = new ArrayList<Entry>(scanned.size());
+    for (int idx = 0; idx < scanned.size(); idx++) {
+      entries.add(Entry.of(idx, scanned.offset(idx), scanned.length(idx), scanned.get(idx)));
+    }
+    final var lines = new ArrayList<String>(entries.size() + 1);
+    lines.add(
+        String.join(
+            SEPARATOR,
+            HEADER,
+            scanned.isPem() ? PEM : DER,
+            String.valueOf(size),
+            String.valueOf(lastModified.toMillis())));
+    entries.forEach(entry -> lines.add(entry.format()));
+    final var sidecar = sidecar(bundle);
+    try {
+      // readers never see a partially written index
+      final var tmp =
+          Files.createTempFile(sidecar.getParent(), sidecar.getFileName().toString(), null);
+      Files.write(tmp, lines, StandardCharsets.UTF_8);
+      Files.move(
+          tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      LOG.warning(() -> "cannot write index " + sidecar + ": " + ex.getMessage());
+    }
+    // drop the certificates decoded while building, lookups only decode what they need
+    return new BundleIndex(
+        bundle,
+        size,
+        lastModified,
+        CertificateBundle.open(
+            bundle,
+            scanned.isPem(),
+            entries.stream().mapToInt(Entry::offset).toArray(),
+            entries.stream().mapToInt(Entry::length).toArray()),
+        List.copyOf(entries));
+  }
+
+  /**
+   * Number of certificates in the bundle.
+   *
+   * @return
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Certificates with a subject DN.
+   *
+   * @param subject
+   * @return
+   * @throws IOException if the bundle has to be indexed again
+   * @throws CertificateException
+   */
+  public List<X509Certificate> bySubject(final X500Principal subject)
+      throws IOException, CertificateException {
+    final var name = subject.getName();
+    return lookup(index -> index.bySubject.get(name));
+  }
+
+  /**
+   * Certificates of a market participant.
+   *
+   * @param gln the GLN, i.e. the OU of the subject
+   * @return
+   * @throws IOException if the bundle has to be indexed again
+   * @throws CertificateException
+   */
+  public List<X509Certificate> byGln(final String gln) throws IOException, CertificateException {
+    return lookup(index -> index.byGln.get(gln));
+  }
+
+  /**
+   * Certificates with a serial number. Serial numbers are only unique per issuer.
+   *
+   * @param serial
+   * @return
+   * @throws IOException if the bundle has to be indexed again
+   * @throws CertificateException
+   */
+  public List<X509Certificate> bySerial(final BigInteger serial)
+      throws IOException, CertificateException {
+    return lookup(index -> index.bySerial.get(serial));
+  }
+
+  /**
+   * Certificates with a SubjectKeyIdentifier.
+   *
+   * @param ski the key identifier as hex
+   * @return
+   * @throws IOException if the bundle has to be indexed again
+   * @throws CertificateException
+   */
+  public List<X509Certificate> bySki(final String ski) throws IOException, CertificateException {
+    final var keyId = ski.toLowerCase(Locale.ROOT);
+    return lookup(index -> index.bySki.get(keyId));
+  }
+
+  /**
+   * The most recently issued certificate of a market participant and key type that is valid at
+   * {@code date}.
+   *
+   * @param gln the GLN, i.e. the OU of the subject
+   * @param type
+   * @param date
+   * @return
+   * @throws IOException if the bundle has to be indexed again
+   * @throws CertificateException
+   */
+  public Optional<X509Certificate> current(final String gln, final KeyType type, final Instant date)
+      throws IOException, CertificateException {
+    final var millis = date.toEpochMilli();
+    return lookup(
+            index ->
+                index.byGln.getOrDefault(gln, List.of()).stream()
+                    .filter(entry -> entry.type() == type)
+                    .filter(entry -> entry.notBefore() <= millis && millis <= entry.notAfter())
+                    .max(Comparator.comparingLong(Entry::notBefore))
+                    .stream()
+                    .toList())
+        .stream()
+        .findFirst();
+  }
+
+  /**
+   * Decode the entries selected by {@code query}. If a certificate does not match its entry, the
+   * bundle changed without a change of its size and modification time. It is then indexed again
+   * and the query is repeated on the new index.
+   */
+  private List<X509Certificate> lookup(final Function<BundleIndex, List<Entry>> query)
+      throws IOException, CertificateException {
+    final var certs = decode(query.apply(this));
+    if (certs.isPresent()) {
+      return certs.get();
+    }
+    LOG.warning(() -> "index of " + this.path + " does not match the bundle, rebuilding it");
+    final var rebuilt =
+        build(this.path, Files.size(this.path), Files.getLastModifiedTime(this.path));
+    OPENED.put(this.path, rebuilt);
+    return rebuilt
+        .decode(query.apply(rebuilt))
+        .orElseThrow(() -> new CertificateException(this.path + " changed while it was indexed"));
+  }
+
+  /** The certificates of the entries, empty if one of them does not match the bundle. */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private Optional<List<X509Certificate>> decode(final List<Entry> matches) {
+    if (matches == null) {
+      return Optional.of(List.of());
+    }
+    final var certs = new ArrayList<X509Certificate>(matches.size());
+    for (final var entry : matches) {
+      final X509Certificate cert;
+      try {
+        cert = this.bundle.get(entry.ordinal());
+      } catch (CertificateException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+        // stale offsets point into other entries or past the end of a shorter bundle
+        return Optional.empty();
+      }
+      if (!entry.matches(cert)) {
+        return Optional.empty();
+      }
+      certs.add(cert);
+    }
+    return Optional.of(certs);
+  }
+
+  /** The indexed attributes of a certificate. Missing values are {@code null}. */
+  private record Entry(
+      int ordinal,
+      int offset,
+      int length,
+      BigInteger serial,
+      String gln,
+      KeyType type,
+      String ski,
+      long notBefore,
+      long notAfter,
+      String subject) {
+    private static Entry of(
+        final int ordinal, final int offset, final int length, final X509Certificate cert) {
+      return new Entry(
+          ordinal,
+          offset,
+          length,
+          cert.getSerialNumber(),
+          gln(cert),
+          keyType(cert),
+          X509Util.subjectKeyIdentifier(cert),
+          cert.getNotBefore().getTime(),
+          cert.getNotAfter().getTime(),
+          cert.getSubjectX500Principal().getName());
+    }
+
+    /** The GLN of a market participant is the OU of its certificates. */
+    private static String gln(final X509Certificate cert) {
+      final var ous =
+          X500Name.getInstance(cert.getSubjectX500Principal().getEncoded()).getRDNs(BCStyle.OU);
+      return ous.length == 0 ? null : IETFUtils.valueToString(ous[0].getFirst().getValue());
+    }
+
+    /** CA certificates and certificates without key usage do not have a {@link KeyType}. */
+    private static KeyType keyType(final X509Certificate cert) {
+      return cert.getBasicConstraints() >= 0 || cert.getKeyUsage() == null
+          ? null
+          : KeyType.fromCertificate(cert).orElse(null);
+    }
+
+    private static Entry parse(final int ordinal, final String line) {
+      final var fields = line.split(SEPARATOR, ENTRY_FIELDS);
+      if (fields.length != ENTRY_FIELDS) {
+        throw new NumberFormatException("expected " + ENTRY_FIELDS + " fields: " + line);
+      }
+      return new Entry(
+          ordinal,
+          Integer.parseInt(fields[0]),
+          Integer.parseInt(fields[1]),
+          new BigInteger(fields[2], HEX),
+          nullable(fields[3]),
+          NONE.equals(fields[4]) ? null : KeyType.valueOf(fields[4]),
+          nullable(fields[5]),
+          Long.parseLong(fields[6]),
+          Long.parseLong(fields[7]),
+          fields[8]);
+    }
+
+    private String format() {
+      return String.join(
+          SEPARATOR,
+          String.valueOf(this.offset),
+          String.valueOf(this.length),
+          this.serial.toString(HEX),
+          this.gln == null ? NONE : this.gln,
+          this.type == null ? NONE : this.type.name(),
+          this.ski == null ? NONE : this.ski,
+          String.valueOf(this.notBefore),
+          String.valueOf(this.notAfter),
+          // last column, a DN may contain any character except line breaks
+          this.subject);
+    }
+
+    /** Whether the entry lies within a bundle of {@code size} bytes. */
+    private boolean isWithin(final long size) {
+      return this.offset >= 0 && this.length > 0 && (long) this.offset + this.length <= size;
+    }
+
+    /** Whether a decoded certificate is the one this entry was built from. */
+    private boolean matches(final X509Certificate cert) {
+      return this.serial.equals(cert.getSerialNumber())
+          && this.subject.equals(cert.getSubjectX500Principal().getName());
+    }
+
+    private static String nullable(final String field) {
+      return NONE.equals(field) ? null : field;
+    }
+  }
+}
@@ -14,15 +14,34 @@ import picocli.CommandLine.Command;
     versionProvider = VersionProvider.class,
     description = "Create SM PKI Compatible CSRs",
     subcommands = {
+      Audit.class,
+      Batch.class,
+      GetChain.class,
       Initial.class,
+      Inventory.class,
+      Keygen.class,
+      Lookup.class,
       PEM2PKCS12.class,
       Renew.class,
+      Revoke.class,
       SendRequest.class,
+      Serve.class,
+      ServiceStatus.class,
+      UpdateDeviceAdmin.class,
     })
 @SuppressWarnings("PMD.UseUtilityClass")
 public final class CSRGenerator {
   private static final AtomicBoolean IS_INIT = new AtomicBoolean(false);
 
+  /** Size of the keep-alive cache of {@link java.net.HttpURLConnection} per destination. */
+  /* default */ static final String MAX_CONNECTIONS = "http.maxConnections";
+
+  /**
+   * Default of {@link #MAX_CONNECTIONS}. The JDK keeps only 5 idle connections, which would close
+   * the connections of the remaining workers of a client after every request.
+   */
+  private static final String DEFAULT_MAX_CONNECTIONS = "32";
+
   static {
     init();
   }
@@ -47,6 +66,11 @@ public final class CSRGenerator {
           "jdk.tls.namedGroups",
           "brainpoolP256r1, brainpoolP384r1, brainpoolP512r1, brainpoolP256r1tls13, brainpoolP384r1tls13, brainpoolP512r1tls13");
 
+      // read once by the keep-alive cache, -Dhttp.maxConnections takes precedence
+      if (System.getProperty(MAX_CONNECTIONS) == null) {
+        System.setProperty(MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+      }
+
       Security.removeProvider(BouncyCastleProvider.PROVIDER_NAME);
       Security.insertProviderAt(new BouncyCastleProvider(), 1);
       Security.removeProvider(BouncyCastleJsseProvider.PROVIDER_NAME);
@@ -0,0 +1,200 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import de.ebsnet.crmf.data.Triple;
+import java.security.KeyPair;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.crmf.CertificateReqMessages;
+import org.bouncycastle.cert.crmf.CertificateRequestMessage;
+
+/**
+ * Generates CSRs on a {@link ForkJoinPool}. The proof-of-possession signatures of the three
+ * requests in a triple are created in parallel and reassembled in the same order as {@link
+ * Initial#generateCertReqMessages(Triple, CSRMetadata)} does, so the result does not depend on
+ * scheduling.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class CSRPipeline implements AutoCloseable {
+  /** Tasks kept in flight per thread by {@link #inFlight()}, so no thread idles between tasks. */
+  public static final int IN_FLIGHT_PER_THREAD = 4;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * @param parallelism number of threads, at least 1
+   */
+  public CSRPipeline(final int parallelism) {
+    this.pool =
+        new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+  }
+
+  /**
+   * Run an arbitrary task on the pipeline's pool. Checked exceptions are wrapped in a {@link
+   * CompletionException}.
+   *
+   * @param task
+   * @return
+   */
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  public <T> CompletableFuture<T> supply(final Callable<T> task) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return task.call();
+          } catch (RuntimeException ex) {
+            throw ex;
+          } catch (Exception ex) {
+            throw new CompletionException(ex);
+          }
+        },
+        this.pool);
+  }
+
+  /**
+   * Bound the tasks in flight to {@link #IN_FLIGHT_PER_THREAD} per thread of the pool.
+   *
+   * @return
+   */
+  public InFlight inFlight() {
+    return inFlight(this.pool.getParallelism() * IN_FLIGHT_PER_THREAD);
+  }
+
+  /**
+   * Bound the tasks in flight, so callers that read their input lazily, e.g. manifest rows or
+   * files, only read as fast as the tasks are processed.
+   *
+   * @param limit maximum number of tasks in flight, at least 1
+   * @return
+   */
+  public InFlight inFlight(final int limit) {
+    return new InFlight(limit);
+  }
+
+  /**
+   * Parallel version of {@link Initial#generateCertReqMessages(Triple, CSRMetadata)}.
+   *
+   * @param keyPairs
+   * @param metadata
+   * @return
+   */
+  public CompletableFuture<CertificateReqMessages> generateCertReqMessages(
+      final Triple<KeyPair> keyPairs, final CSRMetadata metadata) {
+    final var subject = metadata.toSubject();
+
+    final var sigCrmf = certReqMsg(keyPairs.signature(), KeyType.SIG, subject, metadata);
+    final var encCrmf = certReqMsg(keyPairs.encryption(), KeyType.ENC, subject, metadata);
+    final var tlsCrmf = certReqMsg(keyPairs.transport(), KeyType.TLS, subject, metadata);
+
+    return CompletableFuture.allOf(sigCrmf, encCrmf, tlsCrmf)
+        .thenApply(
+            ignored ->
+                CSRUtil.buildCertificateRequestMessages(
+                    sigCrmf.join(), encCrmf.join(), tlsCrmf.join()));
+  }
+
+  private CompletableFuture<CertificateRequestMessage> certReqMsg(
+      final KeyPair keyPair,
+      final KeyType type,
+      final X500Name subject,
+      final CSRMetadata metadata) {
+    return supply(
+        () -> CSRUtil.certReqMsg(keyPair, type, subject, metadata.uri(), metadata.email()));
+  }
+
+  /**
+   * Unwrap the exception that caused a {@link CompletableFuture} to fail.
+   *
+   * @param throwable
+   * @return
+   */
+  public static Throwable cause(final Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+  }
+
+  @Override
+  public void close() {
+    this.pool.shutdown();
+  }
+
+  /**
+   * Submits tasks to the pipeline while at most {@code limit} of them are in flight. Submitting
+   * blocks until a permit is free, {@link #await} blocks until every submitted task completed.
+   * Not thread safe, tasks are expected to be submitted by a single thread.
+   */
+  public final class InFlight {
+    private final int limit;
+    private final Semaphore permits;
+
+    private InFlight(final int limit) {
+      if (limit < 1) {
+        throw new IllegalArgumentException("at least one task must be allowed in flight");
+      }
+      this.limit = limit;
+      this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * Run a task on the pipeline's pool, see {@link CSRPipeline#supply}.
+     *
+     * @param task
+     * @param done called with the result or the failure of the task, before the next task can
+     *     take its permit
+     * @throws InterruptedException
+     */
+    public <T> void supply(
+        final Callable<T> task, final BiConsumer<? super T, ? super Throwable> done)
+        throws InterruptedException {
+      submit(() -> CSRPipeline.this.supply(task), done);
+    }
+
+    /**
+     * Start a task that composes several steps on the pipeline.
+     *
+     * @param task starts the task and returns its completion
+     * @param done called with the result or the failure of the task, before the next task can
+     *     take its permit
+     * @throws InterruptedException
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    public <T> void submit(
+        final Supplier<CompletableFuture<T>> task,
+        final BiConsumer<? super T, ? super Throwable> done)
+        throws InterruptedException {
+      this.permits.acquire();
+      final CompletableFuture<T> future;
+      try {
+        future = task.get();
+      } catch (RuntimeException ex) {
+        this.permits.release();
+        throw ex;
+      }
+      future.whenComplete(
+          (result, ex) -> {
+            try {
+              done.accept(result, ex);
+            } finally {
+              this.permits.release();
+            }
+          });
+    }
+
+    /**
+     * Wait for the remaining tasks.
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+      this.permits.acquire(this.limit);
+      this.permits.release(this.limit);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package de.ebsnet.crmf;
 
+import de.ebsnet.crmf.util.OperatorCache;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
 import java.math.BigInteger;
@@ -11,24 +12,18 @@ import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.asn1.crmf.AttributeTypeAndValue;
-import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.cert.CertIOException;
-import org.bouncycastle.cert.X509ExtensionUtils;
 import org.bouncycastle.cert.crmf.CRMFException;
 import org.bouncycastle.cert.crmf.CertificateReqMessages;
 import org.bouncycastle.cert.crmf.CertificateReqMessagesBuilder;
 import org.bouncycastle.cert.crmf.CertificateRequestMessage;
 import org.bouncycastle.cert.crmf.jcajce.JcaCertificateRequestMessageBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
 @SuppressFBWarnings("DMI_RANDOM_USED_ONLY_ONCE")
 public final class CSRUtil {
@@ -105,10 +100,7 @@ public final class CSRUtil {
     final var san = subjectAlternativeNames(type, uri, email);
 
     final var pubKeyInfo = SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded());
-    final var extUtil =
-        new X509ExtensionUtils(
-            new BcDigestCalculatorProvider()
-                .get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)));
+    final var extUtil = OperatorCache.extensionUtils();
 
     final var builder =
         new JcaCertificateRequestMessageBuilder(BigInteger.valueOf(CERT_REQ_ID.getAndIncrement()))
@@ -122,9 +114,7 @@ public final class CSRUtil {
             .addExtension(Extension.subjectAlternativeName, false, san)
             .setRegInfo(regInfo)
             .setProofOfPossessionSigningKeySigner(
-                new JcaContentSignerBuilder(SIGNATURE_ALGORITHM)
-                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                    .build(keyPair.getPrivate()));
+                OperatorCache.contentSigner(SIGNATURE_ALGORITHM, keyPair.getPrivate()));
 
     final var eku = type.extendedKeyUsage();
     if (eku.isPresent()) {
@@ -0,0 +1,225 @@
+package de.ebsnet.crmf;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import de.ebsnet.crmf.exception.RequestRejected;
+import jakarta.jws.WebService;
+import jakarta.xml.ws.Endpoint;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.CertificateRevocationRequestReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.CertificateRevocationRequestRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GeneralMessageReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GeneralMessageRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetCertificateChainReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetCertificateChainRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetServiceStatusReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetServiceStatusRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.RequestCertificateReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.RequestCertificateRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.SendCertificatesReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.SendCertificatesRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.UpdateDeviceAdminReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.UpdateDeviceAdminRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1_3.SmartMeterPortType;
+
+/**
+ * Embedded {@code SmartMeterService} endpoint that receives the certificates of requests sent with
+ * {@code callback_possible}. Requests are correlated by their {@code messageID}, so no thread has
+ * to wait while the SubCA issues the certificates.
+ *
+ * <p>Callers must authenticate with a TLS client certificate that is accepted by the trust manager
+ * of the TLS context, i.e. the certificate of the SubCA.
+ *
+ * <p>Only {@code SendCertificates} and {@code GeneralMessage} are meaningful for a requester, all
+ * other operations are answered with {@code failure_other_error}.
+ */
+@WebService(
+    serviceName = "SmartMeterService",
+    portName = "SmartMeterServicePort",
+    targetNamespace = "uri://bsi.bund.de/Smart-Meter-PKI-Protocol/1.3",
+    endpointInterface = "uri.bsi_bund_de.smart_meter_pki_protocol._1_3.SmartMeterPortType")
+@SuppressWarnings({"PMD.DoNotUseThreads", "PMD.ExcessiveImports"})
+public final class CallbackEndpoint implements SmartMeterPortType, AutoCloseable {
+  private static final Logger LOG = Logger.getLogger(CallbackEndpoint.class.getSimpleName());
+
+  private static final String OK_CERT_AVAILABLE = "ok_cert_available";
+  private static final String OK_RECEIVED_CORRECTLY = "ok_received_correctly";
+  private static final String FAILURE_MESSAGE_ID_UNKNOWN = "failure_messageID_unknown";
+  private static final String FAILURE_OTHER_ERROR = "failure_other_error";
+  private static final String NOT_SUPPORTED = "operation is not supported by the callback endpoint";
+
+  private final Map<String, CompletableFuture<List<byte[]>>> pending = new ConcurrentHashMap<>();
+  private HttpServer server;
+  private Endpoint endpoint;
+  private ExecutorService executor;
+
+  private CallbackEndpoint() {
+    // use start
+  }
+
+  /**
+   * Start listening for callbacks. The endpoint uses HTTPS with the TLS key of {@code sslContext}
+   * and requires a client certificate that is validated by its trust manager.
+   *
+   * @param address address to listen on
+   * @param path HTTP path of the endpoint, as registered at the SubCA
+   * @param sslContext TLS context of the requester, with the SM-PKI trust anchors
+   * @param threads number of threads handling incoming callbacks
+   * @return the running endpoint
+   * @throws IOException if the address cannot be bound
+   */
+  public static CallbackEndpoint start(
+      final InetSocketAddress address,
+      final String path,
+      final SSLContext sslContext,
+      final int threads)
+      throws IOException {
+    final var callbacks = new CallbackEndpoint();
+    final var https = HttpsServer.create(address, 0);
+    https.setHttpsConfigurator(
+        new HttpsConfigurator(sslContext) {
+          @Override
+          public void configure(final HttpsParameters params) {
+            // only the SubCA may deliver certificates
+            final var sslParams = getSSLContext().getDefaultSSLParameters();
+            sslParams.setNeedClientAuth(true);
+            params.setSSLParameters(sslParams);
+          }
+        });
+    callbacks.executor = Executors.newFixedThreadPool(threads);
+    https.setExecutor(callbacks.executor);
+    callbacks.server = https;
+    callbacks.endpoint = Endpoint.create(callbacks);
+    callbacks.endpoint.publish(https.createContext(path));
+    https.start();
+    LOG.info(() -> "waiting for callbacks on " + https.getAddress() + path);
+    return callbacks;
+  }
+
+  /**
+   * Register a request that is answered by a callback. The returned future completes with the
+   * certificates sent by the SubCA, fails with a {@link RequestRejected} if the SubCA reports an
+   * error or with a {@link java.util.concurrent.TimeoutException} after {@code timeout}.
+   *
+   * @param messageID the {@code messageID} of the request
+   * @param timeout maximum time to wait for the callback
+   * @return
+   */
+  public CompletableFuture<List<byte[]>> expect(final String messageID, final Duration timeout) {
+    final var result = new CompletableFuture<List<byte[]>>();
+    this.pending.put(messageID, result);
+    result
+        .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+        .whenComplete((certificates, ex) -> this.pending.remove(messageID));
+    return result;
+  }
+
+  @Override
+  public SendCertificatesRes sendCertificates(final SendCertificatesReq req) {
+    final var res = new SendCertificatesRes();
+    final var messageID = req.getMessageID();
+    final var result = messageID == null ? null : this.pending.remove(messageID);
+    // a request that timed out or was delivered before is unknown
+    final boolean delivered;
+    if (result == null) {
+      delivered = false;
+    } else if (OK_CERT_AVAILABLE.equals(req.getStatusInfo()) && req.getCertificateSeq() != null) {
+      delivered = result.complete(req.getCertificateSeq().getCertificate());
+    } else {
+      delivered =
+          result.completeExceptionally(
+              new RequestRejected(req.getStatusInfo(), req.getStatusInfoMessage()));
+    }
+    if (delivered) {
+      res.setReturnCode(OK_RECEIVED_CORRECTLY);
+    } else {
+      LOG.warning(() -> "received certificates for unknown message " + messageID);
+      res.setReturnCode(FAILURE_MESSAGE_ID_UNKNOWN);
+    }
+    return res;
+  }
+
+  @Override
+  public GeneralMessageRes generalMessage(final GeneralMessageReq req) {
+    LOG.info(
+        () ->
+            "message "
+                + req.getMessageID()
+                + " from "
+                + req.getCallerID()
+                + ": "
+                + req.getSubject()
+                + "\n"
+                + req.getBody());
+    final var res = new GeneralMessageRes();
+    res.setReturnCode(OK_RECEIVED_CORRECTLY);
+    return res;
+  }
+
+  @Override
+  public GetServiceStatusRes getServiceStatus(final GetServiceStatusReq req) {
+    final var res = new GetServiceStatusRes();
+    res.setReturnCode(OK_RECEIVED_CORRECTLY);
+    return res;
+  }
+
+  @Override
+  public RequestCertificateRes requestCertificate(final RequestCertificateReq req) {
+    final var res = new RequestCertificateRes();
+    res.setReturnCode(FAILURE_OTHER_ERROR);
+    res.setReturnCodeMessage(NOT_SUPPORTED);
+    return res;
+  }
+
+  @Override
+  public GetCertificateChainRes getCertificateChain(final GetCertificateChainReq req) {
+    final var res = new GetCertificateChainRes();
+    res.setReturnCode(FAILURE_OTHER_ERROR);
+    res.setReturnCodeMessage(NOT_SUPPORTED);
+    return res;
+  }
+
+  @Override
+  public CertificateRevocationRequestRes certificateRevocationRequest(
+      final CertificateRevocationRequestReq req) {
+    final var res = new CertificateRevocationRequestRes();
+    res.setReturnCode(FAILURE_OTHER_ERROR);
+    res.setReturnCodeMessage(NOT_SUPPORTED);
+    return res;
+  }
+
+  @Override
+  public UpdateDeviceAdminRes updateDeviceAdmin(final UpdateDeviceAdminReq req) {
+    final var res = new UpdateDeviceAdminRes();
+    res.setReturnCode(FAILURE_OTHER_ERROR);
+    res.setReturnCodeMessage(NOT_SUPPORTED);
+    return res;
+  }
+
+  /** Stop listening. Requests that are still waiting for a callback are failed. */
+  @Override
+  public void close() {
+    this.endpoint.stop();
+    this.server.stop(0);
+    this.executor.shutdown();
+    this.pending
+        .values()
+        .forEach(
+            result ->
+                result.completeExceptionally(
+                    new IllegalStateException("callback endpoint was stopped")));
+  }
+}
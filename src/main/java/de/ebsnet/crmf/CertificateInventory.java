@@ -0,0 +1,347 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Persistent index of the issued certificates in one or more directory trees. Every certificate
+ * file is recorded with its GLN, {@link KeyType}, serial number and expiry, so the renewals that
+ * are due can be {@link #schedule scheduled} without reading the certificates again.
+ *
+ * <p>The index is a tab separated text file that also records the size and modification time of
+ * every file. A {@link #scan} only parses new and changed files, unchanged files are taken from the
+ * index and files that no longer exist are removed. Files that do not contain an SM-PKI
+ * certificate, e.g. CA certificates, are recorded as well, so they are not parsed again either.
+ */
+public final class CertificateInventory {
+  private static final Logger LOG = Logger.getLogger(CertificateInventory.class.getSimpleName());
+
+  private static final String HEADER = "# CSRGenerator inventory v1";
+  private static final String SEPARATOR = "\t";
+  private static final String NONE = "-";
+  private static final int ENTRY_FIELDS = 7;
+  private static final int HEX = 16;
+
+  /** Key types in the order they are preferred for signing a renewal. */
+  private static final List<KeyType> SIGNING_PREFERENCE = List.of(KeyType.SIG, KeyType.TLS);
+
+  private final Path index;
+  private Map<String, Entry> entries;
+  private int parsed;
+  private int removed;
+
+  private CertificateInventory(final Path index, final Map<String, Entry> entries) {
+    this.index = index;
+    this.entries = entries;
+  }
+
+  /**
+   * Open an index. A missing or invalid index is treated as empty, so the next {@link #scan}
+   * parses every file.
+   *
+   * @param index
+   * @return
+   * @throws IOException
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public static CertificateInventory open(final Path index) throws IOException {
+    final var entries = new HashMap<String, Entry>();
+    if (!Files.isRegularFile(index)) {
+      return new CertificateInventory(index, entries);
+    }
+    try (var lines = Files.lines(index, StandardCharsets.UTF_8)) {
+      final var iter = lines.iterator();
+      if (!iter.hasNext() || !HEADER.equals(iter.next())) {
+        LOG.warning(() -> "ignoring index " + index + " of an unknown version");
+        return new CertificateInventory(index, new HashMap<>());
+      }
+      while (iter.hasNext()) {
+        final var entry = Entry.parse(iter.next());
+        entries.put(entry.path(), entry);
+      }
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+      // NumberFormatException is an IllegalArgumentException
+      LOG.warning(() -> "ignoring invalid index " + index + ": " + ex);
+      entries.clear();
+    }
+    return new CertificateInventory(index, entries);
+  }
+
+  /**
+   * Bring the index up to date with the certificate files in {@code roots}. Directories are
+   * searched recursively for .pem, .cer, .crt and .der files. Only files whose size or modification
+   * time changed are parsed, in parallel. The index covers exactly the scanned files afterwards.
+   *
+   * @param parallelism number of files parsed in parallel, at least 1
+   * @param roots certificate files or directories
+   * @return number of files that could not be read
+   * @throws IOException if a directory cannot be searched
+   * @throws InterruptedException
+   */
+  public int scan(final int parallelism, final Path... roots)
+      throws IOException, InterruptedException {
+    final var scanned = new ConcurrentHashMap<String, Entry>();
+    final var changed = new AtomicInteger();
+    final var failed = new AtomicInteger();
+    try (var pipeline = new CSRPipeline(parallelism)) {
+      final var inFlight = pipeline.inFlight();
+      for (final var file : files(roots)) {
+        final var path = file.path().toAbsolutePath().normalize().toString();
+        final var size = file.attributes().size();
+        final var modified = file.attributes().lastModifiedTime().toMillis();
+        final var known = this.entries.get(path);
+        if (known != null && known.size() == size && known.lastModified() == modified) {
+          scanned.put(path, known);
+          continue;
+        }
+        inFlight.supply(
+            () -> parse(path, size, modified),
+            (entry, ex) -> {
+              if (ex == null) {
+                scanned.put(path, entry);
+                changed.incrementAndGet();
+              } else {
+                failed.incrementAndGet();
+                LOG.severe(() -> path + ": " + CSRPipeline.cause(ex).getMessage());
+              }
+            });
+      }
+      inFlight.await();
+    }
+    this.removed =
+        (int) this.entries.keySet().stream().filter(known -> !scanned.containsKey(known)).count();
+    this.parsed = changed.get();
+    this.entries = new HashMap<>(scanned);
+    return failed.get();
+  }
+
+  private static List<Found> files(final Path... roots) throws IOException {
+    final var files = new ArrayList<Found>();
+    for (final var root : roots) {
+      // the visitor gets the attributes of every file without an additional stat
+      Files.walkFileTree(
+          root,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+              if (attrs.isRegularFile() && (file.equals(root) || Audit.isCertificate(file))) {
+                files.add(new Found(file, attrs));
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+    return files;
+  }
+
+  /** Parse the leaf certificate of a file. Further certificates in the file are ignored. */
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private static Entry parse(final String path, final long size, final long modified)
+      throws IOException, CertificateException {
+    final var certs = X509Util.loadCertificateChain(Path.of(path));
+    if (certs.length == 0) {
+      throw new CertificateException("file does not contain a certificate");
+    }
+    final var leaf = certs[0];
+    final var type =
+        leaf.getBasicConstraints() >= 0 ? Optional.<KeyType>empty() : KeyType.fromCertificate(leaf);
+    String gln = null;
+    if (type.isPresent()) {
+      try {
+        gln = CSRMetadata.fromCertificate(leaf).gln();
+      } catch (CertificateException | RuntimeException ex) {
+        // CSRMetadata throws unchecked exceptions for missing subject attributes and SANs
+        LOG.warning(() -> path + " is not an SM-PKI certificate: " + ex);
+      }
+    }
+    return new Entry(
+        path,
+        size,
+        modified,
+        gln,
+        gln == null ? null : type.get(),
+        leaf.getSerialNumber(),
+        leaf.getNotAfter().getTime());
+  }
+
+  /**
+   * Write the index. It is written to a temporary file first, so readers never see a partially
+   * written index.
+   *
+   * @throws IOException
+   */
+  public void write() throws IOException {
+    final var lines = new ArrayList<String>(this.entries.size() + 1);
+    lines.add(HEADER);
+    this.entries.values().stream()
+        .sorted(Comparator.comparing(Entry::path))
+        .forEach(entry -> lines.add(entry.format()));
+    final var absolute = this.index.toAbsolutePath();
+    final var tmp =
+        Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), null);
+    try {
+      Files.write(tmp, lines, StandardCharsets.UTF_8);
+      Files.move(
+          tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Number of indexed files.
+   *
+   * @return
+   */
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Number of files parsed by the last {@link #scan}.
+   *
+   * @return
+   */
+  public int parsed() {
+    return this.parsed;
+  }
+
+  /**
+   * Number of files removed from the index by the last {@link #scan}.
+   *
+   * @return
+   */
+  public int removed() {
+    return this.removed;
+  }
+
+  /**
+   * The renewals of all market participants, ordered by the date they are due. A market
+   * participant is due {@code renewBefore} before the first of its current certificates expires,
+   * where the current certificate of a key type is the one that expires last. Older certificates
+   * that were already replaced are not considered.
+   *
+   * @param renewBefore lead time before the expiry
+   * @return
+   */
+  public List<Renewal> schedule(final Duration renewBefore) {
+    final var current = new HashMap<String, Map<KeyType, Entry>>();
+    for (final var entry : this.entries.values()) {
+      if (entry.gln() != null) {
+        current
+            .computeIfAbsent(entry.gln(), gln -> new EnumMap<>(KeyType.class))
+            .merge(
+                entry.type(),
+                entry,
+                (left, right) -> left.notAfter() >= right.notAfter() ? left : right);
+      }
+    }
+    final var renewals = new ArrayList<Renewal>(current.size());
+    current.forEach(
+        (gln, types) -> {
+          final var expires =
+              Instant.ofEpochMilli(
+                  types.values().stream().mapToLong(Entry::notAfter).min().orElseThrow());
+          final var previous =
+              SIGNING_PREFERENCE.stream()
+                  .map(types::get)
+                  .filter(Objects::nonNull)
+                  .findFirst()
+                  .orElse(types.values().iterator().next());
+          renewals.add(
+              new Renewal(
+                  gln,
+                  expires.minus(renewBefore),
+                  expires,
+                  previous.type(),
+                  Path.of(previous.path()),
+                  previous.serial()));
+        });
+    renewals.sort(Comparator.comparing(Renewal::due).thenComparing(Renewal::gln));
+    return renewals;
+  }
+
+  /**
+   * The renewal of a market participant.
+   *
+   * @param gln
+   * @param due date the renewal should be requested
+   * @param expires date the first current certificate expires
+   * @param previousType key type of the certificate whose key signs the renewal
+   * @param previousCertificate file of that certificate
+   * @param previousSerial serial number of that certificate
+   */
+  public record Renewal(
+      String gln,
+      Instant due,
+      Instant expires,
+      KeyType previousType,
+      Path previousCertificate,
+      BigInteger previousSerial) {}
+
+  private record Found(Path path, BasicFileAttributes attributes) {}
+
+  /**
+   * An indexed file. GLN and key type are {@code null} if the file does not contain an SM-PKI
+   * certificate.
+   */
+  private record Entry(
+      String path,
+      long size,
+      long lastModified,
+      String gln,
+      KeyType type,
+      BigInteger serial,
+      long notAfter) {
+    private static Entry parse(final String line) {
+      final var fields = line.split(SEPARATOR, ENTRY_FIELDS);
+      if (fields.length != ENTRY_FIELDS) {
+        throw new IllegalArgumentException("expected " + ENTRY_FIELDS + " fields: " + line);
+      }
+      return new Entry(
+          fields[6],
+          Long.parseLong(fields[0]),
+          Long.parseLong(fields[1]),
+          NONE.equals(fields[2]) ? null : fields[2],
+          NONE.equals(fields[3]) ? null : KeyType.valueOf(fields[3]),
+          new BigInteger(fields[4], HEX),
+          Long.parseLong(fields[5]));
+    }
+
+    private String format() {
+      return String.join(
+          SEPARATOR,
+          String.valueOf(this.size),
+          String.valueOf(this.lastModified),
+          this.gln == null ? NONE : this.gln,
+          this.type == null ? NONE : this.type.name(),
+          this.serial.toString(HEX),
+          String.valueOf(this.notAfter),
+          // last column, a path may contain tabs
+          this.path);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.RetryPolicy;
+import de.ebsnet.crmf.util.SslContextCache;
+import de.ebsnet.crmf.util.TlsProfile;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import picocli.CommandLine.Option;
+
+/**
+ * Connection options for the SubCA's webservice, shared by all subcommands that use a {@link
+ * SmartMeterClient}. The client is only referenced from methods, so parsing the command line does
+ * not load the SOAP stack.
+ */
+public final class ClientOptions {
+  private static final Logger LOG = Logger.getLogger(ClientOptions.class.getSimpleName());
+
+  /** Upper bound for the delay between two retries. */
+  private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+  @Option(
+      names = {"--tls-key"},
+      required = true,
+      description = "Path to the currently valid TLS key")
+  private Path tlsKeyPath;
+
+  @Option(
+      names = {"--tls-key-pass"},
+      description = "Password for the TLS key")
+  private Optional<char[]> tlsKeyPass;
+
+  @Option(
+      names = {"--tls-cert"},
+      required = true,
+      description = "Path to the currently valid TLS cert")
+  private Path tlsCertPath;
+
+  @Option(
+      names = {"--trust-anchor"},
+      description =
+          "Path to an SM-PKI root or SubCA certificate the certificate of the webservice is validated against. Can be repeated. Without trust anchors, any server certificate is accepted")
+  private Path[] trustAnchors = new Path[0];
+
+  @Option(
+      names = {"--uri"},
+      required = true,
+      description = "Webservice URI")
+  private URI uri;
+
+  @Option(
+      names = {"--tls-profile"},
+      defaultValue = "TLS13",
+      description =
+          "TLS versions offered to the webservice: ${COMPLETION-CANDIDATES}. TLS13 falls back to TLS 1.2 if the webservice does not support TLS 1.3, TLS12 does not offer TLS 1.3. Defaults to ${DEFAULT-VALUE}")
+  private TlsProfile tlsProfile;
+
+  @Option(
+      names = {"--parallelism"},
+      description = "Maximum number of requests sent at the same time. Defaults to ${DEFAULT-VALUE}")
+  private int parallelism = 4;
+
+  @Option(
+      names = {"--connect-timeout"},
+      description = "Timeout in seconds to connect to the webservice. Defaults to ${DEFAULT-VALUE}")
+  private long connectTimeout = SmartMeterClient.DEFAULT_CONNECT_TIMEOUT.toSeconds();
+
+  @Option(
+      names = {"--request-timeout"},
+      description =
+          "Timeout in seconds to wait for the response to a request. Defaults to ${DEFAULT-VALUE}")
+  private long requestTimeout = SmartMeterClient.DEFAULT_REQUEST_TIMEOUT.toSeconds();
+
+  @Option(
+      names = {"--retries"},
+      description =
+          "Number of retries if the webservice cannot be reached. Status and chain requests are also retried after timeouts, SOAP faults are never retried. Defaults to ${DEFAULT-VALUE}")
+  private int retries;
+
+  @Option(
+      names = {"--retry-backoff"},
+      description =
+          "Delay in seconds before the first retry, doubled for every further retry. Defaults to ${DEFAULT-VALUE}")
+  private long retryBackoff = 1;
+
+  /**
+   * TLS context with the TLS key and certificate of the requester. The context is cached for the
+   * lifetime of the process, see {@link SslContextCache}.
+   *
+   * @return
+   */
+  public SSLContext sslContext() throws IOException, GeneralSecurityException {
+    return SslContextCache.get(
+        this.tlsKeyPath, this.tlsKeyPass, this.tlsCertPath, this.tlsProfile, this.trustAnchors);
+  }
+
+  /**
+   * Whether certificates of peers are validated against SM-PKI trust anchors.
+   *
+   * @return
+   */
+  public boolean hasTrustAnchors() {
+    return this.trustAnchors.length > 0;
+  }
+
+  /**
+   * Create a client with the configured address, timeouts and retries.
+   *
+   * @param sslContext see {@link #sslContext()}
+   * @return
+   */
+  public SmartMeterClient client(final SSLContext sslContext) {
+    return new SmartMeterClient(
+        this.uri,
+        sslContext,
+        this.parallelism,
+        Duration.ofSeconds(this.connectTimeout),
+        Duration.ofSeconds(this.requestTimeout),
+        new RetryPolicy(this.retries, Duration.ofSeconds(this.retryBackoff), MAX_BACKOFF));
+  }
+
+  public int parallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Wait for a batch of requests and log the failed ones.
+   *
+   * @param requests the pending requests, keyed by a description for the log
+   * @return {@code 0} if all requests succeeded, {@code 1} otherwise
+   */
+  public static int awaitAll(final Map<String, ? extends CompletableFuture<?>> requests) {
+    final var failed = new AtomicInteger();
+    requests.forEach(
+        (description, request) ->
+            request.whenComplete(
+                (ignored, ex) -> {
+                  if (ex != null) {
+                    failed.incrementAndGet();
+                    LOG.severe(() -> description + " failed: " + CSRPipeline.cause(ex));
+                  }
+                }));
+    CompletableFuture.allOf(requests.values().toArray(new CompletableFuture<?>[0]))
+        .exceptionally(ex -> null)
+        .join();
+    LOG.info(() -> (requests.size() - failed.get()) + " of " + requests.size() + " succeeded");
+    return failed.get() == 0 ? 0 : 1;
+  }
+}
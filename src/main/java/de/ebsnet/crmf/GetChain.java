@@ -0,0 +1,59 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+
+/** Subcommand to request the certificate chains of several certificates from the SubCA. */
+@Command(
+    name = "get-chain",
+    mixinStandardHelpOptions = true,
+    description = "Request certificate chains from the SubCA's webservice")
+public final class GetChain implements Callable<Integer> {
+  @Mixin private ClientOptions clientOptions;
+
+  @Option(
+      names = {"--cert-reference"},
+      required = true,
+      description = "Reference of the certificate as defined by the SubCA. Can be repeated")
+  private String[] certReferences;
+
+  @Option(
+      names = {"--out"},
+      required = true,
+      description =
+          "Directory to write the chains to. Each chain is written to `<cert-reference>.pem`")
+  private Path out;
+
+  @Override
+  public Integer call() throws IOException, GeneralSecurityException {
+    Files.createDirectories(this.out);
+    final var chains = new LinkedHashMap<String, CompletableFuture<Void>>();
+    try (var client = this.clientOptions.client(this.clientOptions.sslContext())) {
+      for (final var reference : this.certReferences) {
+        final var target = this.out.resolve(reference.replaceAll("[^A-Za-z0-9._-]", "_") + ".pem");
+        chains.put(
+            "chain of " + reference,
+            client
+                .getCertificateChain(reference)
+                .thenAccept(
+                    chain -> {
+                      try {
+                        SendRequest.writePem(target, chain, "CERTIFICATE");
+                      } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                      }
+                    }));
+      }
+      return ClientOptions.awaitAll(chains);
+    }
+  }
+}
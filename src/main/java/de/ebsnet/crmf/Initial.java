@@ -2,23 +2,17 @@ package de.ebsnet.crmf;
 
 import de.ebsnet.crmf.data.CSRMetadata;
 import de.ebsnet.crmf.data.Triple;
-import de.ebsnet.crmf.util.KeyPairUtil;
+import de.ebsnet.crmf.util.KeyPairCache;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
-import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.spec.ECGenParameterSpec;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.cert.crmf.CRMFException;
 import org.bouncycastle.cert.crmf.CertificateReqMessages;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -87,9 +81,9 @@ public final class Initial extends BaseCommand implements Callable<Void> {
   public Void call() throws CRMFException, IOException, OperatorCreationException {
     final var keyPairs =
         new Triple<>(
-            KeyPairUtil.loadKeyPair(this.encPath, this.passForType(KeyType.ENC)),
-            KeyPairUtil.loadKeyPair(this.sigPath, this.passForType(KeyType.SIG)),
-            KeyPairUtil.loadKeyPair(this.tlsPath, this.passForType(KeyType.TLS)));
+            KeyPairCache.shared().load(this.encPath, this.passForType(KeyType.ENC)),
+            KeyPairCache.shared().load(this.sigPath, this.passForType(KeyType.SIG)),
+            KeyPairCache.shared().load(this.tlsPath, this.passForType(KeyType.TLS)));
     final var metadata =
         new CSRMetadata(
             this.name,
@@ -133,22 +127,4 @@ public final class Initial extends BaseCommand implements Callable<Void> {
 
     return CSRUtil.buildCertificateRequestMessages(sigCrmf, encCrmf, tlsCrmf);
   }
-
-  /**
-   * Generate a brainpool keypair. This does not use FIPS certified CSPRNGs so these keys must not
-   * be used for production
-   *
-   * @return
-   * @throws NoSuchAlgorithmException
-   * @throws NoSuchProviderException
-   * @throws InvalidAlgorithmParameterException
-   * @deprecated Not FIPS compatible
-   */
-  @Deprecated
-  private static KeyPair generateKeyPair()
-      throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
-    final var gen = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
-    gen.initialize(new ECGenParameterSpec("brainpoolP256r1"));
-    return gen.generateKeyPair();
-  }
 }
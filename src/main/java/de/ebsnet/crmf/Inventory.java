@@ -0,0 +1,200 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Subcommand to keep an inventory of issued certificates and schedule their renewals. The {@link
+ * CertificateInventory} is updated incrementally, so a nightly rescan only parses new and changed
+ * files. The renewals that are due are emitted in the order they are due, split into batches that
+ * can be passed to {@link Batch}.
+ */
+@Command(
+    name = "inventory",
+    mixinStandardHelpOptions = true,
+    description = "Index issued certificates and schedule the renewals that are due")
+public final class Inventory implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(Inventory.class.getSimpleName());
+
+  private static final String SEPARATOR = "\t";
+  private static final String MANIFEST_HEADER =
+      String.join(
+          ",",
+          Batch.COL_NAME,
+          Batch.COL_GLN,
+          Batch.COL_URI,
+          Batch.COL_EMAIL,
+          Batch.COL_ENCRYPTION,
+          Batch.COL_SIGNATURE,
+          Batch.COL_TLS,
+          Batch.COL_PREVIOUS_KEYPAIR,
+          Batch.COL_PREVIOUS_CERTIFICATE);
+
+  @Spec private CommandSpec spec;
+
+  @Option(
+      names = {"--certificates"},
+      required = true,
+      description =
+          "Certificate file or directory of issued certificates. Directories are searched recursively for .pem, .cer, .crt and .der files. Can be repeated")
+  private Path[] certificates;
+
+  @Option(
+      names = {"--index"},
+      required = true,
+      description =
+          "Index of the inventory, created if it does not exist. Only files whose size or modification time changed since the last run are parsed")
+  private Path index;
+
+  @Option(
+      names = {"--renew-before"},
+      defaultValue = "30",
+      description =
+          "Days before the first certificate of a market participant expires that its renewal is due. Defaults to ${DEFAULT-VALUE}")
+  private long renewBefore;
+
+  @Option(
+      names = {"--horizon"},
+      defaultValue = "7",
+      description =
+          "Schedule the renewals that are due within this many days. Overdue renewals are always scheduled. Defaults to ${DEFAULT-VALUE}")
+  private long horizon;
+
+  @Option(
+      names = {"--batch-size"},
+      defaultValue = "100",
+      description = "Maximum number of renewals per batch. Defaults to ${DEFAULT-VALUE}")
+  private int batchSize;
+
+  @Option(
+      names = {"--out"},
+      description =
+          "Directory to write a `batch` manifest per batch to, named `renewals-<date>-<n>.csv`. Without it, the schedule is only printed")
+  private Path out;
+
+  @Option(
+      names = {"--keys"},
+      description =
+          "Directory with the current keys, named `<gln>_sig.pem`, `<gln>_tls.pem` and `<gln>_enc.pem`. Used for the previous-keypair column of the manifests, required with `--out`")
+  private Path keys;
+
+  @Option(
+      names = {"--parallelism"},
+      description =
+          "Number of certificates parsed in parallel. Defaults to the number of CPU cores")
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  @Override
+  public Integer call() throws IOException, InterruptedException {
+    requirePositive("--batch-size", this.batchSize);
+    requirePositive("--renew-before", this.renewBefore);
+    requirePositive("--horizon", this.horizon);
+    requirePositive("--parallelism", this.parallelism);
+    if (this.out != null && this.keys == null) {
+      throw new ParameterException(
+          this.spec.commandLine(), "--out requires --keys to sign the renewals with");
+    }
+    final var inventory = CertificateInventory.open(this.index);
+    final var failed = inventory.scan(this.parallelism, this.certificates);
+    inventory.write();
+    LOG.info(
+        () ->
+            "indexed "
+                + inventory.size()
+                + " files, parsed "
+                + inventory.parsed()
+                + ", removed "
+                + inventory.removed());
+
+    final var until = Instant.now().plus(Duration.ofDays(this.horizon));
+    final var due =
+        inventory.schedule(Duration.ofDays(this.renewBefore)).stream()
+            .filter(renewal -> !renewal.due().isAfter(until))
+            .toList();
+    final var batches = new ArrayList<List<CertificateInventory.Renewal>>();
+    for (int from = 0; from < due.size(); from += this.batchSize) {
+      batches.add(due.subList(from, Math.min(from + this.batchSize, due.size())));
+    }
+    final var output = this.spec.commandLine().getOut();
+    for (int idx = 0; idx < batches.size(); idx++) {
+      final var batch = idx + 1;
+      for (final var renewal : batches.get(idx)) {
+        output.println(
+            String.join(
+                SEPARATOR,
+                String.valueOf(batch),
+                renewal.due().toString(),
+                renewal.expires().toString(),
+                renewal.gln(),
+                renewal.previousType().name(),
+                renewal.previousCertificate().toString()));
+      }
+      if (this.out != null) {
+        final var manifest = writeManifest(batch, batches.get(idx));
+        LOG.info(() -> "wrote " + manifest);
+      }
+    }
+    output.flush();
+    LOG.info(() -> due.size() + " renewals in " + batches.size() + " batches");
+    return failed == 0 ? 0 : 1;
+  }
+
+  private void requirePositive(final String option, final long value) {
+    if (value < 1) {
+      throw new ParameterException(this.spec.commandLine(), option + " must be at least 1");
+    }
+  }
+
+  private Path writeManifest(final int batch, final List<CertificateInventory.Renewal> renewals)
+      throws IOException {
+    Files.createDirectories(this.out);
+    final var manifest =
+        this.out.resolve(
+            String.format(
+                Locale.ROOT, "renewals-%s-%03d.csv", LocalDate.now(ZoneOffset.UTC), batch));
+    final var lines = new ArrayList<String>(renewals.size() + 1);
+    lines.add(MANIFEST_HEADER);
+    for (final var renewal : renewals) {
+      final var previousKey =
+          this.keys.resolve(renewal.gln() + renewal.previousType().filename()).toAbsolutePath();
+      // the metadata and the new keys are taken from the previous certificate and --generate-keys
+      lines.add(
+          String.join(
+              ",",
+              "",
+              quote(renewal.gln()),
+              "",
+              "",
+              "",
+              "",
+              "",
+              quote(previousKey.toString()),
+              quote(renewal.previousCertificate().toString())));
+    }
+    Files.write(manifest, lines, StandardCharsets.UTF_8);
+    return manifest;
+  }
+
+  /** Quote a manifest field if it contains a separator or a quote. */
+  private static String quote(final String field) {
+    return field.contains(",") || field.contains("\"")
+        ? "\"" + field.replace("\"", "\"\"") + "\""
+        : field;
+  }
+}
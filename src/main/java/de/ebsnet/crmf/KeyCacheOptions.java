@@ -0,0 +1,36 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.KeyPairCache;
+import java.time.Duration;
+import picocli.CommandLine.Option;
+
+/** Options of the cache of decrypted keys, shared by {@link Batch} and {@link Serve}. */
+public final class KeyCacheOptions {
+  @Option(
+      names = {"--key-cache-size"},
+      defaultValue = "256",
+      description =
+          "Maximum number of decrypted keys kept in memory, so keys used for several requests are only decrypted once. 0 disables the cache. Defaults to ${DEFAULT-VALUE}")
+  private int size;
+
+  @Option(
+      names = {"--key-cache-ttl"},
+      defaultValue = "300",
+      description =
+          "Seconds after which an unused decrypted key is evicted and overwritten. Defaults to ${DEFAULT-VALUE}")
+  private long ttl;
+
+  /**
+   * Create a cache with the configured limits.
+   *
+   * @return
+   */
+  public KeyPairCache cache() {
+    return new KeyPairCache(this.size, Duration.ofSeconds(this.ttl));
+  }
+
+  /** Configure the process wide cache used by the subcommands executed by {@link Serve}. */
+  public void configureShared() {
+    KeyPairCache.configureShared(this.size, Duration.ofSeconds(this.ttl));
+  }
+}
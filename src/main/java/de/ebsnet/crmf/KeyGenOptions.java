@@ -0,0 +1,35 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.Drbg;
+import de.ebsnet.crmf.util.KeyPairPool;
+import java.security.GeneralSecurityException;
+import picocli.CommandLine.Option;
+
+/** Key generation options, shared by {@link Keygen} and {@link Batch}. */
+public final class KeyGenOptions {
+  /** Number of key pairs generated in advance for each generator thread. */
+  private static final int POOL_SIZE_PER_THREAD = 6;
+
+  @Option(
+      names = {"--curve"},
+      defaultValue = "brainpoolP256r1",
+      description = "Curve of the generated keys (brainpoolP256r1, brainpoolP384r1, brainpoolP512r1)")
+  private String curve;
+
+  @Option(
+      names = {"--drbg"},
+      defaultValue = "HASH_SHA512",
+      description = "SP 800-90A DRBG used for key generation: ${COMPLETION-CANDIDATES}")
+  private Drbg drbg;
+
+  /**
+   * Start a {@link KeyPairPool} generating keys with the configured curve and DRBG.
+   *
+   * @param threads number of background threads
+   * @return
+   * @throws GeneralSecurityException
+   */
+  public KeyPairPool pool(final int threads) throws GeneralSecurityException {
+    return new KeyPairPool(this.curve, this.drbg.build(), POOL_SIZE_PER_THREAD * threads, threads);
+  }
+}
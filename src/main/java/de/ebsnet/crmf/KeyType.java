@@ -6,7 +6,12 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.util.Optional;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.BERTags;
+import org.bouncycastle.asn1.x509.Certificate;
 import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.asn1.x509.KeyPurposeId;
 import org.bouncycastle.asn1.x509.KeyUsage;
 
@@ -30,6 +35,9 @@ public enum KeyType {
   /** position of keyAgreement value */
   private static final int KEY_USAGE_KEY_AGREEMENT = 4;
 
+  /** first byte of a DER encoded certificate, which is a SEQUENCE */
+  private static final int DER_SEQUENCE = BERTags.SEQUENCE | BERTags.CONSTRUCTED;
+
   private final String filename;
 
   KeyType(final String filename) {
@@ -69,7 +77,30 @@ public enum KeyType {
     };
   }
 
+  /**
+   * Determine the {@link KeyType} of a DER encoded certificate. Only the ASN.1 structure of the
+   * certificate is decoded to read the key usage extensions, it is not parsed into an {@link
+   * X509Certificate}. PEM encoded certificates are parsed with {@link
+   * X509Util#loadCertificateChain(byte[])}.
+   *
+   * @param cert
+   * @return
+   */
   public static Optional<KeyType> fromCertificate(final byte[] cert) {
+    if (cert.length == 0 || cert[0] != DER_SEQUENCE) {
+      return fromEncodedChain(cert);
+    }
+    // reads the first certificate only, like the CertificateFactory
+    try (var asn1 = new ASN1InputStream(cert)) {
+      final var extensions =
+          Certificate.getInstance(asn1.readObject()).getTBSCertificate().getExtensions();
+      return extensions == null ? Optional.empty() : fromExtensions(extensions);
+    } catch (IOException | IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<KeyType> fromEncodedChain(final byte[] cert) {
     try {
       final var chain = X509Util.loadCertificateChain(cert);
       return chain.length > 0 ? fromCertificate(chain[0]) : Optional.empty();
@@ -78,23 +109,57 @@ public enum KeyType {
     }
   }
 
+  /**
+   * Determine the {@link KeyType} from the extensions of a certificate.
+   *
+   * @param extensions
+   * @return
+   */
+  public static Optional<KeyType> fromExtensions(final Extensions extensions) {
+    final var keyUsage = KeyUsage.fromExtensions(extensions);
+    if (keyUsage == null) {
+      return Optional.empty();
+    }
+    return classify(
+        extensions.getExtension(Extension.extendedKeyUsage) != null,
+        keyUsage.hasUsages(KeyUsage.digitalSignature),
+        keyUsage.hasUsages(KeyUsage.keyEncipherment),
+        keyUsage.hasUsages(KeyUsage.keyAgreement));
+  }
+
   public static Optional<KeyType> fromCertificate(final X509Certificate cert) {
+    // both getters decode the extension again, so each is only called once
+    final var keyUsage = cert.getKeyUsage();
+    if (keyUsage == null) {
+      return Optional.empty();
+    }
     try {
-      // TLS: extended keyUsage, digitalSignature
-      if (cert.getExtendedKeyUsage() != null && cert.getKeyUsage()[KEY_USAGE_SIG]) {
-        return Optional.of(TLS);
-      }
-      // SIG: no extended keyUsage, digitalSignature
-      if (cert.getExtendedKeyUsage() == null && cert.getKeyUsage()[KEY_USAGE_SIG]) {
-        return Optional.of(SIG);
-      }
-      // ENC: no extended keyUsage, keyEncipherment, keyAgreement
-      if (cert.getExtendedKeyUsage() == null
-          && cert.getKeyUsage()[KEY_USAGE_KEY_ENCIPHERMENT]
-          && cert.getKeyUsage()[KEY_USAGE_KEY_AGREEMENT]) {
-        return Optional.of(ENC);
-      }
+      return classify(
+          cert.getExtendedKeyUsage() != null,
+          keyUsage[KEY_USAGE_SIG],
+          keyUsage[KEY_USAGE_KEY_ENCIPHERMENT],
+          keyUsage[KEY_USAGE_KEY_AGREEMENT]);
     } catch (CertificateParsingException ignored) {
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<KeyType> classify(
+      final boolean extendedKeyUsage,
+      final boolean digitalSignature,
+      final boolean keyEncipherment,
+      final boolean keyAgreement) {
+    // TLS: extended keyUsage, digitalSignature
+    if (extendedKeyUsage && digitalSignature) {
+      return Optional.of(TLS);
+    }
+    // SIG: no extended keyUsage, digitalSignature
+    if (!extendedKeyUsage && digitalSignature) {
+      return Optional.of(SIG);
+    }
+    // ENC: no extended keyUsage, keyEncipherment, keyAgreement
+    if (!extendedKeyUsage && keyEncipherment && keyAgreement) {
+      return Optional.of(ENC);
     }
     return Optional.empty();
   }
@@ -0,0 +1,131 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.Triple;
+import de.ebsnet.crmf.util.KeyPairUtil;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Subcommand to generate SIG, ENC and TLS key triples using a SP 800-90A DRBG. The keys are written
+ * as password protected PKCS#8 files and can directly be used by {@link Initial} or {@link Batch}.
+ */
+@Command(
+    name = "keygen",
+    mixinStandardHelpOptions = true,
+    description = "Generate encrypted key triples for CSRs")
+public final class Keygen implements Callable<Void> {
+  private static final Logger LOG = Logger.getLogger(Keygen.class.getSimpleName());
+
+  @Option(
+      names = {"--out"},
+      required = true,
+      description = "Directory to write the keys to")
+  private Path out;
+
+  @Option(
+      names = {"--prefix"},
+      defaultValue = "triple",
+      description =
+          "Prefix of the key files. Results in `<prefix>_sig.pem` or `<prefix>-<n>_sig.pem` if more than one triple is generated")
+  private String prefix;
+
+  @Option(
+      names = {"--count"},
+      defaultValue = "1",
+      description = "Number of triples to generate")
+  private int count;
+
+  @Option(
+      names = {"--key-pass"},
+      required = true,
+      description = "Password to encrypt the keys with")
+  private char[] keyPass;
+
+  @Option(
+      names = {"--threads"},
+      description = "Number of threads generating keys. Defaults to the number of CPU cores")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Mixin private KeyGenOptions keyGenOptions;
+
+  @Spec private CommandSpec spec;
+
+  @Override
+  public Void call() throws GeneralSecurityException, IOException, InterruptedException {
+    if (this.threads < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--threads must be at least 1");
+    }
+    Files.createDirectories(this.out);
+    try (var pool = this.keyGenOptions.pool(this.threads)) {
+      for (int idx = 1; idx <= this.count; idx++) {
+        final var name = this.count == 1 ? this.prefix : this.prefix + "-" + idx;
+        writeTriple(this.out, name, pool.takeTriple(), this.keyPass, pool.random());
+      }
+    }
+    LOG.info(() -> "generated " + this.count + " key triples in " + this.out);
+    return null;
+  }
+
+  /**
+   * Write a key triple to {@code <dir>/<name>_enc.pem}, {@code <dir>/<name>_sig.pem} and {@code
+   * <dir>/<name>_tls.pem}. Either all three files are written or none, so a failed triple does not
+   * block a rerun.
+   *
+   * @param dir
+   * @param name
+   * @param triple
+   * @param pass
+   * @param random
+   * @throws IOException
+   */
+  /* default */ static void writeTriple(
+      final Path dir,
+      final String name,
+      final Triple<KeyPair> triple,
+      final char[] pass,
+      final SecureRandom random)
+      throws IOException {
+    final var targets =
+        List.of(
+            dir.resolve(name + KeyType.ENC.filename()),
+            dir.resolve(name + KeyType.SIG.filename()),
+            dir.resolve(name + KeyType.TLS.filename()));
+    for (final var target : targets) {
+      if (Files.exists(target)) {
+        throw new FileAlreadyExistsException(target.toString());
+      }
+    }
+    final var keyPairs = List.of(triple.encryption(), triple.signature(), triple.transport());
+    final var written = new ArrayList<Path>(targets.size());
+    try {
+      for (int idx = 0; idx < targets.size(); idx++) {
+        KeyPairUtil.writeEncryptedKeyPair(targets.get(idx), keyPairs.get(idx), pass, random);
+        written.add(targets.get(idx));
+      }
+    } catch (IOException ex) {
+      for (final var path : written) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException suppressed) {
+          ex.addSuppressed(suppressed);
+        }
+      }
+      throw ex;
+    }
+  }
+}
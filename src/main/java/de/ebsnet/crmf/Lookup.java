@@ -0,0 +1,153 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import javax.security.auth.x500.X500Principal;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+import picocli.CommandLine;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Subcommand to look up single certificates in a large bundle through its {@link BundleIndex}.
+ * Only the matching certificates are decoded, and within {@link Serve} the index is only read
+ * once.
+ */
+@Command(
+    name = "lookup",
+    mixinStandardHelpOptions = true,
+    description = "Look up certificates in a PEM or DER bundle by GLN, serial, SKI or subject")
+public final class Lookup implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(Lookup.class.getSimpleName());
+
+  private static final String PEM_TYPE = "CERTIFICATE";
+  private static final int HEX = 16;
+
+  @Spec private CommandSpec spec;
+
+  @Option(
+      names = {"--bundle"},
+      required = true,
+      description =
+          "PEM or DER certificate bundle. The index is kept next to it as `<bundle>.idx` and rebuilt when the bundle changes")
+  private Path bundle;
+
+  @ArgGroup(exclusive = true, multiplicity = "1")
+  private Selector selector;
+
+  @Option(
+      names = {"--type"},
+      description =
+          "Key type of the certificate selected with --gln, one of ${COMPLETION-CANDIDATES}. Defaults to ${DEFAULT-VALUE}")
+  private KeyType type = KeyType.TLS;
+
+  @Option(
+      names = {"--out"},
+      description = "File to write the certificates to. Defaults to the standard output")
+  private Path out;
+
+  @Override
+  public Integer call() throws IOException, CertificateException {
+    final var query = this.selector.query(this.spec.commandLine(), this.type);
+    final var certs = query.select(BundleIndex.open(this.bundle));
+    if (certs.isEmpty()) {
+      LOG.warning(() -> "no matching certificate in " + this.bundle);
+      return 1;
+    }
+    if (this.out == null) {
+      final var writer = new PemWriter(this.spec.commandLine().getOut());
+      for (final var cert : certs) {
+        writer.writeObject(new PemObject(PEM_TYPE, cert.getEncoded()));
+      }
+      writer.flush();
+    } else {
+      SendRequest.writePem(this.out, encode(certs), PEM_TYPE);
+    }
+    return 0;
+  }
+
+  private static List<byte[]> encode(final List<X509Certificate> certs)
+      throws CertificateEncodingException {
+    final var encoded = new ArrayList<byte[]>(certs.size());
+    for (final var cert : certs) {
+      encoded.add(cert.getEncoded());
+    }
+    return encoded;
+  }
+
+  /** A lookup in the index. */
+  @FunctionalInterface
+  private interface Query {
+    List<X509Certificate> select(BundleIndex index) throws IOException, CertificateException;
+  }
+
+  /** Exactly one way to select certificates. */
+  private static final class Selector {
+    @Option(
+        names = {"--gln"},
+        required = true,
+        description = "GLN of the market participant, selects its current certificate of --type")
+    private String gln;
+
+    @Option(
+        names = {"--serial"},
+        required = true,
+        description = "Serial number of the certificates as hex")
+    private String serial;
+
+    @Option(
+        names = {"--ski"},
+        required = true,
+        description = "SubjectKeyIdentifier of the certificates as hex")
+    private String ski;
+
+    @Option(
+        names = {"--subject"},
+        required = true,
+        description = "Subject DN of the certificates, e.g. `CN=...,OU=...,O=...,C=DE`")
+    private String subject;
+
+    /** Parse the selector before the bundle is indexed, so invalid values fail fast. */
+    private Query query(final CommandLine commandLine, final KeyType type) {
+      final Query query;
+      if (this.gln != null) {
+        query = index -> index.current(this.gln, type, Instant.now()).stream().toList();
+      } else if (this.serial != null) {
+        final BigInteger number;
+        try {
+          number = new BigInteger(this.serial, HEX);
+        } catch (NumberFormatException ex) {
+          throw new ParameterException(
+              commandLine, "--serial is not a hexadecimal number: " + this.serial);
+        }
+        query = index -> index.bySerial(number);
+      } else if (this.ski != null) {
+        query = index -> index.bySki(this.ski);
+      } else {
+        final X500Principal principal;
+        try {
+          principal = new X500Principal(this.subject);
+        } catch (IllegalArgumentException ex) {
+          throw new ParameterException(
+              commandLine, "--subject is not a valid DN: " + ex.getMessage());
+        }
+        query = index -> index.bySubject(principal);
+      }
+      return query;
+    }
+  }
+}
@@ -1,59 +1,87 @@
 package de.ebsnet.crmf;
 
+import de.ebsnet.crmf.data.ManifestRow;
 import de.ebsnet.crmf.exception.InvalidCertificateChain;
-import de.ebsnet.crmf.util.KeyPairUtil;
+import de.ebsnet.crmf.exception.InvalidManifest;
+import de.ebsnet.crmf.util.CertificateChainBuilder;
+import de.ebsnet.crmf.util.KeyPairCache;
+import de.ebsnet.crmf.util.KeyStoreUpdater;
+import de.ebsnet.crmf.util.ManifestReader;
+import de.ebsnet.crmf.util.PKCS12Builder;
+import de.ebsnet.crmf.util.PKCS12Profile;
 import de.ebsnet.crmf.util.X509Util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
-/** Subcommand to convert a PEM encoded key pair and certificate into a single PKCS12 keystore. */
+/**
+ * Subcommand to convert PEM encoded key pairs and certificates into a PKCS12 keystore. A single
+ * key is added to a new or existing keystore, with {@code --manifest} all keys of a fleet are
+ * loaded and validated in parallel and the keystore is written once.
+ */
 @Command(
     name = "pem2p12",
     mixinStandardHelpOptions = true,
     description = "Convert key pair and certificate in PEM format to a PKCS12 keystore")
-public final class PEM2PKCS12 implements Callable<Void> {
+public final class PEM2PKCS12 implements Callable<Integer> {
 
   private static final Logger LOG = Logger.getLogger(PEM2PKCS12.class.getSimpleName());
 
+  /* default */ static final String COL_KEYPAIR = "keypair";
+  /* default */ static final String COL_CERTIFICATE = "certificate";
+  /* default */ static final String COL_CHAIN = "chain";
+  /* default */ static final String COL_ALIAS = "alias";
+
   @Option(
       names = {"--out"},
       required = true,
-      description = "Path to write the keystore to. If it already exists, the key is added")
+      description =
+          "Path to write the keystore to. If it already exists, the key is added. With --manifest, the keystore is replaced. The keystore is written to a temporary file and moved into place atomically")
   private Path out;
 
+  @Option(
+      names = {"--manifest"},
+      description =
+          "Path to a CSV manifest with the columns keypair, certificate, alias (required) and chain (optional, a file with intermediate certificates). All entries are written to a new keystore at once. Relative paths are resolved against the manifest directory")
+  private Path manifest;
+
   @Option(
       names = {"--keypair"},
-      required = true,
-      description = "Path to the PEM key pair")
+      description = "Path to the PEM key pair. Required without --manifest")
   private Path keyPairPath;
 
   @Option(
       names = {"--keypair-pass"},
-      description = "Password for the PEM key pair")
+      description = "Password for the PEM key pair. With --manifest, used for all keys")
   private Optional<char[]> keyPairPass;
 
   @Option(
       names = {"--certificate"},
-      required = true,
-      description = "Path to the PEM certificate")
+      description = "Path to the PEM certificate. Required without --manifest")
   private Path certificatePath;
 
   @Option(
@@ -65,50 +93,202 @@ public final class PEM2PKCS12 implements Callable<Void> {
   @Option(
       names = {"--trusted"},
       description =
-          "Trust chain of the certificate. Chain is built in the order, the trusted certificates are passed.")
-  private List<Path> trusted;
+          "Trust chain of the certificate. The chain is built from the issuers of the certificate, so the trusted certificates can be passed in any order. With --manifest, shared by all entries")
+  private List<Path> trusted = new ArrayList<>();
 
   @Option(
       names = {"--alias"},
-      required = true,
-      description = "Alias inside the keystore")
+      description = "Alias inside the keystore. Required without --manifest")
   private String alias;
 
+  @Option(
+      names = {"--profile"},
+      defaultValue = "PBES2_AES256",
+      description =
+          "Protection of the keystore, one of ${COMPLETION-CANDIDATES}. PBES2_AES256 encrypts with PBKDF2-HMAC-SHA256 and AES-256-CBC and uses a HMAC-SHA256 MAC. Defaults to ${DEFAULT-VALUE}")
+  private PKCS12Profile profile;
+
+  @Option(
+      names = {"--iterations"},
+      description =
+          "KDF iterations of the key encryption and the integrity MAC, at least 1. Defaults to the iterations of the profile, 10000 for PBES2_AES256")
+  private Integer iterations;
+
+  @Option(
+      names = {"--parallelism"},
+      description =
+          "Number of entries loaded and encrypted in parallel with --manifest. Defaults to the number of CPU cores")
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--remove"},
+      description = "Alias to remove from the keystore. Can be repeated")
+  private List<String> remove = new ArrayList<>();
+
+  @Option(
+      names = {"--generations"},
+      defaultValue = "0",
+      description =
+          "Number of previous versions of the keystore that are kept as `<out>.1` to `<out>.<n>`. Defaults to ${DEFAULT-VALUE}")
+  private int generations;
+
+  @Option(
+      names = {"--coalesce-window"},
+      defaultValue = "0",
+      description =
+          "Milliseconds changes to the same keystore are collected before it is written, so concurrent requests to `serve` only rewrite it once. Defaults to ${DEFAULT-VALUE}")
+  private long window;
+
+  @Spec private CommandSpec spec;
+
   @Override
-  public Void call()
+  public Integer call()
       throws CertificateException,
           IOException,
           KeyStoreException,
           NoSuchProviderException,
-          NoSuchAlgorithmException {
+          NoSuchAlgorithmException,
+          InvalidManifest,
+          InterruptedException {
+    if (this.iterations != null && this.iterations < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--iterations must be at least 1");
+    }
+    if (this.manifest != null) {
+      if (this.parallelism < 1) {
+        throw new ParameterException(this.spec.commandLine(), "--parallelism must be at least 1");
+      }
+      return convertManifest();
+    }
+    final var adding =
+        this.keyPairPath != null || this.certificatePath != null || this.alias != null;
+    final var incomplete =
+        this.keyPairPath == null || this.certificatePath == null || this.alias == null;
+    if (adding ? incomplete : this.remove.isEmpty()) {
+      throw new ParameterException(
+          this.spec.commandLine(), "--keypair, --certificate and --alias are required");
+    }
+    final var updater =
+        KeyStoreUpdater.of(
+            this.out,
+            this.keyStorePass,
+            Duration.ofMillis(this.window),
+            this.generations,
+            this.profile,
+            iterations());
+    final var changes = new ArrayList<CompletableFuture<Void>>();
+    for (final var removed : this.remove) {
+      changes.add(updater.remove(removed));
+    }
     try {
-      final var keyStore = loadKeyStore(this.out, this.keyStorePass);
-      if (keyStore.containsAlias(this.alias)) {
-        throw new IllegalStateException("alias already exists in the keystore");
+      if (adding) {
+        final var keyPair = KeyPairCache.shared().load(this.keyPairPath, this.keyPairPass);
+        final var certificate = X509Util.loadCertificateChain(this.certificatePath);
+        final var chain =
+            CertificateChainBuilder.load(this.trusted.toArray(new Path[0]))
+                .build(certificate[0], certificate);
+        changes.add(updater.add(this.alias, keyPair.getPrivate(), chain));
       }
-      final var keyPair = KeyPairUtil.loadKeyPair(this.keyPairPath, this.keyPairPass);
-      final var certificate = X509Util.loadCertificateChain(this.certificatePath);
-      final var chain = new ArrayList<>(List.of(certificate));
+      CompletableFuture.allOf(changes.toArray(new CompletableFuture<?>[0])).join();
+    } catch (InvalidCertificateChain ex) {
+      LOG.severe(() -> "invalid certificate chain: " + ex.getMessage());
+      return 1;
+    } catch (CompletionException ex) {
+      LOG.severe(() -> "cannot update keystore: " + CSRPipeline.cause(ex).getMessage());
+      return 1;
+    }
+    return 0;
+  }
 
-      for (final var trustedCert : trusted) {
-        chain.addAll(List.of(X509Util.loadCertificateChain(trustedCert)));
+  /**
+   * Convert all entries of the manifest. The keys are loaded, validated and encrypted in parallel,
+   * the keystore is only written if every entry could be converted.
+   */
+  private int convertManifest()
+      throws IOException, CertificateException, InvalidManifest, InterruptedException {
+    final var trust = CertificateChainBuilder.load(this.trusted.toArray(new Path[0]));
+    final var keyStore = new PKCS12Builder(this.keyStorePass, this.profile, iterations());
+    // entries are added in manifest order, independent of the order they complete in
+    final var entries = new ConcurrentSkipListMap<Long, PKCS12Builder.KeyEntry>();
+    final var aliases = new HashSet<String>();
+    final var failed = new AtomicInteger();
+    var total = 0L;
+    try (var reader = new ManifestReader(this.manifest);
+        var pipeline = new CSRPipeline(this.parallelism)) {
+      final var inFlight = pipeline.inFlight();
+      while (true) {
+        final Optional<ManifestRow> row;
+        try {
+          row = reader.next();
+          if (row.isPresent()) {
+            final var entryAlias = row.get().required(COL_ALIAS);
+            if (!aliases.add(entryAlias)) {
+              throw new InvalidManifest(
+                  this.manifest, row.get().line(), "duplicate alias " + entryAlias);
+            }
+          }
+        } catch (InvalidManifest ex) {
+          if (!reader.hasHeader()) {
+            throw ex;
+          }
+          total++;
+          failed.incrementAndGet();
+          LOG.severe(ex::getMessage);
+          continue;
+        }
+        if (row.isEmpty()) {
+          break;
+        }
+        total++;
+        final var current = row.get();
+        inFlight.supply(
+            () -> prepare(keyStore, trust, current),
+            (entry, ex) -> {
+              if (ex == null) {
+                entries.put(current.line(), entry);
+              } else {
+                failed.incrementAndGet();
+                LOG.severe(
+                    () ->
+                        current.manifest()
+                            + ":"
+                            + current.line()
+                            + ": "
+                            + CSRPipeline.cause(ex).getMessage());
+              }
+            });
       }
+      inFlight.await();
+    }
+    if (failed.get() > 0) {
+      final var rows = total;
+      LOG.severe(() -> failed.get() + " of " + rows + " entries failed, keystore not written");
+      return 1;
+    }
+    for (final var entry : entries.values()) {
+      keyStore.add(entry);
+    }
+    KeyStoreUpdater.replace(this.out, keyStore.build(), this.generations);
+    LOG.info(() -> "wrote " + keyStore.size() + " entries to " + this.out);
+    return 0;
+  }
 
-      X509Util.validateCertificateChain(chain.toArray(new X509Certificate[0]));
-
-      keyStore.setKeyEntry(
-          this.alias,
-          keyPair.getPrivate(),
-          this.keyStorePass,
-          chain.toArray(new X509Certificate[0]));
+  private int iterations() {
+    return this.iterations == null ? this.profile.iterations() : this.iterations;
+  }
 
-      try (var outStream = Files.newOutputStream(this.out, StandardOpenOption.CREATE_NEW)) {
-        keyStore.store(outStream, this.keyStorePass);
-      }
-    } catch (InvalidCertificateChain ex) {
-      LOG.severe(() -> "invalid certificate chain: " + ex.getMessage());
+  private PKCS12Builder.KeyEntry prepare(
+      final PKCS12Builder keyStore, final CertificateChainBuilder trust, final ManifestRow row)
+      throws InvalidManifest, IOException, GeneralSecurityException, InvalidCertificateChain {
+    final var keyPair = KeyPairCache.shared().load(row.requiredPath(COL_KEYPAIR), this.keyPairPass);
+    final var certificate = X509Util.loadCertificateChain(row.requiredPath(COL_CERTIFICATE));
+    X509Util.checkPublicKey(keyPair, certificate[0]);
+    final var intermediates = new ArrayList<>(List.of(certificate));
+    final var chainFile = row.optionalPath(COL_CHAIN);
+    if (chainFile.isPresent()) {
+      intermediates.addAll(List.of(X509Util.loadCertificateChain(chainFile.get())));
     }
-    return null;
+    final var chain = trust.build(certificate[0], intermediates.toArray(new X509Certificate[0]));
+    return keyStore.prepare(row.required(COL_ALIAS), keyPair.getPrivate(), chain);
   }
 
   /**
@@ -152,19 +332,9 @@ public final class PEM2PKCS12 implements Callable<Void> {
           IOException,
           NoSuchAlgorithmException,
           NoSuchProviderException {
-    final var keyPair = KeyPairUtil.loadKeyPair(key, keyPass);
+    final var keyPair = KeyPairCache.shared().load(key, keyPass);
     final var certificate = X509Util.loadCertificateChain(cert);
-    final var kpPub = keyPair.getPublic();
-    final var cerPub = certificate[0].getPublicKey();
-    if (!Objects.equals(kpPub, cerPub)) {
-      final var encoder = Base64.getEncoder();
-      final var message =
-          "KeyPair - Certificate Missmatch. Got KeyPair with PubKey: "
-              + encoder.encodeToString(kpPub.getEncoded())
-              + " certificate with PubKey: "
-              + encoder.encodeToString(cerPub.getEncoded());
-      throw new CertificateException(message);
-    }
+    X509Util.checkPublicKey(keyPair, certificate[0]);
     final var keyStore = loadKeyStore(null, pass);
     keyStore.setKeyEntry(alias, keyPair.getPrivate(), pass, certificate);
     return keyStore;
@@ -3,7 +3,8 @@ package de.ebsnet.crmf;
 import de.ebsnet.crmf.data.CSRMetadata;
 import de.ebsnet.crmf.data.Triple;
 import de.ebsnet.crmf.exception.InvalidCertificateChain;
-import de.ebsnet.crmf.util.KeyPairUtil;
+import de.ebsnet.crmf.util.KeyPairCache;
+import de.ebsnet.crmf.util.TrustChain;
 import de.ebsnet.crmf.util.X509Util;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -12,14 +13,13 @@ import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.security.KeyPair;
-import java.security.cert.X509Certificate;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
+import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.cert.crmf.CRMFException;
 import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.operator.OperatorCreationException;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -64,7 +64,7 @@ public final class Renew extends BaseCommand implements Callable<Void> {
   @Option(
       names = {"--trust-chain"},
       description = "Path to the trust chain of the sub CA")
-  private Path[] trustChain;
+  private Path[] trustChain = new Path[0];
 
   //  @SuppressFBWarnings("DMI_HARDCODED_ABSOLUTE_FILENAME")
   //  public static void main(final String[] args)
@@ -91,16 +91,29 @@ public final class Renew extends BaseCommand implements Callable<Void> {
   //    renew.call();
   //  }
 
-  private static X509Certificate[] buildTrustChain(final X509Certificate[]... chains) {
-    final var insertionOrderSet = new LinkedHashSet<X509Certificate>();
-    for (final var chain : chains) {
-      insertionOrderSet.addAll(List.of(chain));
+  /**
+   * Keys must not be reused for a renewal.
+   *
+   * @param prevKeyPair the key pair that signs the renewal
+   * @param newTriple the new keys
+   * @throws InvalidParameterException if one of the new keys equals the old key
+   */
+  /* default */ static void checkNewTriple(
+      final KeyPair prevKeyPair, final Triple<KeyPair> newTriple) {
+    if (newTriple.stream().anyMatch(t -> t.equals(prevKeyPair))) {
+      throw new InvalidParameterException(
+          "Keys must not be reused. One of the new keys is equal to the old signature key. Generate a new triple for the renewal");
     }
-    return insertionOrderSet.toArray(new X509Certificate[0]);
   }
 
-  private static boolean usesNewTriple(final KeyPair prevKeyPair, final Triple<KeyPair> newTriple) {
-    return newTriple.stream().noneMatch(t -> t.equals(prevKeyPair));
+  /**
+   * Wrap a signed renewal into the structure expected by the SubCA.
+   *
+   * @param signed
+   * @return
+   */
+  /* default */ static ContentInfo asContentInfo(final CMSSignedData signed) {
+    return CSRUtil.asContentInfo(signed.toASN1Structure().getContent(), true);
   }
 
   @Override
@@ -111,37 +124,25 @@ public final class Renew extends BaseCommand implements Callable<Void> {
           OperatorCreationException,
           CMSException {
     try {
-      final var prevKp = KeyPairUtil.loadKeyPair(this.prevKeyPair, this.prevKeyPass);
-      final var prevCerts = X509Util.loadCertificateChain(this.prevCertificate);
-      var buildChain = new X509Certificate[0];
-      for (final var chain : this.trustChain) {
-        buildChain = buildTrustChain(buildChain, X509Util.loadCertificateChain(chain));
-      }
-      final var allCerts = buildTrustChain(prevCerts, buildChain);
-
-      X509Util.validateCertificateChain(allCerts);
+      final var prevKp = KeyPairCache.shared().load(this.prevKeyPair, this.prevKeyPass);
+      final var trust = TrustChain.load(this.trustChain);
+      final var leafChain =
+          trust.leafCertificates(X509Util.loadCertificateChain(this.prevCertificate));
 
       final var keyPairs =
           new Triple<>(
-              KeyPairUtil.loadKeyPair(this.encPath, this.passForType(KeyType.ENC)),
-              KeyPairUtil.loadKeyPair(this.sigPath, this.passForType(KeyType.SIG)),
-              KeyPairUtil.loadKeyPair(this.tlsPath, this.passForType(KeyType.TLS)));
-
-      if (!usesNewTriple(prevKp, keyPairs)) {
-        throw new InvalidParameterException(
-            "Keys must not be reused. One of the new keys is equal to the old signature key. Generate a new triple for the renewal");
-      }
+              KeyPairCache.shared().load(this.encPath, this.passForType(KeyType.ENC)),
+              KeyPairCache.shared().load(this.sigPath, this.passForType(KeyType.SIG)),
+              KeyPairCache.shared().load(this.tlsPath, this.passForType(KeyType.TLS)));
+      checkNewTriple(prevKp, keyPairs);
 
-      final var metadata = CSRMetadata.fromCertificate(prevCerts[0]);
+      final var metadata = CSRMetadata.fromCertificate(leafChain[0]);
 
       final var innerCSR = Initial.generateCertReqMessages(keyPairs, metadata);
-      final var signed = RenewalUtil.outerSignature(prevKp.getPrivate(), allCerts, innerCSR);
-
-      final var signedASN1 = signed.toASN1Structure();
-
-      final var result = CSRUtil.asContentInfo(signedASN1.getContent(), true);
+      final var signed =
+          RenewalUtil.outerSignature(prevKp.getPrivate(), leafChain, trust, innerCSR);
 
-      Files.write(this.out, result.getEncoded(), StandardOpenOption.CREATE_NEW);
+      Files.write(this.out, asContentInfo(signed).getEncoded(), StandardOpenOption.CREATE_NEW);
 
     } catch (InvalidCertificateChain ex) {
       LOG.severe(() -> "invalid certificate chain: " + ex.getMessage());
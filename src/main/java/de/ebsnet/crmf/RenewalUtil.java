@@ -1,5 +1,7 @@
 package de.ebsnet.crmf;
 
+import de.ebsnet.crmf.util.OperatorCache;
+import de.ebsnet.crmf.util.TrustChain;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
@@ -10,9 +12,7 @@ import org.bouncycastle.asn1.BERSet;
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.cms.CMSAttributes;
-import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
-import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
-import org.bouncycastle.cert.X509ExtensionUtils;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.crmf.CertificateReqMessages;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
@@ -22,53 +22,70 @@ import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
 import org.bouncycastle.cms.DefaultSignedAttributeTableGenerator;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.Store;
 
 public final class RenewalUtil {
   public static CMSSignedData outerSignature(
       final PrivateKey privateKey, final X509Certificate[] chain, final CertificateReqMessages csr)
       throws IOException, GeneralSecurityException, OperatorCreationException, CMSException {
-    return outerSignature(privateKey, chain, csr.toASN1Structure().getEncoded());
+    return outerSignature(privateKey, chain[0], List.of(new JcaCertStore(List.of(chain))), csr);
+  }
+
+  /**
+   * Sign a renewal with a trust chain that is shared between many requests. The certificates of
+   * the trust chain are only converted once.
+   *
+   * @param privateKey the previous signature key
+   * @param leafChain the previous certificate and its issuers that are not part of {@code
+   *     trustChain}, see {@link TrustChain#leafCertificates(X509Certificate...)}
+   * @param trustChain the validated trust chain of the sub CA
+   * @param csr the new requests
+   * @return
+   */
+  public static CMSSignedData outerSignature(
+      final PrivateKey privateKey,
+      final X509Certificate[] leafChain,
+      final TrustChain trustChain,
+      final CertificateReqMessages csr)
+      throws IOException, GeneralSecurityException, OperatorCreationException, CMSException {
+    return outerSignature(
+        privateKey,
+        leafChain[0],
+        List.of(new JcaCertStore(List.of(leafChain)), trustChain.certStore()),
+        csr);
   }
 
   private static CMSSignedData outerSignature(
-      final PrivateKey privateKey, final X509Certificate[] chain, final byte[] data)
-      throws OperatorCreationException, GeneralSecurityException, CMSException {
+      final PrivateKey privateKey,
+      final X509Certificate signerCertificate,
+      final List<Store<X509CertificateHolder>> certStores,
+      final CertificateReqMessages csr)
+      throws IOException, OperatorCreationException, GeneralSecurityException, CMSException {
+    final var data = csr.toASN1Structure().getEncoded();
     final var gen = new CMSSignedDataGenerator();
 
     final var signedAttributes = new ASN1EncodableVector();
     signedAttributes.add(
         new Attribute(CMSAttributes.contentType, new BERSet(CSRUtil.OID_CERT_REQ_MSGS)));
 
-    final var certHolder = new JcaX509CertificateHolder(chain[0]);
-    final var extUtil =
-        new X509ExtensionUtils(
-            new BcDigestCalculatorProvider()
-                .get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)));
+    final var certHolder = new JcaX509CertificateHolder(signerCertificate);
     final var keyIdentifier =
-        extUtil.createSubjectKeyIdentifier(certHolder.getSubjectPublicKeyInfo());
+        OperatorCache.extensionUtils()
+            .createSubjectKeyIdentifier(certHolder.getSubjectPublicKeyInfo());
 
     final var signedAttributesTable = new AttributeTable(signedAttributes);
     final var sigAlg = "SHA256withECDSA";
-    final var signer =
-        new JcaContentSignerBuilder(sigAlg)
-            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-            .build(privateKey);
+    final var signer = OperatorCache.contentSigner(sigAlg, privateKey);
     gen.addSignerInfoGenerator(
-        new JcaSignerInfoGeneratorBuilder(
-                new JcaDigestCalculatorProviderBuilder()
-                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                    .build())
+        new JcaSignerInfoGeneratorBuilder(OperatorCache.digestCalculatorProvider())
             .setSignedAttributeGenerator(
                 new DefaultSignedAttributeTableGenerator(signedAttributesTable))
             .build(signer, keyIdentifier.getKeyIdentifier()));
 
-    final var certStore = new JcaCertStore(List.of(chain));
-    gen.addCertificates(certStore);
+    for (final var certStore : certStores) {
+      gen.addCertificates(certStore);
+    }
 
     return gen.generate(new CMSProcessableByteArray(CSRUtil.OID_CERT_REQ_MSGS, data), true);
   }
@@ -0,0 +1,51 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+
+/** Subcommand to send certificate revocation requests to the SubCA. */
+@Command(
+    name = "revoke",
+    mixinStandardHelpOptions = true,
+    description = "Send certificate revocation requests to the SubCA's webservice")
+public final class Revoke implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(Revoke.class.getSimpleName());
+
+  @Mixin private ClientOptions clientOptions;
+
+  @Option(
+      names = {"--request"},
+      required = true,
+      description = "Path to a DER encoded revocation request. Can be repeated")
+  private Path[] requests;
+
+  @Override
+  public Integer call() throws IOException, GeneralSecurityException {
+    final var revocations = new LinkedHashMap<String, CompletableFuture<String>>();
+    try (var client = this.clientOptions.client(this.clientOptions.sslContext())) {
+      for (final var request : this.requests) {
+        final var description = "revocation " + request;
+        revocations.put(
+            description,
+            client
+                .revoke(Files.readAllBytes(request))
+                .whenComplete(
+                    (code, ex) -> {
+                      if (ex == null) {
+                        LOG.info(() -> description + ": " + code);
+                      }
+                    }));
+      }
+      return ClientOptions.awaitAll(revocations);
+    }
+  }
+}
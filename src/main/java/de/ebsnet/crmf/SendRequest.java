@@ -1,53 +1,40 @@
 package de.ebsnet.crmf;
 
-import com.sun.xml.ws.api.message.Headers;
-import com.sun.xml.ws.developer.WSBindingProvider;
-import com.sun.xml.ws.fault.ServerSOAPFaultException;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import jakarta.xml.ws.BindingProvider;
 import java.io.IOException;
-import java.net.Socket;
-import java.net.URI;
-import java.net.URL;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509ExtendedTrustManager;
-import javax.xml.namespace.QName;
-import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemObjectGenerator;
 import org.bouncycastle.util.io.pem.PemWriter;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
-import uri.bsi_bund_de.smart_meter_pki_protocol._1.CallbackIndicatorType;
-import uri.bsi_bund_de.smart_meter_pki_protocol._1.RequestCertificateReq;
-import uri.bsi_bund_de.smart_meter_pki_protocol._1_3.SmartMeterService;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 /**
- * This subcommand can be used to send a renewal CSR to the SubCA's renewal webservice.
+ * This subcommand can be used to send a renewal CSR to the SubCA's renewal webservice. Several CSRs
+ * can be sent in one run, they share the TLS context and the connections to the webservice. With
+ * {@code --callback-port}, the SubCA delivers the certificates asynchronously to an embedded
+ * endpoint that authenticates it by its TLS client certificate, see {@link CallbackEndpoint}.
  *
  * <p>This is not fully tested, since we currently cannot generate renewal CSRs
  */
 @Command(name = "send", mixinStandardHelpOptions = true, description = "Send a Request for Renewal")
 @SuppressWarnings("PMD.ExcessiveImports")
-public final class SendRequest implements Callable<Void> {
+public final class SendRequest implements Callable<Integer> {
   // we initialize here to, in case we are testing from a main method inside this
   // class
   static {
@@ -56,40 +43,47 @@ public final class SendRequest implements Callable<Void> {
 
   private static final Logger LOG = Logger.getLogger(SendRequest.class.getSimpleName());
 
-  @Option(
-      names = {"--tls-key"},
-      required = true,
-      description = "Path to the currently valid TLS key")
-  private Path tlsKeyPath;
-
-  @Option(
-      names = {"--tls-key-pass"},
-      description = "Password for the TLS key")
-  private Optional<char[]> tlsKeyPass;
+  @Mixin private ClientOptions clientOptions;
 
-  @Option(
-      names = {"--tls-cert"},
-      required = true,
-      description = "Path to the currently valid TLS cert")
-  private Path tlsCertPath;
+  @Spec private CommandSpec spec;
 
   @Option(
       names = {"--csr"},
       required = true,
-      description = "Path to the new CSR")
-  private Path csrPath;
+      description =
+          "Path to the new CSR. Can be repeated to send several CSRs over the same connections")
+  private Path[] csrPaths;
 
   @Option(
       names = {"--out"},
       required = true,
-      description = "Output directory to write the new certificates into")
+      description =
+          "Output directory to write the new certificates into. If several CSRs are sent, the certificates of each CSR are written into a subdirectory named after the CSR file")
   private Path out;
 
   @Option(
-      names = {"--uri"},
-      required = true,
-      description = "Webservice URI")
-  private URI uri;
+      names = {"--callback-port"},
+      description =
+          "Send the CSRs with `callback_possible` and wait for the SubCA to deliver the certificates to an embedded HTTPS endpoint on this port. The endpoint uses the TLS key and certificate and only accepts callers with a client certificate issued under --trust-anchor, which is required")
+  private Optional<Integer> callbackPort = Optional.empty();
+
+  @Option(
+      names = {"--callback-bind"},
+      description =
+          "Address the callback endpoint listens on. Defaults to ${DEFAULT-VALUE}")
+  private String callbackBind = "0.0.0.0";
+
+  @Option(
+      names = {"--callback-path"},
+      description =
+          "HTTP path of the callback endpoint, as registered at the SubCA. Defaults to ${DEFAULT-VALUE}")
+  private String callbackPath = "/SmartMeterService";
+
+  @Option(
+      names = {"--callback-timeout"},
+      description =
+          "Timeout in minutes to wait for the certificates of a request sent with `--callback-port`. Defaults to ${DEFAULT-VALUE}")
+  private long callbackTimeout = 60;
 
   //  @SuppressFBWarnings("DMI_HARDCODED_ABSOLUTE_FILENAME")
   //  public static void main(final String[] args)
@@ -104,7 +98,7 @@ public final class SendRequest implements Callable<Void> {
   //    sendRequest.tlsCertPath =
   //        Path.of("/home/me/Dokumente/work/keys/old/personalTLSCertificate.pem");
   //    sendRequest.tlsKeyPath = Path.of("/home/me/Dokumente/work/keys/old/tls.pem");
-  //    sendRequest.csrPath = Path.of("./keys/new/csr.pem");
+  //    sendRequest.csrPaths = new Path[] {Path.of("./keys/new/csr.pem")};
   //    sendRequest.uri =
   //        //      URI.create("http://localhost:8080");
   //        URI.create("https://test.sub-ca.da-rz.net:8443/metering-ca/services/SmartMeterService");
@@ -112,90 +106,67 @@ public final class SendRequest implements Callable<Void> {
   //    sendRequest.call();
   //  }
 
-  private SSLContext sslContext()
-      throws NoSuchAlgorithmException,
-          NoSuchProviderException,
-          IOException,
-          CertificateException,
-          KeyStoreException,
-          UnrecoverableKeyException,
-          KeyManagementException {
-    final var pwd = Utils.randomPwd();
-    final var sslContext =
-        SSLContext.getInstance("TLSv1.2", BouncyCastleJsseProvider.PROVIDER_NAME);
-    final var keyStore =
-        PEM2PKCS12.pemToPKCS12(this.tlsKeyPath, this.tlsKeyPass, this.tlsCertPath, "tls", pwd);
-
-    final var kmf = KeyManagerFactory.getInstance("PKIX", BouncyCastleJsseProvider.PROVIDER_NAME);
-
-    kmf.init(keyStore, pwd);
-
-    sslContext.init(kmf.getKeyManagers(), new TrustManager[] {new TrustAll()}, null);
-
-    return sslContext;
-  }
-
   @Override
-  public Void call()
-      throws IOException,
-          UnrecoverableKeyException,
-          CertificateException,
-          NoSuchAlgorithmException,
-          KeyStoreException,
-          NoSuchProviderException,
-          KeyManagementException {
-    try {
-      final var sslContext = sslContext();
-
-      final var csr = Files.readAllBytes(this.csrPath);
-      Files.createDirectories(out);
-
-      HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
-      final var url = new URL(this.uri.toString());
-      final var service = new SmartMeterService();
-      final var port = service.getSmartMeterServicePort();
-
-      final var context = ((BindingProvider) port).getRequestContext();
-      context.put(
-          "com.sun.xml.internal.ws.transport.https.client.SSLSocketFactory",
-          sslContext.getSocketFactory());
-      context.put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, url.toString());
-
-      ((WSBindingProvider) port).setOutboundHeaders(Headers.create(new QName("certType"), "EMT"));
+  public Integer call() throws IOException, GeneralSecurityException {
+    if (this.callbackPort.isPresent() && !this.clientOptions.hasTrustAnchors()) {
+      // without trust anchors, any client could deliver certificates
+      throw new ParameterException(
+          this.spec.commandLine(), "--callback-port requires --trust-anchor");
+    }
+    final var sslContext = this.clientOptions.sslContext();
+    final var responses = new LinkedHashMap<String, CompletableFuture<Void>>();
+
+    try (var client = this.clientOptions.client(sslContext);
+        var callbacks =
+            this.callbackPort.isPresent()
+                ? CallbackEndpoint.start(
+                    new InetSocketAddress(this.callbackBind, this.callbackPort.get()),
+                    this.callbackPath,
+                    sslContext,
+                    this.clientOptions.parallelism())
+                : null) {
+      for (final var csrPath : this.csrPaths) {
+        final var csr = Files.readAllBytes(csrPath);
+        final var target =
+            this.csrPaths.length == 1 ? this.out : this.out.resolve(baseName(csrPath));
+        Files.createDirectories(target);
+        final var response =
+            callbacks == null
+                ? client.submit(csr)
+                : client.submit(csr, callbacks, Duration.ofMinutes(this.callbackTimeout));
+        responses.put(
+            "sending " + csrPath,
+            response.thenAccept(certificates -> writeCertificates(target, certificates)));
+      }
+      return ClientOptions.awaitAll(responses);
+    }
+  }
 
-      final var req = new RequestCertificateReq();
-      req.setCallbackIndicator(CallbackIndicatorType.CALLBACK_NOT_POSSIBLE);
-      req.setCertReq(csr);
-      final var serviceStatus = port.requestCertificate(req);
-      LOG.info(() -> "Return Code: " + serviceStatus.getReturnCode());
-      LOG.info(() -> "Return Code Message: " + serviceStatus.getReturnCodeMessage());
-      final var b64 = Base64.getEncoder();
+  private static String baseName(final Path csrPath) {
+    final var name = csrPath.getFileName().toString();
+    final var dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(0, dot) : name;
+  }
 
-      for (final var crt : serviceStatus.getCertificateSeq().getCertificate()) {
-        try {
-          final var type = KeyType.fromCertificate(crt);
-          final var filename =
-              type.map(KeyType::filename)
-                  .orElseGet(
-                      () -> {
-                        final var fallbackName = String.valueOf(Utils.randomPwd()) + ".pem";
-                        LOG.severe(() -> "cannot determine key type... storing in " + fallbackName);
-                        return fallbackName;
-                      });
-          writePem(out.resolve(filename), crt, "CERTIFICATE");
-          final var encoded = b64.encodeToString(crt);
-          LOG.info(() -> "CRT " + type + ": " + encoded);
-        } catch (IOException ex) {
-          LOG.severe(() -> "error writing certificate to disk: " + ex);
-        }
+  private static void writeCertificates(final Path target, final List<byte[]> certificates) {
+    final var b64 = Base64.getEncoder();
+    for (final var crt : certificates) {
+      try {
+        final var type = KeyType.fromCertificate(crt);
+        final var filename =
+            type.map(KeyType::filename)
+                .orElseGet(
+                    () -> {
+                      final var fallbackName = String.valueOf(Utils.randomPwd()) + ".pem";
+                      LOG.severe(() -> "cannot determine key type... storing in " + fallbackName);
+                      return fallbackName;
+                    });
+        writePem(target.resolve(filename), crt, "CERTIFICATE");
+        final var encoded = b64.encodeToString(crt);
+        LOG.info(() -> "CRT " + type + ": " + encoded);
+      } catch (IOException ex) {
+        LOG.severe(() -> "error writing certificate to disk: " + ex);
       }
-
-      return null;
-    } catch (ServerSOAPFaultException ssfe) {
-      LOG.severe(() -> ssfe.getFault().toString());
-      LOG.severe(() -> "Code: " + ssfe.getFault().getFaultCode());
-      LOG.severe(() -> "Text: " + ssfe.getFault().getFaultString());
-      throw ssfe;
     }
   }
 
@@ -204,53 +175,19 @@ public final class SendRequest implements Callable<Void> {
     writePem(path, new PemObject(type, content));
   }
 
-  private static void writePem(final Path path, final PemObjectGenerator content)
-      throws IOException {
+  /* default */ static void writePem(
+      final Path path, final List<byte[]> contents, final String type) throws IOException {
     try (var writer = new PemWriter(Files.newBufferedWriter(path, StandardOpenOption.CREATE_NEW))) {
-      writer.writeObject(content);
+      for (final var content : contents) {
+        writer.writeObject(new PemObject(type, content));
+      }
     }
   }
 
-  /**
-   * Trust manager that accepts any server certificate. We are only sending CSRs to the webservice,
-   * which do not contain sensitive data. Everything inside the CSR will be in the public
-   * certificate anyway. A proper implementation might extract the intermediate and root certificate
-   * from the CSR to use as trust anchor.
-   */
-  @SuppressFBWarnings("WEAK_TRUST_MANAGER")
-  private static final class TrustAll extends X509ExtendedTrustManager {
-
-    @Override
-    public void checkClientTrusted(
-        final X509Certificate[] chain, final String authType, final Socket socket)
-        throws CertificateException {}
-
-    @Override
-    public void checkServerTrusted(
-        final X509Certificate[] chain, final String authType, final Socket socket)
-        throws CertificateException {}
-
-    @Override
-    public void checkClientTrusted(
-        final X509Certificate[] chain, final String authType, final SSLEngine engine)
-        throws CertificateException {}
-
-    @Override
-    public void checkServerTrusted(
-        final X509Certificate[] chain, final String authType, final SSLEngine engine)
-        throws CertificateException {}
-
-    @Override
-    public void checkClientTrusted(final X509Certificate[] chain, final String authType)
-        throws CertificateException {}
-
-    @Override
-    public void checkServerTrusted(final X509Certificate[] chain, final String authType)
-        throws CertificateException {}
-
-    @Override
-    public X509Certificate[] getAcceptedIssuers() {
-      return new X509Certificate[0];
+  private static void writePem(final Path path, final PemObjectGenerator content)
+      throws IOException {
+    try (var writer = new PemWriter(Files.newBufferedWriter(path, StandardOpenOption.CREATE_NEW))) {
+      writer.writeObject(content);
     }
   }
 }
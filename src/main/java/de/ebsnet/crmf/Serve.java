@@ -0,0 +1,241 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.KeyPairCache;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import picocli.CommandLine.TypeConversionException;
+
+/**
+ * Subcommand that keeps the JVM, the security providers and the loaded classes warm and executes
+ * {@code initial}, {@code renew}, {@code pem2p12} and {@code lookup} requests received over a
+ * Unix domain socket that only the owner of the daemon can connect to.
+ *
+ * <p>A request is a 4 byte big endian length, followed by the UTF-8 encoded command line with the
+ * arguments separated by {@code NUL}, e.g. {@code initial\0--gln\01234\0...}. The response is the 4
+ * byte exit code of the command, a 4 byte length and the UTF-8 encoded output of the command. A
+ * connection can be used for several requests. Passwords must be passed as arguments, since there
+ * is no console to ask for them.
+ *
+ * <p>Every path argument of a request is resolved against {@code --root} and rejected if it is
+ * outside of it, after symbolic links are resolved. Manifests are not supported, the paths in their
+ * rows cannot be checked.
+ */
+@Command(
+    name = "serve",
+    mixinStandardHelpOptions = true,
+    description =
+        "Keep the generator running and execute requests received over a Unix domain socket")
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class Serve implements Callable<Void> {
+  private static final Logger LOG = Logger.getLogger(Serve.class.getSimpleName());
+
+  private static final Set<String> COMMANDS = Set.of("initial", "renew", "pem2p12", "lookup");
+  private static final String SEPARATOR = "\0";
+  private static final int MAX_REQUEST_SIZE = 1 << 20;
+  private static final String MANIFEST = "--manifest";
+
+  @Spec private CommandSpec spec;
+
+  @Option(
+      names = {"--socket"},
+      required = true,
+      description =
+          "Path of the Unix domain socket to listen on. Only the owner of the daemon can connect to it")
+  private Path socket;
+
+  @Option(
+      names = {"--root"},
+      description =
+          "Directory that contains every file a request may read or write. Relative paths of requests are resolved against it. Defaults to the working directory")
+  private Path root = Path.of("");
+
+  @Option(
+      names = {"--threads"},
+      description = "Number of requests handled concurrently. Defaults to the number of CPU cores")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Mixin private KeyCacheOptions keyCacheOptions;
+
+  @Override
+  public Void call() throws IOException {
+    if (this.threads < 1) {
+      throw new ParameterException(this.spec.commandLine(), "--threads must be at least 1");
+    }
+    final var confined = this.root.toRealPath();
+    // requests for the same keys only decrypt them once
+    this.keyCacheOptions.configureShared();
+    final var executor = Executors.newFixedThreadPool(this.threads);
+    try (var server = open(this.socket)) {
+      LOG.info(() -> "listening on " + this.socket + ", serving files in " + confined);
+      while (server.isOpen()) {
+        final var client = server.accept();
+        executor.execute(() -> handle(client, confined));
+      }
+    } finally {
+      executor.shutdown();
+      Files.deleteIfExists(this.socket);
+      KeyPairCache.shared().close();
+    }
+    return null;
+  }
+
+  private static void handle(final SocketChannel channel, final Path root) {
+    try (channel;
+        var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        var out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+      for (var request = readRequest(in); request.isPresent(); request = readRequest(in)) {
+        final var output = new StringWriter();
+        final int exitCode;
+        try (var writer = new PrintWriter(output)) {
+          exitCode = execute(request.get(), root, writer);
+        }
+        final var response = output.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(exitCode);
+        out.writeInt(response.length);
+        out.write(response);
+        out.flush();
+      }
+    } catch (IOException ex) {
+      LOG.warning(() -> "error handling connection: " + ex.getMessage());
+    }
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static Optional<String[]> readRequest(final DataInputStream in) throws IOException {
+    final int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException ex) {
+      // the client closed the connection
+      return Optional.empty();
+    }
+    if (length < 0 || length > MAX_REQUEST_SIZE) {
+      throw new IOException("invalid request size " + length);
+    }
+    final var payload = in.readNBytes(length);
+    if (payload.length != length) {
+      throw new EOFException("connection closed during request");
+    }
+    return Optional.of(new String(payload, StandardCharsets.UTF_8).split(SEPARATOR, -1));
+  }
+
+  /**
+   * Execute a request.
+   *
+   * @param args the command line
+   * @param root real path of the directory the paths of the request must be in
+   * @param output receives the output of the command
+   * @return the exit code of the command
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  /* default */ static int execute(final String[] args, final Path root, final PrintWriter output) {
+    if (args.length == 0 || !COMMANDS.contains(args[0])) {
+      output.println("unsupported command, expected one of " + COMMANDS);
+      return CommandLine.ExitCode.USAGE;
+    }
+    if (Arrays.stream(args)
+        .anyMatch(arg -> MANIFEST.equals(arg) || arg.startsWith(MANIFEST + "="))) {
+      output.println("manifests are not supported, their paths cannot be checked");
+      return CommandLine.ExitCode.USAGE;
+    }
+    return new CommandLine(new CSRGenerator())
+        .registerConverter(Path.class, value -> confine(root, value))
+        .setOut(output)
+        .setErr(output)
+        .execute(args);
+  }
+
+  /**
+   * Resolve a path of a request against {@code root}.
+   *
+   * @throws TypeConversionException if the path is outside of {@code root}
+   */
+  private static Path confine(final Path root, final String value) throws IOException {
+    final var path = root.resolve(value).normalize();
+    if (!real(path).startsWith(root)) {
+      throw new TypeConversionException(value + " is outside of " + root);
+    }
+    return path;
+  }
+
+  /** The path with the symbolic links of its existing ancestors resolved. */
+  private static Path real(final Path path) throws IOException {
+    var existing = path;
+    while (existing != null && !Files.exists(existing)) {
+      existing = existing.getParent();
+    }
+    return existing == null ? path : existing.toRealPath().resolve(existing.relativize(path));
+  }
+
+  private static ServerSocketChannel open(final Path socket) throws IOException {
+    final var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      bindPrivate(channel, socket);
+    } else {
+      channel.bind(UnixDomainSocketAddress.of(socket));
+    }
+    return channel;
+  }
+
+  /**
+   * Bind a Unix domain socket only the owner can connect to, requests contain key passwords. The
+   * JDK cannot set the umask, so the socket is bound in a new directory only the owner can
+   * access and moved to its path after its permissions are restricted. Other users never see a
+   * socket they could connect to.
+   */
+  private static void bindPrivate(final ServerSocketChannel channel, final Path socket)
+      throws IOException {
+    final var target = socket.toAbsolutePath();
+    if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+      // a rename would silently replace it
+      throw new FileAlreadyExistsException(target.toString());
+    }
+    final var dir =
+        Files.createTempDirectory(
+            target.getParent(),
+            ".serve",
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    final var bound = dir.resolve("socket");
+    try {
+      channel.bind(UnixDomainSocketAddress.of(bound));
+      Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+      Files.move(bound, target, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(bound);
+      Files.delete(dir);
+    }
+  }
+}
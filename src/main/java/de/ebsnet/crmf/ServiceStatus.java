@@ -0,0 +1,36 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+
+/** Subcommand to check if the SubCA's webservice is available. */
+@Command(
+    name = "status",
+    mixinStandardHelpOptions = true,
+    description = "Query the status of the SubCA's webservice")
+public final class ServiceStatus implements Callable<Integer> {
+  private static final Logger LOG = Logger.getLogger(ServiceStatus.class.getSimpleName());
+
+  @Mixin private ClientOptions clientOptions;
+
+  @Override
+  public Integer call() throws IOException, GeneralSecurityException {
+    try (var client = this.clientOptions.client(this.clientOptions.sslContext())) {
+      final var status =
+          client
+              .getServiceStatus()
+              .whenComplete(
+                  (code, ex) -> {
+                    if (ex == null) {
+                      LOG.info(() -> "status: " + code);
+                    }
+                  });
+      return ClientOptions.awaitAll(Map.of("status request", status));
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package de.ebsnet.crmf;
+
+import com.sun.xml.ws.api.message.Headers;
+import com.sun.xml.ws.developer.JAXWSProperties;
+import com.sun.xml.ws.developer.WSBindingProvider;
+import com.sun.xml.ws.fault.ServerSOAPFaultException;
+import de.ebsnet.crmf.data.RetryPolicy;
+import de.ebsnet.crmf.exception.RequestRejected;
+import de.ebsnet.crmf.util.HandshakeMetrics;
+import de.ebsnet.crmf.util.MeteredSocketFactory;
+import jakarta.xml.ws.BindingProvider;
+import jakarta.xml.ws.WebServiceException;
+import jakarta.xml.ws.soap.SOAPFaultException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.xml.namespace.QName;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.CallbackIndicatorType;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.CertificateRevocationRequestReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetCertificateChainReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.GetServiceStatusReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.RequestCertificateReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.RequestCertificateRes;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.UpdateDeviceAdminReq;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1_3.SmartMeterPortType;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1_3.SmartMeterService;
+
+/**
+ * Client for the {@code SmartMeterService} webservice of the SubCA.
+ *
+ * <p>All JAX-WS types are confined to this class and {@link CallbackEndpoint}. The subcommands only
+ * reference them from inside methods, so the SOAP stack is not loaded unless a request is actually
+ * sent.
+ *
+ * <p>The service description, the TLS context and the socket factory are created once per client.
+ * Ports are not shared between threads, every worker thread uses its own port, so connections are
+ * kept alive and TLS sessions are resumed across requests. The handshakes are counted in {@link
+ * HandshakeMetrics} and logged when the client is closed. Requests submitted to the worker threads
+ * are retried according to a {@link RetryPolicy}. Certificate, revocation and update requests are
+ * not idempotent, they are only retried if the webservice could not be reached at all.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads", "PMD.ExcessiveImports"})
+public final class SmartMeterClient implements AutoCloseable {
+  private static final Logger LOG = Logger.getLogger(SmartMeterClient.class.getSimpleName());
+
+  private static final String OK_SYNTAX = "ok_syntax";
+  private static final String OK_CERT_AVAILABLE = "ok_cert_available";
+  private static final String FAILURE = "failure";
+  private static final String CALLBACK_NOT_POSSIBLE = "callback_not_possible";
+
+  /** Message of the {@link SocketTimeoutException} of a connection that was not established. */
+  private static final String CONNECT_TIMED_OUT = "connect timed out";
+
+  /* default */ static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+  /* default */ static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+  private final URI uri;
+  private final HandshakeMetrics handshakes = new HandshakeMetrics();
+  private final SSLSocketFactory socketFactory;
+  private final Duration connectTimeout;
+  private final Duration requestTimeout;
+  private final RetryPolicy retryPolicy;
+  private final SmartMeterService service;
+  private final ThreadLocal<SmartMeterPortType> ports;
+  private final ExecutorService executor;
+
+  public SmartMeterClient(final URI uri, final SSLContext sslContext) {
+    this(uri, sslContext, 1, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, RetryPolicy.NONE);
+  }
+
+  /**
+   * Create a client that sends up to {@code parallelism} requests at the same time.
+   *
+   * @param uri address of the webservice
+   * @param sslContext TLS context with the client certificate
+   * @param parallelism maximum number of concurrent requests
+   * @param connectTimeout timeout to establish a connection
+   * @param requestTimeout timeout to wait for a response
+   * @param retryPolicy retries of requests submitted to the worker threads, if the webservice
+   *     cannot be reached or does not respond
+   */
+  public SmartMeterClient(
+      final URI uri,
+      final SSLContext sslContext,
+      final int parallelism,
+      final Duration connectTimeout,
+      final Duration requestTimeout,
+      final RetryPolicy retryPolicy) {
+    // 5 is the default of the JDK, if the client is used without CSRGenerator.init()
+    final var maxConnections = Integer.getInteger(CSRGenerator.MAX_CONNECTIONS, 5);
+    if (parallelism > maxConnections) {
+      LOG.warning(
+          () ->
+              "only "
+                  + maxConnections
+                  + " connections are kept alive, start the JVM with -D"
+                  + CSRGenerator.MAX_CONNECTIONS
+                  + "="
+                  + parallelism);
+    }
+    this.uri = uri;
+    this.socketFactory = new MeteredSocketFactory(sslContext.getSocketFactory(), this.handshakes);
+    this.connectTimeout = connectTimeout;
+    this.requestTimeout = requestTimeout;
+    this.retryPolicy = retryPolicy;
+    this.service = new SmartMeterService();
+    this.ports = ThreadLocal.withInitial(this::createPort);
+    this.executor = Executors.newFixedThreadPool(parallelism);
+  }
+
+  private SmartMeterPortType createPort() {
+    final var port = this.service.getSmartMeterServicePort();
+
+    final var context = ((BindingProvider) port).getRequestContext();
+    context.put(JAXWSProperties.SSL_SOCKET_FACTORY, this.socketFactory);
+    context.put(JAXWSProperties.CONNECT_TIMEOUT, (int) this.connectTimeout.toMillis());
+    context.put(JAXWSProperties.REQUEST_TIMEOUT, (int) this.requestTimeout.toMillis());
+    context.put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, this.uri.toString());
+
+    ((WSBindingProvider) port).setOutboundHeaders(Headers.create(new QName("certType"), "EMT"));
+    return port;
+  }
+
+  /**
+   * Send a CSR and wait for the certificates.
+   *
+   * @param csr DER encoded CSR
+   * @return the DER encoded certificates returned by the SubCA
+   */
+  public List<byte[]> requestCertificate(final byte[] csr) {
+    final var serviceStatus = request(csr, CallbackIndicatorType.CALLBACK_NOT_POSSIBLE, null);
+    return serviceStatus.getCertificateSeq() == null
+        ? List.of()
+        : serviceStatus.getCertificateSeq().getCertificate();
+  }
+
+  private RequestCertificateRes request(
+      final byte[] csr, final CallbackIndicatorType callbackIndicator, final String messageID) {
+    final var req = new RequestCertificateReq();
+    req.setCallbackIndicator(callbackIndicator);
+    req.setMessageID(messageID);
+    req.setCertReq(csr);
+    final var serviceStatus = invoke(port -> port.requestCertificate(req));
+    LOG.info(() -> "Return Code: " + serviceStatus.getReturnCode());
+    LOG.info(() -> "Return Code Message: " + serviceStatus.getReturnCodeMessage());
+    return serviceStatus;
+  }
+
+  /**
+   * Send a CSR on one of the worker threads. At most {@code parallelism} requests are sent at the
+   * same time, the remaining ones are queued.
+   *
+   * @param csr DER encoded CSR
+   * @return the DER encoded certificates returned by the SubCA
+   */
+  public CompletableFuture<List<byte[]>> submit(final byte[] csr) {
+    return call(false, () -> requestCertificate(csr));
+  }
+
+  /**
+   * Send a CSR with {@code callback_possible}. The worker thread is only used until the SubCA
+   * accepted the request, the certificates are delivered to {@code callbacks} later.
+   *
+   * @param csr DER encoded CSR
+   * @param callbacks endpoint the SubCA sends the certificates to
+   * @param timeout maximum time to wait for the callback
+   * @return the DER encoded certificates returned by the SubCA
+   */
+  public CompletableFuture<List<byte[]>> submit(
+      final byte[] csr, final CallbackEndpoint callbacks, final Duration timeout) {
+    final var messageID = UUID.randomUUID().toString();
+    final var result = callbacks.expect(messageID, timeout);
+    call(false, () -> request(csr, CallbackIndicatorType.CALLBACK_POSSIBLE, messageID))
+        .whenComplete(
+            (res, ex) -> {
+              if (ex != null) {
+                result.completeExceptionally(CSRPipeline.cause(ex));
+              } else if (OK_CERT_AVAILABLE.equals(res.getReturnCode())
+                  && res.getCertificateSeq() != null) {
+                // the SubCA answered synchronously
+                result.complete(res.getCertificateSeq().getCertificate());
+              } else if (!OK_SYNTAX.equals(res.getReturnCode())) {
+                result.completeExceptionally(
+                    new RequestRejected(res.getReturnCode(), res.getReturnCodeMessage()));
+              }
+            });
+    return result;
+  }
+
+  /**
+   * Request the certificate chain of a certificate.
+   *
+   * @param certReference reference of the certificate, as defined by the SubCA
+   * @return the DER encoded certificates of the chain
+   */
+  public CompletableFuture<List<byte[]>> getCertificateChain(final String certReference) {
+    return call(
+        true,
+        () -> {
+          final var req = new GetCertificateChainReq();
+          req.setCallbackIndicator(CallbackIndicatorType.CALLBACK_NOT_POSSIBLE);
+          req.setMessageID(UUID.randomUUID().toString());
+          req.setCertReference(certReference);
+          final var res = invoke(port -> port.getCertificateChain(req));
+          checkReturnCode(res.getReturnCode(), res.getReturnCodeMessage());
+          return res.getCertificateSequence() == null
+              ? List.of()
+              : res.getCertificateSequence().getCertificate();
+        });
+  }
+
+  /**
+   * Send a certificate revocation request.
+   *
+   * @param certRevReq DER encoded revocation request
+   * @return the return code of the SubCA
+   */
+  public CompletableFuture<String> revoke(final byte[] certRevReq) {
+    return call(
+        false,
+        () -> {
+          final var req = new CertificateRevocationRequestReq();
+          req.setCallbackIndicator(CALLBACK_NOT_POSSIBLE);
+          req.setMessageID(UUID.randomUUID().toString());
+          req.setCertRevReq(certRevReq);
+          final var res = invoke(port -> port.certificateRevocationRequest(req));
+          return checkReturnCode(res.getReturnCode(), res.getReturnCodeMessage());
+        });
+  }
+
+  /**
+   * Send a request to update the device administrator.
+   *
+   * @param updDevAdminReq DER encoded update request
+   * @return the return code of the SubCA
+   */
+  public CompletableFuture<String> updateDeviceAdmin(final byte[] updDevAdminReq) {
+    return call(
+        false,
+        () -> {
+          final var req = new UpdateDeviceAdminReq();
+          req.setCallbackIndicator(CALLBACK_NOT_POSSIBLE);
+          req.setMessageID(UUID.randomUUID().toString());
+          req.setUpdDevAdminReq(updDevAdminReq);
+          final var res = invoke(port -> port.updateDeviceAdmin(req));
+          return checkReturnCode(res.getReturnCode(), res.getReturnCodeMessage());
+        });
+  }
+
+  /**
+   * Check if the webservice is available.
+   *
+   * @return the return code and message of the SubCA
+   */
+  public CompletableFuture<String> getServiceStatus() {
+    return call(
+        true,
+        () -> {
+          final var req = new GetServiceStatusReq();
+          req.setMessageID(UUID.randomUUID().toString());
+          final var res = invoke(port -> port.getServiceStatus(req));
+          checkReturnCode(res.getReturnCode(), res.getReturnCodeMessage());
+          return res.getReturnCodeMessage() == null
+              ? res.getReturnCode()
+              : res.getReturnCode() + ": " + res.getReturnCodeMessage();
+        });
+  }
+
+  /**
+   * Invoke an operation with the port of the current thread and log SOAP faults.
+   *
+   * @param operation
+   * @return
+   */
+  private <T> T invoke(final Function<SmartMeterPortType, T> operation) {
+    try {
+      return operation.apply(this.ports.get());
+    } catch (ServerSOAPFaultException ssfe) {
+      LOG.severe(() -> ssfe.getFault().toString());
+      LOG.severe(() -> "Code: " + ssfe.getFault().getFaultCode());
+      LOG.severe(() -> "Text: " + ssfe.getFault().getFaultString());
+      throw ssfe;
+    }
+  }
+
+  private static String checkReturnCode(final String returnCode, final String message) {
+    if (returnCode == null || returnCode.startsWith(FAILURE)) {
+      throw new CompletionException(new RequestRejected(returnCode, message));
+    }
+    return returnCode;
+  }
+
+  private <T> CompletableFuture<T> call(final boolean idempotent, final Supplier<T> operation) {
+    return call(idempotent, operation, 0);
+  }
+
+  /**
+   * Run an operation on the worker threads. Failures are retried according to the {@link
+   * RetryPolicy} if they are {@link #retryable}, the delay does not block a worker thread.
+   */
+  private <T> CompletableFuture<T> call(
+      final boolean idempotent, final Supplier<T> operation, final int retry) {
+    final Executor executor =
+        retry == 0
+            ? this.executor
+            : CompletableFuture.delayedExecutor(
+                this.retryPolicy.backoff(retry).toMillis(), TimeUnit.MILLISECONDS, this.executor);
+    return CompletableFuture.supplyAsync(operation, executor)
+        .handle(
+            (result, ex) -> {
+              final var cause = ex == null ? null : CSRPipeline.cause(ex);
+              final CompletableFuture<T> next;
+              if (cause == null) {
+                next = CompletableFuture.completedFuture(result);
+              } else if (retryable(cause, idempotent) && retry < this.retryPolicy.retries()) {
+                LOG.warning(() -> "retrying after " + cause.getMessage());
+                next = call(idempotent, operation, retry + 1);
+              } else {
+                next = CompletableFuture.failedFuture(cause);
+              }
+              return next;
+            })
+        .thenCompose(Function.identity());
+  }
+
+  /**
+   * Whether a failed request may be sent again. SOAP faults are answers of the webservice and are
+   * never retried. A request that failed after the connection was established, e.g. with a read
+   * timeout, may already have been processed, so it is only retried if it is idempotent.
+   */
+  /* default */ static boolean retryable(final Throwable cause, final boolean idempotent) {
+    return cause instanceof WebServiceException
+        && !(cause instanceof SOAPFaultException)
+        && (idempotent || notConnected(cause));
+  }
+
+  /** Whether a failure happened before a connection to the webservice was established. */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static boolean notConnected(final Throwable failure) {
+    for (var cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ConnectException
+          || cause instanceof NoRouteToHostException
+          || cause instanceof UnknownHostException) {
+        return true;
+      }
+      if (cause instanceof SocketTimeoutException
+          && cause.getMessage() != null
+          && cause.getMessage().toLowerCase(Locale.ROOT).contains(CONNECT_TIMED_OUT)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counters of the TLS handshakes of all connections opened by this client.
+   *
+   * @return
+   */
+  public HandshakeMetrics handshakes() {
+    return this.handshakes;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdown();
+    LOG.info(() -> "TLS handshakes: " + this.handshakes);
+  }
+}
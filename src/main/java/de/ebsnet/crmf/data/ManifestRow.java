@@ -0,0 +1,39 @@
+package de.ebsnet.crmf.data;
+
+import de.ebsnet.crmf.exception.InvalidManifest;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A single row of a CSV manifest. Values are addressed by the column names of the header line.
+ *
+ * @param manifest path of the manifest this row was read from
+ * @param line line number inside the manifest, used for error messages
+ * @param values column name to value mapping
+ */
+public record ManifestRow(Path manifest, long line, Map<String, String> values) {
+  public Optional<String> optional(final String column) {
+    return Optional.ofNullable(values.get(column)).map(String::strip).filter(v -> !v.isEmpty());
+  }
+
+  public String required(final String column) throws InvalidManifest {
+    return optional(column)
+        .orElseThrow(
+            () -> new InvalidManifest(manifest, line, "missing value for column `" + column + "`"));
+  }
+
+  /**
+   * Relative paths are resolved against the directory of the manifest.
+   *
+   * @param column
+   * @return
+   */
+  public Optional<Path> optionalPath(final String column) {
+    return optional(column).map(manifest::resolveSibling);
+  }
+
+  public Path requiredPath(final String column) throws InvalidManifest {
+    return manifest.resolveSibling(required(column));
+  }
+}
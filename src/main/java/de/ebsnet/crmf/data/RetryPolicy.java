@@ -0,0 +1,29 @@
+package de.ebsnet.crmf.data;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff for requests to the SubCA.
+ *
+ * @param retries number of retries after the first attempt
+ * @param initialBackoff delay before the first retry
+ * @param maxBackoff upper bound for the delay
+ */
+public record RetryPolicy(int retries, Duration initialBackoff, Duration maxBackoff) {
+  public static final RetryPolicy NONE = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+  /**
+   * Delay before the given retry. The delay doubles with every retry and up to half of it is
+   * randomized, so a batch of failed requests is not retried at the same time.
+   *
+   * @param retry the retry, starting with 1
+   * @return
+   */
+  public Duration backoff(final int retry) {
+    final var exponential = initialBackoff.multipliedBy(1L << Math.min(retry - 1, 30));
+    final var capped = exponential.compareTo(maxBackoff) > 0 ? maxBackoff : exponential;
+    final var jitter = ThreadLocalRandom.current().nextLong(capped.toMillis() / 2 + 1);
+    return capped.minusMillis(jitter);
+  }
+}
@@ -0,0 +1,12 @@
+package de.ebsnet.crmf.exception;
+
+import java.io.Serial;
+import java.nio.file.Path;
+
+public final class InvalidManifest extends Exception {
+  @Serial private static final long serialVersionUID = 4307964719335062331L;
+
+  public InvalidManifest(final Path manifest, final long line, final String message) {
+    super(manifest + ":" + line + ": " + message);
+  }
+}
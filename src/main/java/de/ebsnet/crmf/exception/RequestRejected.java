@@ -0,0 +1,24 @@
+package de.ebsnet.crmf.exception;
+
+import java.io.Serial;
+
+/** The SubCA did not accept a request or could not process it. */
+public final class RequestRejected extends Exception {
+  @Serial private static final long serialVersionUID = 4632981735207312058L;
+
+  private final String returnCode;
+
+  public RequestRejected(final String returnCode, final String message) {
+    super(message == null ? returnCode : returnCode + ": " + message);
+    this.returnCode = returnCode;
+  }
+
+  /**
+   * The return code as defined by TR-03129-4, e.g. {@code failure_request_not_accepted}.
+   *
+   * @return
+   */
+  public String getReturnCode() {
+    return this.returnCode;
+  }
+}
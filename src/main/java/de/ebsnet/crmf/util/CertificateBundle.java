@@ -0,0 +1,315 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A file of PEM or concatenated DER certificates, e.g. a bundle of all certificates issued by a
+ * SubCA. Large files are memory-mapped and only scanned for the boundaries of their entries when
+ * they are opened. An entry is decoded from the mapped file when it is first accessed, so opening a
+ * bundle of thousands of certificates does not parse any of them. Decoded certificates are kept,
+ * all methods are thread safe.
+ */
+public final class CertificateBundle {
+  /** Smaller files are read into the heap, mapping them costs more than it saves. */
+  private static final long MAP_THRESHOLD = 64 * 1024;
+
+  private static final byte[] PEM_BEGIN =
+      "-----BEGIN CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] PEM_END =
+      "-----END CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+  private static final byte DER_SEQUENCE = 0x30;
+  private static final int DER_LONG_LENGTH = 0x80;
+  private static final int MAX_LENGTH_BYTES = 4;
+
+  private final ByteBuffer content;
+  private final boolean pem;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final AtomicReferenceArray<X509Certificate> decoded;
+
+  private CertificateBundle(
+      final ByteBuffer content, final boolean pem, final int[] offsets, final int[] lengths) {
+    this.content = content;
+    this.pem = pem;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.decoded = new AtomicReferenceArray<>(offsets.length);
+  }
+
+  /**
+   * Open a bundle and locate its entries.
+   *
+   * @param path file with PEM encoded certificates or concatenated DER certificates
+   * @return
+   * @throws IOException
+   * @throws CertificateException if the file is neither PEM nor DER
+   */
+  public static CertificateBundle open(final Path path) throws IOException, CertificateException {
+    return of(read(path));
+  }
+
+  /**
+   * Open a bundle whose entries are already known, e.g. from a {@link
+   * de.ebsnet.crmf.BundleIndex}. The file is not scanned.
+   *
+   * @param path the bundle
+   * @param pem whether the entries are PEM encoded
+   * @param offsets start of each entry, see {@link #offset(int)}
+   * @param lengths length of each entry, see {@link #length(int)}
+   * @return
+   * @throws IOException
+   */
+  public static CertificateBundle open(
+      final Path path, final boolean pem, final int[] offsets, final int[] lengths)
+      throws IOException {
+    return new CertificateBundle(
+        read(path).asReadOnlyBuffer(), pem, offsets.clone(), lengths.clone());
+  }
+
+  private static ByteBuffer read(final Path path) throws IOException {
+    final ByteBuffer content;
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final var size = channel.size();
+      if (size < MAP_THRESHOLD) {
+        content = ByteBuffer.allocate((int) size);
+        while (content.hasRemaining() && channel.read(content) >= 0) {
+          // read the complete file
+        }
+        content.flip();
+      } else {
+        // the mapping stays valid after the channel is closed
+        content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Locate the entries of a bundle that is already in memory.
+   *
+   * @param content PEM encoded certificates or concatenated DER certificates
+   * @return
+   * @throws CertificateException if the content is neither PEM nor DER
+   */
+  public static CertificateBundle of(final ByteBuffer content) throws CertificateException {
+    final var buffer = content.asReadOnlyBuffer();
+    final var pem = indexOf(buffer, PEM_BEGIN, 0) >= 0;
+    final var offsets = new IntList();
+    final var lengths = new IntList();
+    if (pem) {
+      scanPem(buffer, offsets, lengths);
+    } else {
+      scanDer(buffer, offsets, lengths);
+    }
+    return new CertificateBundle(buffer, pem, offsets.toArray(), lengths.toArray());
+  }
+
+  private static void scanPem(final ByteBuffer buffer, final IntList offsets, final IntList lengths)
+      throws CertificateException {
+    var begin = indexOf(buffer, PEM_BEGIN, 0);
+    while (begin >= 0) {
+      final var body = begin + PEM_BEGIN.length;
+      final var end = indexOf(buffer, PEM_END, body);
+      if (end < 0) {
+        throw new CertificateException("PEM certificate at offset " + begin + " is not terminated");
+      }
+      offsets.add(body);
+      lengths.add(end - body);
+      begin = indexOf(buffer, PEM_BEGIN, end + PEM_END.length);
+    }
+  }
+
+  private static void scanDer(final ByteBuffer buffer, final IntList offsets, final IntList lengths)
+      throws CertificateException {
+    var pos = 0;
+    final var limit = buffer.limit();
+    while (pos < limit) {
+      if (buffer.get(pos) != DER_SEQUENCE || pos + 1 >= limit) {
+        throw new CertificateException("no DER certificate at offset " + pos);
+      }
+      var header = 2;
+      var length = buffer.get(pos + 1) & 0xff;
+      if ((length & DER_LONG_LENGTH) != 0) {
+        final var count = length & ~DER_LONG_LENGTH;
+        if (count == 0 || count > MAX_LENGTH_BYTES || pos + 2 + count > limit) {
+          throw new CertificateException("invalid DER length at offset " + pos);
+        }
+        length = 0;
+        for (int idx = 0; idx < count; idx++) {
+          length = (length << Byte.SIZE) | (buffer.get(pos + 2 + idx) & 0xff);
+        }
+        header += count;
+      }
+      if (length < 0 || pos + header + length > limit) {
+        throw new CertificateException("truncated DER certificate at offset " + pos);
+      }
+      offsets.add(pos);
+      lengths.add(header + length);
+      pos += header + length;
+    }
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static int indexOf(final ByteBuffer buffer, final byte[] pattern, final int from) {
+    final var last = buffer.limit() - pattern.length;
+    outer:
+    for (int pos = from; pos <= last; pos++) {
+      for (int idx = 0; idx < pattern.length; idx++) {
+        if (buffer.get(pos + idx) != pattern[idx]) {
+          continue outer;
+        }
+      }
+      return pos;
+    }
+    return -1;
+  }
+
+  /**
+   * Number of certificates in the bundle.
+   *
+   * @return
+   */
+  public int size() {
+    return this.offsets.length;
+  }
+
+  public boolean isPem() {
+    return this.pem;
+  }
+
+  /**
+   * Start of an entry in the file. For PEM entries this is the first byte after the {@code BEGIN}
+   * line.
+   *
+   * @param index position of the certificate in the bundle
+   * @return
+   */
+  public int offset(final int index) {
+    return this.offsets[index];
+  }
+
+  /**
+   * Length of an entry in the file, see {@link #offset(int)}.
+   *
+   * @param index position of the certificate in the bundle
+   * @return
+   */
+  public int length(final int index) {
+    return this.lengths[index];
+  }
+
+  /**
+   * Decode a certificate of the bundle, or return the already decoded one.
+   *
+   * @param index position of the certificate in the bundle
+   * @return
+   * @throws CertificateException
+   */
+  public X509Certificate get(final int index) throws CertificateException {
+    var cert = this.decoded.get(index);
+    if (cert == null) {
+      cert = X509Util.decodeCertificate(new BufferInputStream(entry(index)));
+      if (!this.decoded.compareAndSet(index, null, cert)) {
+        cert = this.decoded.get(index);
+      }
+    }
+    return cert;
+  }
+
+  private ByteBuffer entry(final int index) {
+    final var slice = this.content.slice(this.offsets[index], this.lengths[index]);
+    return this.pem ? Base64.getMimeDecoder().decode(slice) : slice;
+  }
+
+  /**
+   * All certificates of the bundle, decoded on demand.
+   *
+   * @return
+   */
+  public Stream<X509Certificate> stream() {
+    return IntStream.range(0, size()).mapToObj(this::getUnchecked);
+  }
+
+  /**
+   * Decode all certificates of the bundle.
+   *
+   * @return
+   * @throws CertificateException
+   */
+  public X509Certificate[] toArray() throws CertificateException {
+    final var certs = new X509Certificate[size()];
+    for (int idx = 0; idx < certs.length; idx++) {
+      certs[idx] = get(idx);
+    }
+    return certs;
+  }
+
+  private X509Certificate getUnchecked(final int index) {
+    try {
+      return get(index);
+    } catch (CertificateException ex) {
+      throw new IllegalStateException("cannot decode certificate " + index, ex);
+    }
+  }
+
+  /** Reads a buffer without copying it into an array. */
+  private static final class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private BufferInputStream(final ByteBuffer buffer) {
+      super();
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    @SuppressWarnings("PMD.OnlyOneReturn")
+    public int read(final byte[] bytes, final int off, final int len) {
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      final var count = Math.min(len, this.buffer.remaining());
+      this.buffer.get(bytes, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return this.buffer.remaining();
+    }
+  }
+
+  /** Growable list of offsets, avoids boxing thousands of integers while scanning. */
+  private static final class IntList {
+    private int[] values = new int[16];
+    private int size;
+
+    private void add(final int value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = value;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(this.values, this.size);
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.security.auth.x500.X500Principal;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+
+/**
+ * Builds and verifies certificate chains from an unordered pool of CA certificates.
+ *
+ * <p>The pool is indexed by subject DN and SubjectKeyIdentifier, the issuer of a certificate is
+ * looked up by its AuthorityKeyIdentifier or, if it has none, by its issuer DN. Every link is
+ * checked by verifying the signature with the public key of the issuer through a {@link
+ * SignatureCache}. The chain of every pool certificate is memoized, so building the chains of many
+ * certificates issued by the same SubCA only verifies the signature of each leaf. Every built chain
+ * is checked by a {@link CertificateValidator} sharing that cache, so the validity periods,
+ * basicConstraints and keyUsage are checked on each build without verifying a signature again.
+ * Every chain must end in the pool, a self-signed certificate outside of it is not trusted. Only a
+ * builder with an empty pool, used when no trust chain is configured, ends chains at any
+ * self-signed certificate. Instances are thread safe.
+ */
+public final class CertificateChainBuilder {
+  /** Upper bound for the length of a chain, the SM-PKI only has three levels. */
+  private static final int MAX_CHAIN_LENGTH = 8;
+
+  private final Set<X509Certificate> pool;
+  private final SignatureCache signatures;
+  private final CertificateValidator validator;
+  private final Map<X500Principal, List<X509Certificate>> bySubject;
+  private final Map<String, List<X509Certificate>> byKeyId;
+  private final Map<X509Certificate, List<X509Certificate>> validated = new ConcurrentHashMap<>();
+
+  private CertificateChainBuilder(
+      final Set<X509Certificate> pool, final SignatureCache signatures) {
+    this.pool = pool;
+    this.signatures = signatures;
+    this.validator = new CertificateValidator(signatures);
+    this.bySubject =
+        pool.stream().collect(Collectors.groupingBy(X509Certificate::getSubjectX500Principal));
+    final var keyIds = new HashMap<String, List<X509Certificate>>();
+    for (final var cert : pool) {
+      final var keyId = X509Util.subjectKeyIdentifier(cert);
+      if (keyId != null) {
+        keyIds.computeIfAbsent(keyId, id -> new ArrayList<>()).add(cert);
+      }
+    }
+    this.byKeyId = Map.copyOf(keyIds);
+  }
+
+  /**
+   * Index a pool of CA certificates.
+   *
+   * @param pool root and SubCA certificates in any order
+   * @return
+   */
+  public static CertificateChainBuilder of(final Collection<X509Certificate> pool) {
+    return of(pool, new SignatureCache());
+  }
+
+  /**
+   * Index a pool of CA certificates and verify signatures through a shared cache.
+   *
+   * @param pool root and SubCA certificates in any order
+   * @param signatures cache of verified signatures
+   * @return
+   */
+  public static CertificateChainBuilder of(
+      final Collection<X509Certificate> pool, final SignatureCache signatures) {
+    return new CertificateChainBuilder(Set.copyOf(pool), signatures);
+  }
+
+  /**
+   * Load and index the certificates of PEM or DER files.
+   *
+   * @param paths files in any order
+   * @return
+   * @throws CertificateException
+   * @throws IOException
+   */
+  public static CertificateChainBuilder load(final Path... paths)
+      throws CertificateException, IOException {
+    return load(new SignatureCache(), paths);
+  }
+
+  /**
+   * Load and index the certificates of PEM or DER files and verify signatures through a shared
+   * cache.
+   *
+   * @param signatures cache of verified signatures
+   * @param paths files in any order
+   * @return
+   * @throws CertificateException
+   * @throws IOException
+   */
+  public static CertificateChainBuilder load(final SignatureCache signatures, final Path... paths)
+      throws CertificateException, IOException {
+    final var pool = new LinkedHashSet<X509Certificate>();
+    for (final var path : paths) {
+      pool.addAll(List.of(X509Util.loadCertificateChain(path)));
+    }
+    return of(pool, signatures);
+  }
+
+  /**
+   * The certificates of the pool that did not issue any other certificate of the pool, e.g. the
+   * SubCA of a trust chain.
+   *
+   * @return
+   */
+  public List<X509Certificate> leaves() {
+    final var issuers = new LinkedHashSet<X500Principal>();
+    for (final var cert : this.pool) {
+      if (!isSelfSigned(cert)) {
+        issuers.add(cert.getIssuerX500Principal());
+      }
+    }
+    return this.pool.stream()
+        .filter(cert -> !issuers.contains(cert.getSubjectX500Principal()))
+        .toList();
+  }
+
+  /**
+   * Build and validate the chain of a certificate up to a self-signed root.
+   *
+   * @param leaf the certificate to build the chain for
+   * @param intermediates additional certificates that are only used for this chain, in any order
+   * @return the chain, starting with {@code leaf} and ending with the root
+   * @throws InvalidCertificateChain if no issuer can be found, the chain does not end in the pool
+   *     or is invalid
+   */
+  public X509Certificate[] build(final X509Certificate leaf, final X509Certificate... intermediates)
+      throws InvalidCertificateChain {
+    return build(Optional.empty(), leaf, intermediates);
+  }
+
+  /**
+   * Build and validate the chain of a certificate up to a self-signed root, see {@link
+   * CertificateValidator#validate}.
+   *
+   * @param leafUsage key usage flags {@code leaf} must have, if any
+   * @param leaf the certificate to build the chain for
+   * @param intermediates additional certificates that are only used for this chain, in any order
+   * @return the chain, starting with {@code leaf} and ending with the root
+   * @throws InvalidCertificateChain if no issuer can be found, the chain does not end in the pool
+   *     or is invalid
+   */
+  public X509Certificate[] build(
+      final Optional<KeyUsage> leafUsage,
+      final X509Certificate leaf,
+      final X509Certificate... intermediates)
+      throws InvalidCertificateChain {
+    final var chain = path(leaf, intermediates);
+    this.validator.validate(new Date(), leafUsage, chain);
+    return chain;
+  }
+
+  /** Find the issuers of {@code leaf} and verify the signature of every link. */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private X509Certificate[] path(final X509Certificate leaf, final X509Certificate... intermediates)
+      throws InvalidCertificateChain {
+    final var extra = List.of(intermediates);
+    final var chain = new ArrayList<X509Certificate>();
+    var current = leaf;
+    while (!this.pool.contains(current)) {
+      chain.add(current);
+      if (isSelfSigned(current)) {
+        if (!this.pool.isEmpty()) {
+          throw new InvalidCertificateChain(
+              "certificate chain of "
+                  + leaf.getSubjectX500Principal()
+                  + " ends at the untrusted root "
+                  + current.getSubjectX500Principal());
+        }
+        this.signatures.verify(current, current);
+        return chain.toArray(new X509Certificate[0]);
+      }
+      if (chain.size() >= MAX_CHAIN_LENGTH) {
+        throw new InvalidCertificateChain(
+            "certificate chain of " + leaf.getSubjectX500Principal() + " is too long");
+      }
+      current = issuer(current, extra);
+    }
+    chain.addAll(validatedChain(current, chain.size()));
+    return chain.toArray(new X509Certificate[0]);
+  }
+
+  /** The memoized chain of a pool certificate. */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private List<X509Certificate> validatedChain(final X509Certificate cert, final int depth)
+      throws InvalidCertificateChain {
+    final var cached = this.validated.get(cert);
+    if (cached != null) {
+      return cached;
+    }
+    if (depth >= MAX_CHAIN_LENGTH) {
+      throw new InvalidCertificateChain(
+          "certificate chain of " + cert.getSubjectX500Principal() + " is too long");
+    }
+    final List<X509Certificate> chain;
+    if (isSelfSigned(cert)) {
+      this.signatures.verify(cert, cert);
+      chain = List.of(cert);
+    } else {
+      final var issuerChain = validatedChain(issuer(cert, List.of()), depth + 1);
+      final var links = new ArrayList<X509Certificate>(issuerChain.size() + 1);
+      links.add(cert);
+      links.addAll(issuerChain);
+      chain = List.copyOf(links);
+    }
+    this.validated.put(cert, chain);
+    return chain;
+  }
+
+  /**
+   * Find the certificate that issued {@code cert}, preferring {@code extra} over the pool.
+   *
+   * @throws InvalidCertificateChain if no candidate exists or none verifies the signature
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private X509Certificate issuer(final X509Certificate cert, final List<X509Certificate> extra)
+      throws InvalidCertificateChain {
+    final var issuerName = cert.getIssuerX500Principal();
+    final var keyId = authorityKeyId(cert);
+    final var candidates = new ArrayList<X509Certificate>();
+    for (final var candidate : extra) {
+      if (issuerName.equals(candidate.getSubjectX500Principal())) {
+        candidates.add(candidate);
+      }
+    }
+    var indexed = keyId == null ? null : this.byKeyId.get(keyId);
+    if (indexed == null) {
+      // the issuer might not have a SubjectKeyIdentifier
+      indexed = this.bySubject.get(issuerName);
+    }
+    if (indexed != null) {
+      for (final var candidate : indexed) {
+        if (issuerName.equals(candidate.getSubjectX500Principal())) {
+          candidates.add(candidate);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      throw new InvalidCertificateChain(
+          "no issuer found for " + cert.getSubjectX500Principal() + " issued by " + issuerName);
+    }
+    InvalidCertificateChain failure = null;
+    for (final var candidate : candidates) {
+      try {
+        this.signatures.verify(cert, candidate);
+        return candidate;
+      } catch (InvalidCertificateChain ex) {
+        failure = ex;
+      }
+    }
+    throw failure;
+  }
+
+  private static boolean isSelfSigned(final X509Certificate cert) {
+    return cert.getSubjectX500Principal().equals(cert.getIssuerX500Principal());
+  }
+
+  private static String authorityKeyId(final X509Certificate cert) {
+    final var value = cert.getExtensionValue(Extension.authorityKeyIdentifier.getId());
+    return value == null
+        ? null
+        : hex(
+            AuthorityKeyIdentifier.getInstance(ASN1OctetString.getInstance(value).getOctets())
+                .getKeyIdentifier());
+  }
+
+  private static String hex(final byte[] keyId) {
+    return keyId == null ? null : HexFormat.of().formatHex(keyId);
+  }
+}
@@ -0,0 +1,107 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateNotYetValidException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Optional;
+import org.bouncycastle.asn1.ASN1BitString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+
+/**
+ * Full validation of a certificate chain: the signature of every link, the validity period, the
+ * basicConstraints and keyUsage of the CA certificates and the keyUsage of the end entity. The
+ * signatures are verified through a {@link SignatureCache}, so a validator can be shared by many
+ * threads validating certificates of the same SubCAs.
+ */
+public final class CertificateValidator {
+  /** Position of the keyCertSign flag in {@link X509Certificate#getKeyUsage()}. */
+  private static final int KEY_CERT_SIGN = 5;
+
+  private final SignatureCache signatures;
+
+  public CertificateValidator(final SignatureCache signatures) {
+    this.signatures = signatures;
+  }
+
+  /**
+   * Validate a chain.
+   *
+   * @param date the date the certificates must be valid at
+   * @param leafUsage key usage flags the end entity certificate must have, if any
+   * @param chain the chain, starting with the end entity and ending with a self-signed root
+   * @throws InvalidCertificateChain describing the first violation
+   */
+  public void validate(
+      final Date date, final Optional<KeyUsage> leafUsage, final X509Certificate... chain)
+      throws InvalidCertificateChain {
+    if (chain.length == 0) {
+      throw new InvalidCertificateChain("certificate chain is empty");
+    }
+    X509Util.validateRoot(chain[chain.length - 1]);
+    for (int idx = 0; idx < chain.length; idx++) {
+      final var cert = chain[idx];
+      final var issuer = idx + 1 < chain.length ? chain[idx + 1] : cert;
+      checkValidity(cert, date);
+      X509Util.validateIssuedBy(cert, issuer);
+      this.signatures.verify(cert, issuer);
+      if (idx > 0) {
+        // the number of CA certificates between this one and the end entity
+        checkCA(cert, idx - 1);
+      }
+    }
+    if (leafUsage.isPresent()) {
+      checkKeyUsage(chain[0], leafUsage.get());
+    }
+  }
+
+  private static void checkValidity(final X509Certificate cert, final Date date)
+      throws InvalidCertificateChain {
+    try {
+      cert.checkValidity(date);
+    } catch (CertificateExpiredException | CertificateNotYetValidException ex) {
+      throw new InvalidCertificateChain(
+          cert.getSubjectX500Principal() + " is not valid at " + date.toInstant(), ex);
+    }
+  }
+
+  private static void checkCA(final X509Certificate cert, final int pathLength)
+      throws InvalidCertificateChain {
+    final var maxPathLength = cert.getBasicConstraints();
+    if (maxPathLength < 0) {
+      throw new InvalidCertificateChain(cert.getSubjectX500Principal() + " is not a CA");
+    }
+    if (pathLength > maxPathLength) {
+      throw new InvalidCertificateChain(
+          cert.getSubjectX500Principal() + " exceeds the path length constraint " + maxPathLength);
+    }
+    final var keyUsage = cert.getKeyUsage();
+    if (keyUsage != null && !keyUsage[KEY_CERT_SIGN]) {
+      throw new InvalidCertificateChain(
+          cert.getSubjectX500Principal() + " is not allowed to sign certificates");
+    }
+  }
+
+  private static void checkKeyUsage(final X509Certificate cert, final KeyUsage required)
+      throws InvalidCertificateChain {
+    final var value = cert.getExtensionValue(Extension.keyUsage.getId());
+    final KeyUsage actual;
+    try {
+      actual =
+          value == null
+              ? null
+              : KeyUsage.getInstance(JcaX509ExtensionUtils.parseExtensionValue(value));
+    } catch (IOException ex) {
+      throw new InvalidCertificateChain(ex);
+    }
+    final var flags = ASN1BitString.getInstance(required.toASN1Primitive()).intValue();
+    if (actual == null || !actual.hasUsages(flags)) {
+      throw new InvalidCertificateChain(
+          cert.getSubjectX500Principal() + " does not have the key usage " + required);
+    }
+  }
+}
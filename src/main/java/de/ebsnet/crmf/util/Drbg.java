@@ -0,0 +1,42 @@
+package de.ebsnet.crmf.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
+
+/** NIST SP 800-90A deterministic random bit generators, seeded from the strong JDK source. */
+public enum Drbg {
+  /** Hash_DRBG with SHA-512. */
+  HASH_SHA512,
+  /** HMAC_DRBG with HMAC-SHA-512. */
+  HMAC_SHA512,
+  /** CTR_DRBG with AES-256. */
+  CTR_AES256;
+
+  private static final int NONCE_SIZE = 32;
+  private static final int AES_KEY_SIZE = 256;
+  private static final byte[] PERSONALIZATION =
+      "EBSnet CSRGenerator".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Instantiate a new DRBG. The returned {@link SecureRandom} is thread safe.
+   *
+   * @return
+   * @throws NoSuchAlgorithmException if no strong entropy source is available
+   */
+  public SecureRandom build() throws NoSuchAlgorithmException {
+    final var entropy = SecureRandom.getInstanceStrong();
+    final var nonce = entropy.generateSeed(NONCE_SIZE);
+    final var builder =
+        new SP800SecureRandomBuilder(entropy, false).setPersonalizationString(PERSONALIZATION);
+    return switch (this) {
+      case HASH_SHA512 -> builder.buildHash(new SHA512Digest(), nonce, false);
+      case HMAC_SHA512 -> builder.buildHMAC(new HMac(new SHA512Digest()), nonce, false);
+      case CTR_AES256 -> builder.buildCTR(AESEngine.newInstance(), AES_KEY_SIZE, nonce, false);
+    };
+  }
+}
@@ -0,0 +1,56 @@
+package de.ebsnet.crmf.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counters for the TLS handshakes of a client. A handshake is counted as resumed if its session was
+ * created before the socket, i.e. it was taken from the session cache.
+ */
+public final class HandshakeMetrics {
+  private final LongAdder full = new LongAdder();
+  private final LongAdder resumed = new LongAdder();
+  private final Map<String, LongAdder> protocols = new ConcurrentHashMap<>();
+
+  /**
+   * Record a completed handshake.
+   *
+   * @param session the negotiated session
+   * @param socketCreated creation time of the socket in milliseconds since the epoch
+   */
+  public void record(final SSLSession session, final long socketCreated) {
+    if (session.getCreationTime() < socketCreated) {
+      this.resumed.increment();
+    } else {
+      this.full.increment();
+    }
+    this.protocols.computeIfAbsent(session.getProtocol(), protocol -> new LongAdder()).increment();
+  }
+
+  public long full() {
+    return this.full.sum();
+  }
+
+  public long resumed() {
+    return this.resumed.sum();
+  }
+
+  /**
+   * Number of handshakes per negotiated protocol, e.g. {@code TLSv1.3}.
+   *
+   * @return
+   */
+  public Map<String, Long> protocols() {
+    final var counts = new TreeMap<String, Long>();
+    this.protocols.forEach((protocol, count) -> counts.put(protocol, count.sum()));
+    return counts;
+  }
+
+  @Override
+  public String toString() {
+    return "full=" + full() + ", resumed=" + resumed() + ", protocols=" + protocols();
+  }
+}
@@ -0,0 +1,260 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of decrypted keys. Decrypting an encrypted PEM or PKCS#8 key runs a deliberately
+ * expensive KDF, so keys that are used for many operations, e.g. the previous key of renewals in a
+ * {@link de.ebsnet.crmf.Batch} or the keys of requests to {@link de.ebsnet.crmf.Serve}, are only
+ * decrypted once.
+ *
+ * <p>Entries are identified by the path, the modification time and a SHA-256 fingerprint of the
+ * file content and the password, so changed files or a different password never hit a cached key.
+ * Only the encoded keys are cached, every lookup returns a new {@link KeyPair}. Entries are
+ * evicted when they have not been used for the configured time or when the cache is full, the
+ * encoded private key is overwritten with zeros on eviction. Passwords are not retained.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class KeyPairCache implements AutoCloseable {
+  private static final Logger LOG = Logger.getLogger(KeyPairCache.class.getSimpleName());
+
+  /** Lower bound for the interval in which expired entries are evicted. */
+  private static final Duration MIN_PURGE_INTERVAL = Duration.ofSeconds(1);
+
+  /** Expired keys are evicted at most a quarter of the TTL late. */
+  private static final int PURGES_PER_TTL = 4;
+
+  private static volatile KeyPairCache shared = new KeyPairCache(0, Duration.ZERO);
+
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final Map<String, Entry> entries;
+  private final ScheduledFuture<?> purge;
+
+  /**
+   * @param maxEntries upper bound for the number of cached keys. {@code 0} disables the cache
+   * @param ttl time after which an unused key is evicted. {@link Duration#ZERO} disables the cache
+   */
+  public KeyPairCache(final int maxEntries, final Duration ttl) {
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttl.toNanos();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    if (isEnabled()) {
+      final var interval =
+          (ttl.compareTo(MIN_PURGE_INTERVAL.multipliedBy(PURGES_PER_TTL)) < 0
+                  ? MIN_PURGE_INTERVAL
+                  : ttl.dividedBy(PURGES_PER_TTL))
+              .toMillis();
+      this.purge =
+          Purger.EXECUTOR.scheduleWithFixedDelay(
+              this::evictExpired, interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      this.purge = null;
+    }
+  }
+
+  /**
+   * The process wide cache used by subcommands that can be executed by {@link
+   * de.ebsnet.crmf.Serve}. It is disabled unless it is configured with {@link #configureShared}.
+   *
+   * @return
+   */
+  public static KeyPairCache shared() {
+    return shared;
+  }
+
+  /**
+   * Replace the process wide cache. Keys of the previous cache are evicted.
+   *
+   * @param maxEntries upper bound for the number of cached keys
+   * @param ttl time after which an unused key is evicted
+   */
+  public static void configureShared(final int maxEntries, final Duration ttl) {
+    final KeyPairCache previous;
+    synchronized (KeyPairCache.class) {
+      previous = shared;
+      shared = new KeyPairCache(maxEntries, ttl);
+    }
+    previous.close();
+  }
+
+  private boolean isEnabled() {
+    return this.maxEntries > 0 && this.ttlNanos > 0;
+  }
+
+  /**
+   * Load a keypair, see {@link KeyPairUtil#loadKeyPair(Path, Optional)}. The key is only decrypted
+   * if it is not cached.
+   *
+   * @param path
+   * @param pass
+   * @return
+   * @throws IOException
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public KeyPair load(final Path path, final Optional<char[]> pass) throws IOException {
+    if (!isEnabled()) {
+      return KeyPairUtil.loadKeyPair(path, pass);
+    }
+    final var lastModified = Files.getLastModifiedTime(path);
+    final var content = Files.readAllBytes(path);
+    try {
+      final var id =
+          path.toAbsolutePath().normalize()
+              + ":"
+              + lastModified.toMillis()
+              + ":"
+              + fingerprint(content, pass);
+      final var cached = get(id);
+      if (cached != null) {
+        return cached;
+      }
+      final var keyPair = KeyPairUtil.loadKeyPair(content, path, pass);
+      put(id, new Entry(keyPair.getPrivate().getEncoded(), keyPair.getPublic().getEncoded()));
+      return keyPair;
+    } finally {
+      Arrays.fill(content, (byte) 0);
+    }
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private KeyPair get(final String id) throws IOException {
+    synchronized (this.entries) {
+      final var entry = this.entries.get(id);
+      if (entry == null) {
+        return null;
+      }
+      entry.lastUsed = System.nanoTime();
+      // decode while holding the lock, so the entry cannot be zeroized concurrently
+      return KeyPairUtil.decodeKeyPair(entry.privateKey, entry.publicKey);
+    }
+  }
+
+  private void put(final String id, final Entry entry) {
+    synchronized (this.entries) {
+      final var replaced = this.entries.put(id, entry);
+      if (replaced != null) {
+        replaced.destroy();
+      }
+      final var iter = this.entries.values().iterator();
+      while (this.entries.size() > this.maxEntries && iter.hasNext()) {
+        // least recently used first
+        iter.next().destroy();
+        iter.remove();
+      }
+    }
+  }
+
+  private void evictExpired() {
+    final var now = System.nanoTime();
+    var evicted = 0;
+    synchronized (this.entries) {
+      final var iter = this.entries.values().iterator();
+      while (iter.hasNext()) {
+        final var entry = iter.next();
+        if (now - entry.lastUsed >= this.ttlNanos) {
+          entry.destroy();
+          iter.remove();
+          evicted++;
+        }
+      }
+    }
+    final var count = evicted;
+    if (count > 0) {
+      LOG.fine(() -> "evicted " + count + " expired keys");
+    }
+  }
+
+  /**
+   * Number of cached keys.
+   *
+   * @return
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /** Evict all keys. The cache can still be used afterwards. */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.values().forEach(Entry::destroy);
+      this.entries.clear();
+    }
+  }
+
+  /** Evict all keys and stop evicting expired keys in the background. */
+  @Override
+  public void close() {
+    if (this.purge != null) {
+      this.purge.cancel(false);
+    }
+    clear();
+  }
+
+  private static String fingerprint(final byte[] content, final Optional<char[]> pass)
+      throws IOException {
+    try {
+      final var digest = MessageDigest.getInstance("SHA-256");
+      digest.update(content);
+      if (pass.isPresent()) {
+        final var encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pass.get()));
+        digest.update((byte) 0);
+        digest.update(encoded.duplicate());
+        // do not leave the encoded password behind
+        Arrays.fill(encoded.array(), (byte) 0);
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException("SHA-256 is not available", ex);
+    }
+  }
+
+  /** The encoded keys of a cached keypair. */
+  private static final class Entry {
+    private final byte[] privateKey;
+    private final byte[] publicKey;
+    private long lastUsed = System.nanoTime();
+
+    private Entry(final byte[] privateKey, final byte[] publicKey) {
+      this.privateKey = privateKey;
+      this.publicKey = publicKey;
+    }
+
+    private void destroy() {
+      Arrays.fill(this.privateKey, (byte) 0);
+    }
+  }
+
+  /** Evicts expired entries of all caches, created on first use. */
+  private static final class Purger {
+    private static final ScheduledExecutorService EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final var thread = new Thread(runnable, "key-cache-purge");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    private Purger() {}
+  }
+}
@@ -0,0 +1,120 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.data.Triple;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates key pairs in the background, so consumers do not have to wait for key generation as
+ * long as the pool is filled faster than it is drained. If a generator fails, every following
+ * {@link #take} fails with its exception instead of waiting for a key pair that never comes.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class KeyPairPool implements AutoCloseable {
+  /** Interval consumers check for failed generators while waiting for a key pair. */
+  private static final long POLL_MILLIS = 100;
+
+  private final BlockingQueue<KeyPair> pool;
+  private final ExecutorService generators;
+  private final SecureRandom random;
+
+  /** The first exception of a generator. */
+  private volatile Throwable failure;
+
+  private volatile boolean closed;
+
+  /**
+   * Start filling the pool.
+   *
+   * @param curve name of the curve, e.g. {@code brainpoolP256r1}
+   * @param random source of randomness for key generation
+   * @param capacity number of key pairs to generate in advance
+   * @param threads number of background threads generating key pairs
+   * @throws GeneralSecurityException if the curve is not supported
+   */
+  public KeyPairPool(
+      final String curve, final SecureRandom random, final int capacity, final int threads)
+      throws GeneralSecurityException {
+    this.pool = new ArrayBlockingQueue<>(capacity);
+    this.random = random;
+    this.generators =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              final var thread = new Thread(runnable, "key-pair-pool");
+              thread.setDaemon(true);
+              return thread;
+            });
+    for (int idx = 0; idx < threads; idx++) {
+      // create the generators up front so an unsupported curve fails here
+      final var generator = KeyPairUtil.keyPairGenerator(curve, random);
+      this.generators.execute(() -> fill(generator));
+    }
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private void fill(final KeyPairGenerator generator) {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        this.pool.put(generator.generateKeyPair());
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException | Error ex) {
+      // providers report failures as ProviderException, e.g. of the source of randomness
+      if (this.failure == null) {
+        this.failure = ex;
+      }
+    }
+  }
+
+  /**
+   * The source of randomness used by this pool.
+   *
+   * @return
+   */
+  public SecureRandom random() {
+    return this.random;
+  }
+
+  /**
+   * Take a key pair, waiting for one to be generated if the pool is empty.
+   *
+   * @return
+   * @throws InterruptedException
+   * @throws GeneralSecurityException if a generator failed
+   * @throws IllegalStateException if the pool was closed
+   */
+  public KeyPair take() throws InterruptedException, GeneralSecurityException {
+    KeyPair keyPair = null;
+    while (keyPair == null) {
+      final var failed = this.failure;
+      if (failed != null) {
+        throw new GeneralSecurityException("key generation failed: " + failed, failed);
+      }
+      if (this.closed) {
+        throw new IllegalStateException("the key pair pool is closed");
+      }
+      keyPair = this.pool.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    return keyPair;
+  }
+
+  public Triple<KeyPair> takeTriple() throws InterruptedException, GeneralSecurityException {
+    return new Triple<>(take(), take(), take());
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.generators.shutdownNow();
+    this.pool.clear();
+  }
+}
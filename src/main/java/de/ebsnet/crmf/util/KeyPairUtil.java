@@ -1,13 +1,23 @@
 package de.ebsnet.crmf.util;
 
 import de.ebsnet.crmf.exception.CannotLoadKey;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.SecureRandom;
 import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECGenParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
@@ -20,11 +30,28 @@ import org.bouncycastle.openssl.PEMEncryptedKeyPair;
 import org.bouncycastle.openssl.PEMException;
 import org.bouncycastle.openssl.PEMKeyPair;
 import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.PKCS8Generator;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.openssl.jcajce.JcaPKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.OutputEncryptor;
 import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
 import org.bouncycastle.pkcs.PKCSException;
 
 public final class KeyPairUtil {
+  /** PBKDF2 iterations used to encrypt generated keys. */
+  private static final int PKCS8_ITERATIONS = 100_000;
+
+  /** The converter is stateless once the provider is set and is shared by all threads. */
+  private static final JcaPEMKeyConverter KEY_CONVERTER =
+      new JcaPEMKeyConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME);
+
+  /** EC key factory of the BouncyCastle provider, looked up once per thread. */
+  private static final ThreadLocal<KeyFactory> EC_KEY_FACTORY =
+      ThreadLocal.withInitial(KeyPairUtil::newKeyFactory);
+
   /**
    * Load an EC keypair from disk.
    *
@@ -32,10 +59,32 @@ public final class KeyPairUtil {
    * @return
    * @throws IOException
    */
-  @SuppressWarnings("PMD.OnlyOneReturn")
   public static KeyPair loadKeyPair(final Path path, final Optional<char[]> pass)
       throws IOException {
-    try (var parser = new PEMParser(Files.newBufferedReader(path))) {
+    return loadKeyPair(Files.newBufferedReader(path), path, pass);
+  }
+
+  /**
+   * Load an EC keypair from the content of a PEM file that was already read.
+   *
+   * @param pem content of the file
+   * @param path the file, only used to prompt for the password
+   * @param pass
+   * @return
+   * @throws IOException
+   */
+  /* default */ static KeyPair loadKeyPair(
+      final byte[] pem, final Path path, final Optional<char[]> pass) throws IOException {
+    return loadKeyPair(
+        new InputStreamReader(new ByteArrayInputStream(pem), StandardCharsets.US_ASCII),
+        path,
+        pass);
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static KeyPair loadKeyPair(
+      final Reader reader, final Path path, final Optional<char[]> pass) throws IOException {
+    try (var parser = new PEMParser(reader)) {
       for (var parsed = parser.readObject(); parsed != null; parsed = parser.readObject()) {
         if (parsed instanceof PEMKeyPair pkp) {
           return loadPEMKeyPair(pkp);
@@ -68,8 +117,7 @@ public final class KeyPairUtil {
 
   private static KeyPair loadECKeyPair(final PrivateKeyInfo privateKeyInfo) throws CannotLoadKey {
     try {
-      final var keyFactory =
-          new NamedJcaJceHelper(BouncyCastleProvider.PROVIDER_NAME).createKeyFactory("EC");
+      final var keyFactory = EC_KEY_FACTORY.get();
       final var privateKey =
           keyFactory.generatePrivate(new PKCS8EncodedKeySpec(privateKeyInfo.getEncoded()));
 
@@ -85,15 +133,32 @@ public final class KeyPairUtil {
                         .getEncoded()));
         return new KeyPair(publicKey, ecPrivateKey);
       }
-    } catch (IOException
-        | InvalidKeySpecException
-        | NoSuchAlgorithmException
-        | NoSuchProviderException e) {
+    } catch (IOException | InvalidKeySpecException e) {
       throw new CannotLoadKey("unable to convert key pair: " + e.getMessage(), e);
     }
     throw new CannotLoadKey("does not look like a EC key");
   }
 
+  /**
+   * Rebuild an EC keypair from its encoded keys, without decrypting the file again.
+   *
+   * @param pkcs8 encoded private key
+   * @param spki encoded public key
+   * @return
+   * @throws CannotLoadKey
+   */
+  /* default */ static KeyPair decodeKeyPair(final byte[] pkcs8, final byte[] spki)
+      throws CannotLoadKey {
+    try {
+      final var keyFactory = EC_KEY_FACTORY.get();
+      return new KeyPair(
+          keyFactory.generatePublic(new X509EncodedKeySpec(spki)),
+          keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pkcs8)));
+    } catch (InvalidKeySpecException e) {
+      throw new CannotLoadKey("unable to convert key pair: " + e.getMessage(), e);
+    }
+  }
+
   private static KeyPair loadPEMEncryptedKeyPair(
       final PEMEncryptedKeyPair pemEncryptedKeyPair, final Path path, final Optional<char[]> pass)
       throws IOException {
@@ -102,9 +167,67 @@ public final class KeyPairUtil {
   }
 
   private static KeyPair loadPEMKeyPair(final PEMKeyPair pemKeyPair) throws PEMException {
-    return new JcaPEMKeyConverter()
-        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-        .getKeyPair(pemKeyPair);
+    return KEY_CONVERTER.getKeyPair(pemKeyPair);
+  }
+
+  private static KeyFactory newKeyFactory() {
+    try {
+      return new NamedJcaJceHelper(BouncyCastleProvider.PROVIDER_NAME).createKeyFactory("EC");
+    } catch (NoSuchAlgorithmException | NoSuchProviderException ex) {
+      throw new IllegalStateException("EC key factory is not available", ex);
+    }
+  }
+
+  /**
+   * Create a {@link KeyPairGenerator} for EC keys on {@code curve}.
+   *
+   * @param curve name of the curve, e.g. {@code brainpoolP256r1}
+   * @param random
+   * @return
+   * @throws GeneralSecurityException
+   */
+  public static KeyPairGenerator keyPairGenerator(final String curve, final SecureRandom random)
+      throws GeneralSecurityException {
+    final var gen = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+    gen.initialize(new ECGenParameterSpec(curve), random);
+    return gen;
+  }
+
+  public static KeyPair generateKeyPair(final String curve, final SecureRandom random)
+      throws GeneralSecurityException {
+    return keyPairGenerator(curve, random).generateKeyPair();
+  }
+
+  /**
+   * Write the private key as password protected PKCS#8 (PBES2 with PBKDF2-HMAC-SHA256 and
+   * AES-256-CBC). Existing files are never overwritten.
+   *
+   * @param path
+   * @param keyPair
+   * @param pass
+   * @param random used for salt and IV
+   * @throws IOException
+   */
+  public static void writeEncryptedKeyPair(
+      final Path path, final KeyPair keyPair, final char[] pass, final SecureRandom random)
+      throws IOException {
+    final OutputEncryptor encryptor;
+    try {
+      encryptor =
+          new JceOpenSSLPKCS8EncryptorBuilder(PKCS8Generator.AES_256_CBC)
+              .setPRF(PKCS8Generator.PRF_HMACSHA256)
+              .setIterationCount(PKCS8_ITERATIONS)
+              .setRandom(random)
+              .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+              .setPassword(pass)
+              .build();
+    } catch (OperatorCreationException e) {
+      throw new IOException("cannot encrypt private key: " + e.getMessage(), e);
+    }
+    try (var writer =
+        new JcaPEMWriter(Files.newBufferedWriter(path, StandardOpenOption.CREATE_NEW))) {
+      writer.writeObject(new JcaPKCS8Generator(keyPair.getPrivate(), encryptor));
+    }
   }
 
   private KeyPairUtil() {}
@@ -0,0 +1,421 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Applies alias additions and removals to a PKCS#12 keystore without ever leaving a partially
+ * written file behind.
+ *
+ * <p>Changes are queued and applied in batches: the first change starts a coalescing window and
+ * every change submitted until the window closes is written together, so frequent small updates
+ * only rewrite the keystore once per window. A batch is written to a temporary file in the same
+ * directory, forced to disk and moved over the keystore atomically, then the directory is forced
+ * as well so the rename survives a crash. Optionally the previous generations are kept as {@code
+ * <keystore>.1} to {@code <keystore>.K}.
+ *
+ * <p>There is one updater per keystore and process, so concurrent requests of {@link
+ * de.ebsnet.crmf.Serve} for the same keystore are coalesced. The entries of the keystore are kept
+ * between batches as {@link PKCS12Builder.KeyEntry prepared} bags, encrypted with the configured
+ * {@link PKCS12Profile}, and only read again if the file was changed by someone else. A batch only
+ * runs the KDF for the keys it adds, the certificate bag and the MAC, not for every key of the
+ * keystore.
+ *
+ * <p>An updater that has nothing to write for {@link #IDLE} is dropped together with the password
+ * and the entries it holds; the next change of the keystore loads it again.
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class KeyStoreUpdater {
+  private static final Logger LOG = Logger.getLogger(KeyStoreUpdater.class.getSimpleName());
+
+  private static final Map<Path, KeyStoreUpdater> UPDATERS = new ConcurrentHashMap<>();
+
+  /** Time after the last batch an updater is kept for further changes. */
+  /* default */ static final Duration IDLE = Duration.ofMinutes(5);
+
+  private final Path path;
+  private final char[] password;
+  private final Duration window;
+  private final int generations;
+  private final PKCS12Profile profile;
+  private final int iterations;
+
+  /** Changes of the current window, guarded by {@code this}. */
+  private List<Change> pending = new ArrayList<>();
+
+  /** Number of written batches, guarded by {@code this}. */
+  private long batches;
+
+  /** Whether the updater was dropped from {@link #UPDATERS}, guarded by {@code this}. */
+  private boolean retired;
+
+  /** Encrypts the keys of the entries, only used for {@link PKCS12Builder#prepare}. */
+  private final PKCS12Builder encoder;
+
+  /** The key entries of the keystore, {@code null} if not loaded. Only used by the writer. */
+  private Map<String, PKCS12Builder.KeyEntry> keys;
+
+  /** The trusted certificate entries of the keystore. Only used by the writer. */
+  private Map<String, X509Certificate> certificates;
+
+  private FileTime loadedModified;
+
+  private KeyStoreUpdater(
+      final Path path,
+      final char[] password,
+      final Duration window,
+      final int generations,
+      final PKCS12Profile profile,
+      final int iterations) {
+    this.path = path;
+    this.password = password.clone();
+    this.window = window;
+    this.generations = generations;
+    this.profile = profile;
+    this.iterations = iterations;
+    this.encoder = new PKCS12Builder(password, profile, iterations);
+  }
+
+  /**
+   * The updater of a keystore, written with the default iterations of {@link
+   * PKCS12Profile#PBES2_AES256}.
+   *
+   * @param path the keystore, created by the first batch if it does not exist
+   * @param password password of the keystore and its keys
+   * @param window time changes are collected before they are written
+   * @param generations number of previous versions that are kept
+   * @return
+   */
+  public static KeyStoreUpdater of(
+      final Path path, final char[] password, final Duration window, final int generations) {
+    return of(
+        path,
+        password,
+        window,
+        generations,
+        PKCS12Profile.PBES2_AES256,
+        PKCS12Profile.PBES2_AES256.iterations());
+  }
+
+  /**
+   * The updater of a keystore. While an updater of the keystore is in use, the password, the
+   * window, the number of generations and the protection must be the same for every call.
+   *
+   * @param path the keystore, created by the first batch if it does not exist
+   * @param password password of the keystore and its keys
+   * @param window time changes are collected before they are written
+   * @param generations number of previous versions that are kept
+   * @param profile algorithms of the key encryption and the integrity MAC
+   * @param iterations KDF iterations of the key encryption and the integrity MAC
+   * @return
+   * @throws IllegalArgumentException if the keystore is already updated with other settings
+   */
+  public static KeyStoreUpdater of(
+      final Path path,
+      final char[] password,
+      final Duration window,
+      final int generations,
+      final PKCS12Profile profile,
+      final int iterations) {
+    final var updater =
+        UPDATERS.computeIfAbsent(
+            path.toAbsolutePath().normalize(),
+            absolute -> {
+              final var created =
+                  new KeyStoreUpdater(absolute, password, window, generations, profile, iterations);
+              created.scheduleRetire(0);
+              return created;
+            });
+    if (!Arrays.equals(updater.password, password)) {
+      throw new IllegalArgumentException("the keystore " + path + " uses a different password");
+    }
+    if (!updater.window.equals(window)
+        || updater.generations != generations
+        || updater.profile != profile
+        || updater.iterations != iterations) {
+      throw new IllegalArgumentException(
+          "the keystore "
+              + path
+              + " is already updated with another window, number of generations or profile");
+    }
+    return updater;
+  }
+
+  /**
+   * Queue a new key entry.
+   *
+   * @param alias must not exist in the keystore
+   * @param key
+   * @param chain certificate chain of the key
+   * @return completes when the keystore containing the entry was written
+   */
+  public CompletableFuture<Void> add(
+      final String alias, final PrivateKey key, final X509Certificate... chain) {
+    return submit(new Change(alias, key, chain.clone(), new CompletableFuture<>()));
+  }
+
+  /**
+   * Queue the removal of an entry.
+   *
+   * @param alias must exist in the keystore
+   * @return completes when the keystore without the entry was written
+   */
+  public CompletableFuture<Void> remove(final String alias) {
+    return submit(new Change(alias, null, null, new CompletableFuture<>()));
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private CompletableFuture<Void> submit(final Change change) {
+    synchronized (this) {
+      if (!this.retired) {
+        this.pending.add(change);
+        if (this.pending.size() == 1) {
+          // the first change of a window schedules the write of the whole batch
+          Writer.EXECUTOR.schedule(this::write, this.window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return change.done();
+      }
+    }
+    // a caller kept the updater while it was idle, continue with the current one
+    final var current =
+        of(this.path, this.password, this.window, this.generations, this.profile, this.iterations);
+    return current.submit(change);
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private void write() {
+    final List<Change> batch;
+    synchronized (this) {
+      batch = this.pending;
+      this.pending = new ArrayList<>();
+    }
+    try {
+      load();
+      final var applied = new ArrayList<Change>(batch.size());
+      for (final var change : batch) {
+        try {
+          apply(change);
+          applied.add(change);
+        } catch (IOException | GeneralSecurityException | IllegalStateException ex) {
+          change.done().completeExceptionally(ex);
+        }
+      }
+      if (!applied.isEmpty()) {
+        store();
+      }
+      final var count = applied.size();
+      LOG.info(() -> "applied " + count + " of " + batch.size() + " changes to " + this.path);
+      applied.forEach(change -> change.done().complete(null));
+    } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+      // the entries in memory may contain changes that were not written
+      this.keys = null;
+      batch.forEach(change -> change.done().completeExceptionally(ex));
+    }
+    final long written;
+    synchronized (this) {
+      written = ++this.batches;
+    }
+    scheduleRetire(written);
+  }
+
+  private void scheduleRetire(final long written) {
+    Writer.EXECUTOR.schedule(() -> retire(written), IDLE.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /** Drop the updater if no batch was written after batch {@code written}. */
+  private void retire(final long written) {
+    synchronized (this) {
+      if (this.batches == written && this.pending.isEmpty()) {
+        this.retired = true;
+        this.keys = null;
+        this.certificates = null;
+        UPDATERS.remove(this.path, this);
+      }
+    }
+  }
+
+  private void apply(final Change change) throws IOException, GeneralSecurityException {
+    final var alias = change.alias();
+    final var exists = this.keys.containsKey(alias) || this.certificates.containsKey(alias);
+    if (change.key() == null) {
+      if (!exists) {
+        throw new IllegalStateException("alias " + alias + " does not exist");
+      }
+      this.keys.remove(alias);
+      this.certificates.remove(alias);
+    } else {
+      if (exists) {
+        throw new IllegalStateException("alias already exists in the keystore");
+      }
+      this.keys.put(alias, this.encoder.prepare(alias, change.key(), change.chain()));
+    }
+  }
+
+  /**
+   * Read the keystore if it was not loaded yet or changed on disk. Every key of the file is
+   * encrypted again with the configured profile, this is the only time existing keys are encrypted.
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private void load() throws IOException, GeneralSecurityException {
+    final var modified = Files.exists(this.path) ? Files.getLastModifiedTime(this.path) : null;
+    if (this.keys != null && isSame(modified)) {
+      return;
+    }
+    final var keyEntries = new LinkedHashMap<String, PKCS12Builder.KeyEntry>();
+    final var certEntries = new LinkedHashMap<String, X509Certificate>();
+    if (modified != null) {
+      final var keyStore = KeyStore.getInstance("PKCS12", BouncyCastleProvider.PROVIDER_NAME);
+      try (var stream = Files.newInputStream(this.path)) {
+        keyStore.load(stream, this.password);
+      }
+      for (final var alias : Collections.list(keyStore.aliases())) {
+        if (keyStore.isKeyEntry(alias)) {
+          final var chain = keyStore.getCertificateChain(alias);
+          keyEntries.put(
+              alias,
+              this.encoder.prepare(
+                  alias,
+                  (PrivateKey) keyStore.getKey(alias, this.password),
+                  Arrays.copyOf(chain, chain.length, X509Certificate[].class)));
+        } else {
+          certEntries.put(alias, (X509Certificate) keyStore.getCertificate(alias));
+        }
+      }
+    }
+    this.keys = keyEntries;
+    this.certificates = certEntries;
+    this.loadedModified = modified;
+  }
+
+  private boolean isSame(final FileTime modified) {
+    return modified == null ? this.loadedModified == null : modified.equals(this.loadedModified);
+  }
+
+  private void store() throws IOException {
+    // KeyStore#store would use the fixed algorithms and iterations of the provider
+    final var encoded = new PKCS12Builder(this.password, this.profile, this.iterations);
+    for (final var entry : this.keys.values()) {
+      encoded.add(entry);
+    }
+    for (final var entry : this.certificates.entrySet()) {
+      encoded.addCertificate(entry.getKey(), entry.getValue());
+    }
+    replace(this.path, encoded.build(), this.generations);
+    this.loadedModified = Files.getLastModifiedTime(this.path);
+  }
+
+  /**
+   * Atomically replace a file with new content, keeping previous versions.
+   *
+   * @param path the file to replace
+   * @param content
+   * @param generations number of previous versions that are kept
+   * @throws IOException
+   */
+  public static void replace(final Path path, final byte[] content, final int generations)
+      throws IOException {
+    final var tmp = temporary(path);
+    try {
+      try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+        final var buffer = ByteBuffer.wrap(content);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      swap(tmp, path, generations);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static Path temporary(final Path path) throws IOException {
+    final var absolute = path.toAbsolutePath();
+    return Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+  }
+
+  private static void swap(final Path tmp, final Path path, final int generations)
+      throws IOException {
+    if (generations > 0 && Files.exists(path)) {
+      Files.deleteIfExists(generation(path, generations));
+      for (int idx = generations - 1; idx > 0; idx--) {
+        final var older = generation(path, idx);
+        if (Files.exists(older)) {
+          Files.move(older, generation(path, idx + 1), StandardCopyOption.ATOMIC_MOVE);
+        }
+      }
+      // the current keystore stays in place until the new one replaces it
+      try {
+        Files.createLink(generation(path, 1), path);
+      } catch (UnsupportedOperationException | FileSystemException ex) {
+        Files.copy(path, generation(path, 1), StandardCopyOption.COPY_ATTRIBUTES);
+      }
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    force(path.toAbsolutePath().getParent());
+  }
+
+  /** Force the entries of a directory to disk, i.e. the renames of the new file and generations. */
+  private static void force(final Path directory) throws IOException {
+    try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (AccessDeniedException ex) {
+      // directories cannot be opened on Windows, where the move is durable anyway
+      LOG.fine(() -> "cannot force directory " + directory + ": " + ex.getMessage());
+    }
+  }
+
+  private static Path generation(final Path path, final int generation) {
+    return path.resolveSibling(path.getFileName() + "." + generation);
+  }
+
+  /**
+   * A queued change.
+   *
+   * @param alias
+   * @param key the key to add, {@code null} to remove the alias
+   * @param chain
+   * @param done
+   */
+  private record Change(
+      String alias, PrivateKey key, X509Certificate[] chain, CompletableFuture<Void> done) {}
+
+  /** Writes the batches of all keystores, one at a time. */
+  private static final class Writer {
+    private static final ScheduledExecutorService EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final var thread = new Thread(runnable, "keystore-writer");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    private Writer() {}
+  }
+}
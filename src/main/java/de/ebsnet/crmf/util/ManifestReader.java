@@ -0,0 +1,146 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.data.ManifestRow;
+import de.ebsnet.crmf.exception.InvalidManifest;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Reader for CSV manifests. The first non-empty line contains the column names, every following
+ * line is one {@link ManifestRow}. Fields can be quoted with {@code "}, a literal quote inside a
+ * quoted field is written as {@code ""}. Empty lines and lines starting with {@code #} are skipped.
+ */
+public final class ManifestReader implements Closeable {
+  private static final char SEPARATOR = ',';
+  private static final char QUOTE = '"';
+  private static final String COMMENT = "#";
+
+  private final Path path;
+  private final BufferedReader reader;
+  private List<String> header;
+  private long lineNumber;
+
+  /**
+   * Open a manifest for reading. Rows are read lazily, so the memory usage does not depend on the
+   * size of the manifest.
+   *
+   * @param path
+   * @throws IOException
+   */
+  public ManifestReader(final Path path) throws IOException {
+    this.path = path;
+    this.reader = Files.newBufferedReader(path);
+  }
+
+  /**
+   * Read all rows of a manifest into memory.
+   *
+   * @param path
+   * @return
+   * @throws IOException
+   * @throws InvalidManifest
+   */
+  public static List<ManifestRow> read(final Path path) throws IOException, InvalidManifest {
+    try (var manifest = new ManifestReader(path)) {
+      final var rows = new ArrayList<ManifestRow>();
+      for (var row = manifest.next(); row.isPresent(); row = manifest.next()) {
+        rows.add(row.get());
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * Read the next row. A malformed line results in an {@link InvalidManifest} but does not prevent
+   * reading the following rows.
+   *
+   * @return the next row or {@link Optional#empty()} at the end of the manifest
+   * @throws IOException
+   * @throws InvalidManifest
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public Optional<ManifestRow> next() throws IOException, InvalidManifest {
+    for (var line = this.reader.readLine(); line != null; line = this.reader.readLine()) {
+      this.lineNumber++;
+      if (line.isBlank() || line.startsWith(COMMENT)) {
+        continue;
+      }
+      final var fields = parseLine(this.path, this.lineNumber, line);
+      if (this.header == null) {
+        this.header = fields.stream().map(f -> f.strip().toLowerCase(Locale.ROOT)).toList();
+      } else {
+        return Optional.of(toRow(this.path, this.lineNumber, this.header, fields));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * If the header line has been read. A malformed header makes the whole manifest unusable.
+   *
+   * @return
+   */
+  public boolean hasHeader() {
+    return this.header != null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.reader.close();
+  }
+
+  private static ManifestRow toRow(
+      final Path path, final long line, final List<String> header, final List<String> fields)
+      throws InvalidManifest {
+    if (fields.size() > header.size()) {
+      throw new InvalidManifest(
+          path, line, "expected at most " + header.size() + " fields, got " + fields.size());
+    }
+    final var values = new LinkedHashMap<String, String>();
+    for (int idx = 0; idx < fields.size(); idx++) {
+      values.put(header.get(idx), fields.get(idx));
+    }
+    return new ManifestRow(path, line, values);
+  }
+
+  @SuppressWarnings("PMD.AvoidReassigningLoopVariables")
+  /* default */ static List<String> parseLine(final Path path, final long line, final String csv)
+      throws InvalidManifest {
+    final var fields = new ArrayList<String>();
+    final var current = new StringBuilder();
+    var quoted = false;
+    for (int idx = 0; idx < csv.length(); idx++) {
+      final var chr = csv.charAt(idx);
+      if (quoted) {
+        if (chr != QUOTE) {
+          current.append(chr);
+        } else if (idx + 1 < csv.length() && csv.charAt(idx + 1) == QUOTE) {
+          current.append(QUOTE);
+          idx++;
+        } else {
+          quoted = false;
+        }
+      } else if (chr == QUOTE) {
+        quoted = true;
+      } else if (chr == SEPARATOR) {
+        fields.add(current.toString());
+        current.setLength(0);
+      } else {
+        current.append(chr);
+      }
+    }
+    if (quoted) {
+      throw new InvalidManifest(path, line, "unterminated quoted field");
+    }
+    fields.add(current.toString());
+    return fields;
+  }
+}
@@ -0,0 +1,87 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/** Socket factory that counts the handshakes of the created sockets in {@link HandshakeMetrics}. */
+public final class MeteredSocketFactory extends SSLSocketFactory {
+  private final SSLSocketFactory delegate;
+  private final HandshakeMetrics metrics;
+
+  /**
+   * @param delegate the socket factory of the TLS context
+   * @param metrics counters to record the handshakes in
+   */
+  public MeteredSocketFactory(final SSLSocketFactory delegate, final HandshakeMetrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  private Socket observe(final Socket socket) {
+    if (socket instanceof SSLSocket ssl) {
+      final var created = System.currentTimeMillis();
+      ssl.addHandshakeCompletedListener(event -> this.metrics.record(event.getSession(), created));
+    }
+    return socket;
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return this.delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return this.delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public Socket createSocket() throws IOException {
+    return observe(this.delegate.createSocket());
+  }
+
+  @Override
+  public Socket createSocket(
+      final Socket socket, final String host, final int port, final boolean autoClose)
+      throws IOException {
+    return observe(this.delegate.createSocket(socket, host, port, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(
+      final Socket socket, final InputStream consumed, final boolean autoClose) throws IOException {
+    return observe(this.delegate.createSocket(socket, consumed, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(final String host, final int port) throws IOException {
+    return observe(this.delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(
+      final String host, final int port, final InetAddress localHost, final int localPort)
+      throws IOException {
+    return observe(this.delegate.createSocket(host, port, localHost, localPort));
+  }
+
+  @Override
+  public Socket createSocket(final InetAddress host, final int port) throws IOException {
+    return observe(this.delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(
+      final InetAddress address,
+      final int port,
+      final InetAddress localAddress,
+      final int localPort)
+      throws IOException {
+    return observe(this.delegate.createSocket(address, port, localAddress, localPort));
+  }
+}
@@ -0,0 +1,93 @@
+package de.ebsnet.crmf.util;
+
+import java.security.PrivateKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509ExtensionUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+/**
+ * Thread safe cache for BouncyCastle operator factories, shared by the CSR and renewal code. The
+ * builders and providers are immutable once configured, so they are resolved once and reused for
+ * every request instead of looking up the JCA provider each time.
+ */
+public final class OperatorCache {
+  private static final Map<String, JcaContentSignerBuilder> SIGNER_BUILDERS =
+      new ConcurrentHashMap<>();
+
+  private static final AlgorithmIdentifier SHA1 =
+      new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1);
+
+  /** {@link X509ExtensionUtils} keeps a stateful digest, so every thread gets its own instance. */
+  private static final ThreadLocal<X509ExtensionUtils> EXTENSION_UTILS =
+      ThreadLocal.withInitial(OperatorCache::newExtensionUtils);
+
+  /**
+   * Create a {@link ContentSigner} for {@code algorithm} using the BouncyCastle provider.
+   *
+   * @param algorithm signature algorithm, e.g. {@code SHA384withECDSA}
+   * @param privateKey
+   * @return
+   * @throws OperatorCreationException
+   */
+  public static ContentSigner contentSigner(final String algorithm, final PrivateKey privateKey)
+      throws OperatorCreationException {
+    return SIGNER_BUILDERS
+        .computeIfAbsent(
+            algorithm,
+            alg -> new JcaContentSignerBuilder(alg).setProvider(BouncyCastleProvider.PROVIDER_NAME))
+        .build(privateKey);
+  }
+
+  /**
+   * {@link X509ExtensionUtils} using SHA-1 to calculate key identifiers. The instance must not be
+   * shared with other threads.
+   *
+   * @return
+   */
+  public static X509ExtensionUtils extensionUtils() {
+    return EXTENSION_UTILS.get();
+  }
+
+  /**
+   * {@link DigestCalculatorProvider} backed by the BouncyCastle JCA provider.
+   *
+   * @return
+   */
+  public static DigestCalculatorProvider digestCalculatorProvider() {
+    return DigestProviderHolder.PROVIDER;
+  }
+
+  private static X509ExtensionUtils newExtensionUtils() {
+    try {
+      return new X509ExtensionUtils(new BcDigestCalculatorProvider().get(SHA1));
+    } catch (OperatorCreationException ex) {
+      throw new IllegalStateException("SHA-1 digest is not available", ex);
+    }
+  }
+
+  private static final class DigestProviderHolder {
+    private static final DigestCalculatorProvider PROVIDER;
+
+    static {
+      try {
+        PROVIDER =
+            new JcaDigestCalculatorProviderBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build();
+      } catch (OperatorCreationException ex) {
+        throw new ExceptionInInitializerError(ex);
+      }
+    }
+  }
+
+  private OperatorCache() {}
+}
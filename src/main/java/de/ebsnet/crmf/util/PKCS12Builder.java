@@ -0,0 +1,205 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBMPString;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.pkcs.PKCS12PfxPduBuilder;
+import org.bouncycastle.pkcs.PKCS12SafeBag;
+import org.bouncycastle.pkcs.PKCSException;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS12SafeBagBuilder;
+
+/**
+ * Assembles a PKCS#12 keystore from many key entries and encodes it once, instead of loading and
+ * storing a {@link java.security.KeyStore} for every entry.
+ *
+ * <p>Keys are encrypted as configured by the {@link PKCS12Profile} when they are {@link #prepare
+ * prepared}, which can be done in parallel since every key runs its own KDF. The certificates of
+ * all entries are stored in a single encrypted bag, CA certificates that are shared by several
+ * entries are only stored once.
+ */
+public final class PKCS12Builder {
+  /**
+   * Attribute that marks a certificate bag as trusted certificate entry for the JDK keystore. The
+   * OID is only defined in an internal package of BouncyCastle.
+   */
+  private static final ASN1ObjectIdentifier TRUSTED_KEY_USAGE =
+      new ASN1ObjectIdentifier("2.16.840.1.113894.746875.1.1");
+
+  private final char[] password;
+  private final PKCS12Profile profile;
+  private final int iterations;
+  private final Set<String> aliases = new HashSet<>();
+  private final Set<X509Certificate> stored = new HashSet<>();
+  private final List<PKCS12SafeBag> keys = new ArrayList<>();
+  private final List<PKCS12SafeBag> certificates = new ArrayList<>();
+
+  /**
+   * @param password password of the keystore and its keys
+   * @param profile algorithms of the key encryption and the integrity MAC
+   */
+  public PKCS12Builder(final char[] password, final PKCS12Profile profile) {
+    this(password, profile, profile.iterations());
+  }
+
+  /**
+   * @param password password of the keystore and its keys
+   * @param profile algorithms of the key encryption and the integrity MAC
+   * @param iterations KDF iterations, overriding the default of the profile, at least 1
+   */
+  public PKCS12Builder(final char[] password, final PKCS12Profile profile, final int iterations) {
+    if (iterations < 1) {
+      throw new IllegalArgumentException("iterations must be at least 1, got " + iterations);
+    }
+    this.password = password.clone();
+    this.profile = profile;
+    this.iterations = iterations;
+  }
+
+  /**
+   * Encrypt a key and create the bags of its entry. Thread safe.
+   *
+   * @param alias alias inside the keystore
+   * @param key
+   * @param chain certificate chain of the key, starting with its certificate
+   * @return
+   * @throws IOException if the key cannot be encrypted
+   * @throws GeneralSecurityException
+   */
+  public KeyEntry prepare(final String alias, final PrivateKey key, final X509Certificate... chain)
+      throws IOException, GeneralSecurityException {
+    final var localKeyId =
+        new JcaX509ExtensionUtils().createSubjectKeyIdentifier(chain[0].getPublicKey());
+    final var friendlyName = new DERBMPString(alias);
+    final var keyBag =
+        new JcaPKCS12SafeBagBuilder(key, this.profile.encryptor(this.password, this.iterations));
+    keyBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_friendlyName, friendlyName);
+    keyBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_localKeyId, localKeyId);
+    final var certBag = new JcaPKCS12SafeBagBuilder(chain[0]);
+    certBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_friendlyName, friendlyName);
+    certBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_localKeyId, localKeyId);
+    return new KeyEntry(
+        alias, keyBag.build(), certBag.build(), List.of(chain).subList(1, chain.length));
+  }
+
+  /**
+   * Add a prepared entry. Not thread safe.
+   *
+   * @param entry
+   * @throws IOException
+   */
+  public void add(final KeyEntry entry) throws IOException {
+    if (!this.aliases.add(entry.alias())) {
+      throw new IllegalStateException("alias " + entry.alias() + " already exists in the keystore");
+    }
+    this.keys.add(entry.key());
+    this.certificates.add(entry.certificate());
+    for (final var issuer : entry.issuers()) {
+      if (this.stored.add(issuer)) {
+        this.certificates.add(new JcaPKCS12SafeBagBuilder(issuer).build());
+      }
+    }
+  }
+
+  /**
+   * Add a trusted certificate entry. Not thread safe.
+   *
+   * @param alias alias inside the keystore
+   * @param certificate
+   * @throws IOException
+   */
+  public void addCertificate(final String alias, final X509Certificate certificate)
+      throws IOException {
+    if (!this.aliases.add(alias)) {
+      throw new IllegalStateException("alias " + alias + " already exists in the keystore");
+    }
+    final var bag = new JcaPKCS12SafeBagBuilder(certificate);
+    bag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_friendlyName, new DERBMPString(alias));
+    bag.addBagAttribute(TRUSTED_KEY_USAGE, new DERSet(KeyPurposeId.anyExtendedKeyUsage));
+    this.stored.add(certificate);
+    this.certificates.add(bag.build());
+  }
+
+  /**
+   * Add all entries of a loaded keystore, re-encrypting its keys with the profile of this builder.
+   * Not thread safe.
+   *
+   * @param keyStore
+   * @param keyPassword password of the keys in {@code keyStore}
+   * @throws IOException
+   * @throws GeneralSecurityException if a key cannot be read
+   */
+  public void addAll(final KeyStore keyStore, final char... keyPassword)
+      throws IOException, GeneralSecurityException {
+    for (final var alias : Collections.list(keyStore.aliases())) {
+      if (keyStore.isKeyEntry(alias)) {
+        final var chain = keyStore.getCertificateChain(alias);
+        add(
+            prepare(
+                alias,
+                (PrivateKey) keyStore.getKey(alias, keyPassword),
+                Arrays.copyOf(chain, chain.length, X509Certificate[].class)));
+      } else {
+        addCertificate(alias, (X509Certificate) keyStore.getCertificate(alias));
+      }
+    }
+  }
+
+  /**
+   * Number of added entries.
+   *
+   * @return
+   */
+  public int size() {
+    return this.aliases.size();
+  }
+
+  /**
+   * Encode the keystore.
+   *
+   * @return DER encoded PKCS#12 keystore
+   * @throws IOException
+   */
+  public byte[] build() throws IOException {
+    final var pfx = new PKCS12PfxPduBuilder();
+    for (final var key : this.keys) {
+      // the keys are already encrypted, so they are stored in a plain bag
+      pfx.addData(key);
+    }
+    try {
+      pfx.addEncryptedData(
+          this.profile.encryptor(this.password, this.iterations),
+          this.certificates.toArray(new PKCS12SafeBag[0]));
+      return pfx.build(this.profile.mac(this.iterations), this.password).getEncoded();
+    } catch (PKCSException ex) {
+      throw new IOException("cannot create keystore: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * A prepared key entry.
+   *
+   * @param alias
+   * @param key encrypted key bag
+   * @param certificate certificate bag of the key
+   * @param issuers remaining certificates of the chain
+   */
+  public record KeyEntry(
+      String alias,
+      PKCS12SafeBag key,
+      PKCS12SafeBag certificate,
+      List<X509Certificate> issuers) {}
+}
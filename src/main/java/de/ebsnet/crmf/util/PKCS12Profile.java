@@ -0,0 +1,73 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.OutputEncryptor;
+import org.bouncycastle.pkcs.PKCS12MacCalculatorBuilder;
+import org.bouncycastle.pkcs.jcajce.JcePKCS12MacCalculatorBuilder;
+import org.bouncycastle.pkcs.jcajce.JcePKCSPBEOutputEncryptorBuilder;
+
+/**
+ * Protection of PKCS#12 keystores written by {@link PKCS12Builder}. The KDF iterations of the key
+ * encryption and of the integrity MAC dominate the time it takes to store and load a keystore.
+ */
+public enum PKCS12Profile {
+  /** PBES2 (PBKDF2-HMAC-SHA256, AES-256-CBC) and a HMAC-SHA256 MAC, for keystores on disk. */
+  PBES2_AES256(10_000);
+
+  private static final AlgorithmIdentifier PRF =
+      new AlgorithmIdentifier(PKCSObjectIdentifiers.id_hmacWithSHA256, DERNull.INSTANCE);
+
+  private final int iterations;
+
+  PKCS12Profile(final int iterations) {
+    this.iterations = iterations;
+  }
+
+  /**
+   * Default KDF iterations of the key encryption and the integrity MAC.
+   *
+   * @return
+   */
+  public int iterations() {
+    return this.iterations;
+  }
+
+  /**
+   * Encryptor for keys and certificate bags.
+   *
+   * @param password
+   * @param iterations KDF iterations
+   * @return
+   * @throws IOException if the encryptor cannot be created
+   */
+  /* default */ OutputEncryptor encryptor(final char[] password, final int iterations)
+      throws IOException {
+    try {
+      return new JcePKCSPBEOutputEncryptorBuilder(NISTObjectIdentifiers.id_aes256_CBC)
+          .setPRF(PRF)
+          .setIterationCount(iterations)
+          .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+          .build(password);
+    } catch (OperatorCreationException ex) {
+      throw new IOException("cannot create keystore encryptor: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Calculator of the integrity MAC.
+   *
+   * @param iterations KDF iterations
+   * @return
+   */
+  /* default */ PKCS12MacCalculatorBuilder mac(final int iterations) {
+    return new JcePKCS12MacCalculatorBuilder(NISTObjectIdentifiers.id_sha256)
+        .setIterationCount(iterations)
+        .setProvider(BouncyCastleProvider.PROVIDER_NAME);
+  }
+}
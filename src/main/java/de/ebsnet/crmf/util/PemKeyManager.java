@@ -0,0 +1,92 @@
+package de.ebsnet.crmf.util;
+
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+/**
+ * Key manager for a single private key and certificate chain, e.g. loaded from PEM files. This
+ * avoids encoding the key into a temporary PKCS12 keystore just to initialize a {@link
+ * javax.net.ssl.KeyManagerFactory}.
+ */
+public final class PemKeyManager extends X509ExtendedKeyManager {
+  private static final String ALIAS = "tls";
+
+  private final PrivateKey privateKey;
+  private final X509Certificate[] chain;
+  private final String keyType;
+
+  /**
+   * @param privateKey the private key matching {@code chain[0]}
+   * @param chain the certificate chain, starting with the end entity certificate
+   */
+  public PemKeyManager(final PrivateKey privateKey, final X509Certificate... chain) {
+    super();
+    this.privateKey = privateKey;
+    this.chain = chain.clone();
+    // the BouncyCastle provider calls EC keys "ECDSA", JSSE uses "EC" or e.g. "EC_EC"
+    this.keyType = "ECDSA".equals(privateKey.getAlgorithm()) ? "EC" : privateKey.getAlgorithm();
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private String alias(final String... keyTypes) {
+    for (final var requested : keyTypes) {
+      if (requested.startsWith(this.keyType)) {
+        return ALIAS;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String chooseClientAlias(
+      final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+    return alias(keyTypes);
+  }
+
+  @Override
+  public String chooseEngineClientAlias(
+      final String[] keyTypes, final Principal[] issuers, final SSLEngine engine) {
+    return alias(keyTypes);
+  }
+
+  @Override
+  public String chooseServerAlias(
+      final String keyType, final Principal[] issuers, final Socket socket) {
+    return alias(keyType);
+  }
+
+  @Override
+  public String chooseEngineServerAlias(
+      final String keyType, final Principal[] issuers, final SSLEngine engine) {
+    return alias(keyType);
+  }
+
+  @Override
+  public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+    return aliases(keyType);
+  }
+
+  @Override
+  public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+    return aliases(keyType);
+  }
+
+  private String[] aliases(final String keyType) {
+    return alias(keyType) == null ? new String[0] : new String[] {ALIAS};
+  }
+
+  @Override
+  @SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull") // null is part of the contract
+  public X509Certificate[] getCertificateChain(final String alias) {
+    return ALIAS.equals(alias) ? this.chain.clone() : null;
+  }
+
+  @Override
+  public PrivateKey getPrivateKey(final String alias) {
+    return ALIAS.equals(alias) ? this.privateKey : null;
+  }
+}
@@ -0,0 +1,357 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.style.IETFUtils;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+
+/**
+ * Trust manager that validates the certificate chain of the peer against the configured SM-PKI
+ * root and SubCA certificates. The certificate of the peer must carry the serverAuth or clientAuth
+ * extended key usage, unless it is a trust anchor itself. If the connection asks for HTTPS endpoint
+ * identification, like {@code HttpsURLConnection} with its default hostname verifier does, the
+ * certificate must be issued for the host name of the peer.
+ *
+ * <p>The trust anchors are parsed once. Validated chains are cached by their SHA-256 fingerprint
+ * until one of its certificates expires, so further connections to the same SubCA only compute the
+ * fingerprint instead of building and verifying the certificate path again.
+ */
+public final class PkixTrustManager extends X509ExtendedTrustManager {
+  /** Upper bound for the number of cached chains, a SubCA only presents a few. */
+  private static final int MAX_CACHED_CHAINS = 256;
+
+  private static final String HTTPS = "HTTPS";
+  private static final String SERVER_AUTH = KeyPurposeId.id_kp_serverAuth.getId();
+  private static final String CLIENT_AUTH = KeyPurposeId.id_kp_clientAuth.getId();
+  private static final int DNS_NAME = 2;
+  private static final int IP_ADDRESS = 7;
+  private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+  private final X509Certificate[] anchorCerts;
+  private final Set<X509Certificate> anchorSet;
+  private final Set<TrustAnchor> trustAnchors;
+  private final Map<String, Validity> validated = new ConcurrentHashMap<>();
+
+  /**
+   * @param anchors the trusted root and SubCA certificates
+   */
+  public PkixTrustManager(final Set<X509Certificate> anchors) {
+    super();
+    if (anchors.isEmpty()) {
+      throw new IllegalArgumentException("at least one trust anchor is required");
+    }
+    this.anchorCerts = anchors.toArray(new X509Certificate[0]);
+    this.anchorSet = Set.copyOf(anchors);
+    final var trustAnchors = new LinkedHashSet<TrustAnchor>();
+    for (final var anchor : anchors) {
+      trustAnchors.add(new TrustAnchor(anchor, null));
+    }
+    this.trustAnchors = Set.copyOf(trustAnchors);
+  }
+
+  /**
+   * Load the trust anchors from PEM or DER files. Every certificate of every file is trusted.
+   *
+   * @param paths
+   * @return
+   * @throws CertificateException
+   * @throws IOException
+   */
+  public static PkixTrustManager load(final Path... paths)
+      throws CertificateException, IOException {
+    final var anchors = new LinkedHashSet<X509Certificate>();
+    for (final var path : paths) {
+      anchors.addAll(List.of(X509Util.loadCertificateChain(path)));
+    }
+    return new PkixTrustManager(anchors);
+  }
+
+  private void check(
+      final X509Certificate[] chain, final String purpose, final Optional<String> host)
+      throws CertificateException {
+    if (chain == null || chain.length == 0) {
+      throw new CertificateException("the peer did not present a certificate");
+    }
+    final var now = new Date();
+    // a chain is only trusted for the purpose it was validated for
+    final var fingerprint = purpose + ":" + fingerprint(chain);
+    final var cached = this.validated.get(fingerprint);
+    if (cached == null || !cached.contains(now)) {
+      validate(chain, now);
+      if (!this.anchorSet.contains(chain[0])) {
+        checkPurpose(chain[0], purpose);
+      }
+      if (this.validated.size() >= MAX_CACHED_CHAINS) {
+        this.validated.clear();
+      }
+      this.validated.put(fingerprint, Validity.of(chain));
+    }
+    // the same chain may be presented for several host names
+    if (host.isPresent()) {
+      checkHost(chain[0], host.get());
+    }
+  }
+
+  private void validate(final X509Certificate[] chain, final Date now)
+      throws CertificateException {
+    // the anchors themselves must not be part of the certificate path
+    final var path = new ArrayList<X509Certificate>(chain.length);
+    for (final var cert : chain) {
+      if (!this.anchorSet.contains(cert)) {
+        path.add(cert);
+      }
+    }
+    if (path.isEmpty()) {
+      // the peer presented a trust anchor
+      chain[0].checkValidity(now);
+      return;
+    }
+    try {
+      final var params = new PKIXParameters(this.trustAnchors);
+      // the SM-PKI does not publish revocation information that is reachable from here
+      params.setRevocationEnabled(false);
+      params.setDate(now);
+      CertPathValidator.getInstance("PKIX")
+          .validate(CertificateFactory.getInstance("X.509").generateCertPath(path), params);
+    } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException ex) {
+      throw new CertificateException("cannot validate certificate chain", ex);
+    } catch (GeneralSecurityException ex) {
+      throw new CertificateException(
+          "untrusted certificate " + chain[0].getSubjectX500Principal() + ": " + ex.getMessage(),
+          ex);
+    }
+  }
+
+  private static void checkPurpose(final X509Certificate cert, final String purpose)
+      throws CertificateException {
+    final var usages = cert.getExtendedKeyUsage();
+    if (usages == null || !usages.contains(purpose)) {
+      throw new CertificateException(
+          "certificate " + cert.getSubjectX500Principal() + " is not issued for " + purpose);
+    }
+  }
+
+  private static void checkHost(final X509Certificate cert, final String host)
+      throws CertificateException {
+    // IPv6 addresses of URLs are enclosed in brackets
+    final var target =
+        host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    final boolean matches;
+    if (target.indexOf(':') >= 0 || IPV4.matcher(target).matches()) {
+      matches = matchesAddress(cert, target);
+    } else {
+      matches = matchesDnsName(cert, target);
+    }
+    if (!matches) {
+      throw new CertificateException(
+          "certificate " + cert.getSubjectX500Principal() + " is not issued for " + host);
+    }
+  }
+
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  private static boolean matchesAddress(final X509Certificate cert, final String address)
+      throws CertificateException {
+    try {
+      // literal addresses are parsed without a lookup
+      final var expected = InetAddress.getByName(address);
+      for (final var name : subjectAltNames(cert, IP_ADDRESS)) {
+        if (expected.equals(InetAddress.getByName(name))) {
+          return true;
+        }
+      }
+      return false;
+    } catch (UnknownHostException ex) {
+      throw new CertificateException("invalid IP address " + address, ex);
+    }
+  }
+
+  /** Match like the hostname verifier of the JDK: the common name is only used without SANs. */
+  private static boolean matchesDnsName(final X509Certificate cert, final String host)
+      throws CertificateException {
+    var names = subjectAltNames(cert, DNS_NAME);
+    if (names.isEmpty()) {
+      final var cns =
+          X500Name.getInstance(cert.getSubjectX500Principal().getEncoded()).getRDNs(BCStyle.CN);
+      names =
+          cns.length == 0
+              ? List.of()
+              : List.of(IETFUtils.valueToString(cns[cns.length - 1].getFirst().getValue()));
+    }
+    final var target = normalize(host);
+    return names.stream().map(PkixTrustManager::normalize).anyMatch(name -> matches(name, target));
+  }
+
+  /** A wildcard only stands for the complete leftmost label. */
+  private static boolean matches(final String name, final String host) {
+    final boolean matches;
+    if (name.startsWith("*.")) {
+      final var dot = host.indexOf('.');
+      matches = dot > 0 && host.substring(dot).equals(name.substring(1));
+    } else {
+      matches = name.equals(host);
+    }
+    return matches;
+  }
+
+  private static String normalize(final String name) {
+    final var lower = name.toLowerCase(Locale.ROOT);
+    return lower.endsWith(".") ? lower.substring(0, lower.length() - 1) : lower;
+  }
+
+  private static List<String> subjectAltNames(final X509Certificate cert, final int type)
+      throws CertificateParsingException {
+    final var names = new ArrayList<String>();
+    final var altNames = cert.getSubjectAlternativeNames();
+    if (altNames != null) {
+      for (final var altName : altNames) {
+        if (((Integer) altName.get(0)) == type) {
+          names.add((String) altName.get(1));
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * The host name the certificate of the peer must be issued for, if HTTPS endpoint identification
+   * is enabled.
+   */
+  private static Optional<String> endpoint(final SSLParameters params, final String peerHost)
+      throws CertificateException {
+    final var algorithm = params.getEndpointIdentificationAlgorithm();
+    final Optional<String> endpoint;
+    if (algorithm == null || algorithm.isEmpty()) {
+      endpoint = Optional.empty();
+    } else if (!HTTPS.equalsIgnoreCase(algorithm)) {
+      throw new CertificateException("unsupported endpoint identification " + algorithm);
+    } else if (peerHost == null) {
+      throw new CertificateException("the host name of the peer is unknown");
+    } else {
+      endpoint = Optional.of(peerHost);
+    }
+    return endpoint;
+  }
+
+  private static Optional<String> endpoint(final Socket socket) throws CertificateException {
+    final Optional<String> endpoint;
+    if (socket instanceof SSLSocket sslSocket) {
+      final var session = sslSocket.getHandshakeSession();
+      endpoint =
+          endpoint(sslSocket.getSSLParameters(), session == null ? null : session.getPeerHost());
+    } else {
+      endpoint = Optional.empty();
+    }
+    return endpoint;
+  }
+
+  private static Optional<String> endpoint(final SSLEngine engine) throws CertificateException {
+    return engine == null
+        ? Optional.empty()
+        : endpoint(engine.getSSLParameters(), engine.getPeerHost());
+  }
+
+  private static String fingerprint(final X509Certificate... chain) throws CertificateException {
+    try {
+      final var digest = MessageDigest.getInstance("SHA-256");
+      for (final var cert : chain) {
+        digest.update(cert.getEncoded());
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      throw new CertificateException(ex);
+    }
+  }
+
+  @Override
+  public void checkClientTrusted(
+      final X509Certificate[] chain, final String authType, final Socket socket)
+      throws CertificateException {
+    check(chain, CLIENT_AUTH, endpoint(socket));
+  }
+
+  @Override
+  public void checkServerTrusted(
+      final X509Certificate[] chain, final String authType, final Socket socket)
+      throws CertificateException {
+    check(chain, SERVER_AUTH, endpoint(socket));
+  }
+
+  @Override
+  public void checkClientTrusted(
+      final X509Certificate[] chain, final String authType, final SSLEngine engine)
+      throws CertificateException {
+    check(chain, CLIENT_AUTH, endpoint(engine));
+  }
+
+  @Override
+  public void checkServerTrusted(
+      final X509Certificate[] chain, final String authType, final SSLEngine engine)
+      throws CertificateException {
+    check(chain, SERVER_AUTH, endpoint(engine));
+  }
+
+  @Override
+  public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+      throws CertificateException {
+    check(chain, CLIENT_AUTH, Optional.empty());
+  }
+
+  @Override
+  public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+      throws CertificateException {
+    check(chain, SERVER_AUTH, Optional.empty());
+  }
+
+  @Override
+  public X509Certificate[] getAcceptedIssuers() {
+    return this.anchorCerts.clone();
+  }
+
+  /** The period in which all certificates of a validated chain are valid. */
+  private record Validity(Date notBefore, Date notAfter) {
+    private static Validity of(final X509Certificate... chain) {
+      var notBefore = chain[0].getNotBefore();
+      var notAfter = chain[0].getNotAfter();
+      for (final var cert : chain) {
+        notBefore = cert.getNotBefore().after(notBefore) ? cert.getNotBefore() : notBefore;
+        notAfter = cert.getNotAfter().before(notAfter) ? cert.getNotAfter() : notAfter;
+      }
+      return new Validity(notBefore, notAfter);
+    }
+
+    private boolean contains(final Date date) {
+      return !date.before(this.notBefore) && !date.after(this.notAfter);
+    }
+  }
+}
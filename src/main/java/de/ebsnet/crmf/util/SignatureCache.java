@@ -0,0 +1,78 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe cache of verified certificate signatures, keyed by the SHA-256 hash of the
+ * certificate and of the public key of its issuer. Hashing is much cheaper than an ECDSA
+ * verification, so audits that see the same SubCA certificates for every issued certificate only
+ * verify each signature once. Failed verifications are not cached.
+ */
+public final class SignatureCache {
+  /** Upper bound for the number of cached signatures, the cache is cleared when it is reached. */
+  private static final int MAX_ENTRIES = 1 << 17;
+
+  private static final ThreadLocal<MessageDigest> SHA256 =
+      ThreadLocal.withInitial(SignatureCache::newDigest);
+
+  private final Map<String, Boolean> verified = new ConcurrentHashMap<>();
+
+  /**
+   * Verify the signature of {@code cert} with the public key of {@code issuer}.
+   *
+   * @param cert
+   * @param issuer
+   * @throws InvalidCertificateChain if the signature is invalid
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public void verify(final X509Certificate cert, final X509Certificate issuer)
+      throws InvalidCertificateChain {
+    final String key;
+    try {
+      key = hash(cert.getEncoded()) + ":" + hash(issuer.getPublicKey().getEncoded());
+    } catch (GeneralSecurityException ex) {
+      throw new InvalidCertificateChain(ex);
+    }
+    if (this.verified.containsKey(key)) {
+      return;
+    }
+    try {
+      cert.verify(issuer.getPublicKey());
+    } catch (GeneralSecurityException ex) {
+      throw new InvalidCertificateChain(
+          "signature of "
+              + cert.getSubjectX500Principal()
+              + " cannot be verified with the key of "
+              + issuer.getSubjectX500Principal(),
+          ex);
+    }
+    if (this.verified.size() >= MAX_ENTRIES) {
+      this.verified.clear();
+    }
+    this.verified.put(key, Boolean.TRUE);
+  }
+
+  public int size() {
+    return this.verified.size();
+  }
+
+  private static String hash(final byte[] encoded) {
+    final var digest = SHA256.get();
+    return HexFormat.of().formatHex(digest.digest(encoded));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 digest is not available", ex);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package de.ebsnet.crmf.util;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import org.bouncycastle.jsse.provider.BouncyCastleJsseProvider;
+
+/**
+ * Process wide cache of client {@link SSLContext}s. A context is built directly from the PEM key
+ * and certificate with a {@link PemKeyManager} and shared by every connection that uses the same
+ * files, so the key is only decrypted once. The client session cache of the context is shared by
+ * all connections, so new connections to the SubCA resume a previous session instead of repeating
+ * the full ECDHE handshake.
+ *
+ * <p>The server certificate is validated by a {@link PkixTrustManager} that is created once per
+ * context, so the chains it already validated are shared by all connections as well.
+ */
+public final class SslContextCache {
+  private static final Logger LOG = Logger.getLogger(SslContextCache.class.getSimpleName());
+
+  /** Number of TLS sessions kept for resumption, one per SubCA endpoint is usually enough. */
+  private static final int SESSION_CACHE_SIZE = 64;
+
+  /** Lifetime of cached TLS sessions in seconds. */
+  private static final int SESSION_TIMEOUT = 3600;
+
+  private static final Map<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+
+  /**
+   * Get or create the TLS context for a key and certificate. Contexts are identified by a SHA-256
+   * fingerprint of the file contents, the password and the profile, so changed files result in a
+   * new context.
+   *
+   * @param key path to the PEM encoded private key
+   * @param keyPass password of the key
+   * @param cert path to the PEM or DER encoded certificate chain
+   * @param profile TLS versions to offer
+   * @param trustAnchors root and SubCA certificates the server certificate is validated against. If
+   *     empty, any server certificate is accepted
+   * @return
+   * @throws IOException
+   * @throws GeneralSecurityException if the key cannot be decrypted or does not match the
+   *     certificate
+   */
+  public static SSLContext get(
+      final Path key,
+      final Optional<char[]> keyPass,
+      final Path cert,
+      final TlsProfile profile,
+      final Path... trustAnchors)
+      throws IOException, GeneralSecurityException {
+    final var fingerprint = profile + ":" + fingerprint(key, keyPass, cert, trustAnchors);
+    final var cached = CONTEXTS.get(fingerprint);
+    if (cached != null) {
+      return cached;
+    }
+    final var created = create(key, keyPass, cert, profile, trustAnchors);
+    final var concurrent = CONTEXTS.putIfAbsent(fingerprint, created);
+    return concurrent == null ? created : concurrent;
+  }
+
+  private static SSLContext create(
+      final Path key,
+      final Optional<char[]> keyPass,
+      final Path cert,
+      final TlsProfile profile,
+      final Path... trustAnchors)
+      throws IOException, GeneralSecurityException {
+    final var keyPair = KeyPairUtil.loadKeyPair(key, keyPass);
+    final var chain = X509Util.loadCertificateChain(cert);
+    X509Util.checkPublicKey(keyPair, chain[0]);
+
+    final var sslContext =
+        SSLContext.getInstance(profile.protocol(), BouncyCastleJsseProvider.PROVIDER_NAME);
+    sslContext.init(
+        new KeyManager[] {new PemKeyManager(keyPair.getPrivate(), chain)},
+        new TrustManager[] {trustManager(trustAnchors)},
+        null);
+    final var sessions = sslContext.getClientSessionContext();
+    sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+    sessions.setSessionTimeout(SESSION_TIMEOUT);
+    return sslContext;
+  }
+
+  private static TrustManager trustManager(final Path... trustAnchors)
+      throws IOException, GeneralSecurityException {
+    final TrustManager trustManager;
+    if (trustAnchors.length == 0) {
+      LOG.warning("no trust anchors configured, the server certificate is not validated");
+      trustManager = new TrustAll();
+    } else {
+      trustManager = PkixTrustManager.load(trustAnchors);
+    }
+    return trustManager;
+  }
+
+  private static String fingerprint(
+      final Path key, final Optional<char[]> keyPass, final Path cert, final Path... trustAnchors)
+      throws IOException, GeneralSecurityException {
+    final var digest = MessageDigest.getInstance("SHA-256");
+    digest.update(Files.readAllBytes(key));
+    digest.update((byte) 0);
+    digest.update(Files.readAllBytes(cert));
+    for (final var trustAnchor : trustAnchors) {
+      digest.update((byte) 0);
+      digest.update(Files.readAllBytes(trustAnchor));
+    }
+    if (keyPass.isPresent()) {
+      digest.update((byte) 0);
+      digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(keyPass.get())));
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private SslContextCache() {}
+}
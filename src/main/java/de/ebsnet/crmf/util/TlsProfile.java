@@ -0,0 +1,28 @@
+package de.ebsnet.crmf.util;
+
+/** TLS versions offered to the SubCA. */
+public enum TlsProfile {
+  /** TLS 1.3, falling back to TLS 1.2 if the SubCA does not support it. */
+  TLS13("TLSv1.3"),
+  /**
+   * TLS 1.2 without TLS 1.3. Lower versions are only offered if they are removed from {@code
+   * jdk.tls.disabledAlgorithms}, which disables TLS 1.0 and 1.1 by default.
+   */
+  TLS12("TLSv1.2");
+
+  private final String protocol;
+
+  TlsProfile(final String protocol) {
+    this.protocol = protocol;
+  }
+
+  /**
+   * Name of the {@link javax.net.ssl.SSLContext} protocol. A context enables the named version and
+   * all lower versions that are not disabled by {@code jdk.tls.disabledAlgorithms}.
+   *
+   * @return
+   */
+  public String protocol() {
+    return this.protocol;
+  }
+}
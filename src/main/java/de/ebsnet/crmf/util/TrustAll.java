@@ -0,0 +1,51 @@
+package de.ebsnet.crmf.util;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * Trust manager that accepts any server certificate. We are only sending CSRs to the webservice,
+ * which do not contain sensitive data. Everything inside the CSR will be in the public certificate
+ * anyway. It is only used if no trust anchors are configured, otherwise the server certificate is
+ * validated by a {@link PkixTrustManager}.
+ */
+@SuppressFBWarnings("WEAK_TRUST_MANAGER")
+public final class TrustAll extends X509ExtendedTrustManager {
+
+  @Override
+  public void checkClientTrusted(
+      final X509Certificate[] chain, final String authType, final Socket socket)
+      throws CertificateException {}
+
+  @Override
+  public void checkServerTrusted(
+      final X509Certificate[] chain, final String authType, final Socket socket)
+      throws CertificateException {}
+
+  @Override
+  public void checkClientTrusted(
+      final X509Certificate[] chain, final String authType, final SSLEngine engine)
+      throws CertificateException {}
+
+  @Override
+  public void checkServerTrusted(
+      final X509Certificate[] chain, final String authType, final SSLEngine engine)
+      throws CertificateException {}
+
+  @Override
+  public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+      throws CertificateException {}
+
+  @Override
+  public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+      throws CertificateException {}
+
+  @Override
+  public X509Certificate[] getAcceptedIssuers() {
+    return new X509Certificate[0];
+  }
+}
@@ -0,0 +1,148 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Store;
+
+/**
+ * The certificate chain of a sub CA, parsed and validated once and shared between many renewal
+ * requests. Only the certificates of the requester, which are not part of the trust chain, have to
+ * be checked per request. The chain is assembled and validated by a {@link
+ * CertificateChainBuilder}, so the certificates can be given in any order.
+ */
+public final class TrustChain {
+  /** The previous key signs the renewal request. */
+  private static final Optional<KeyUsage> SIGNING =
+      Optional.of(new KeyUsage(KeyUsage.digitalSignature));
+
+  private static final TrustChain EMPTY =
+      new TrustChain(
+          List.of(), CertificateChainBuilder.of(List.of()), new CollectionStore<>(List.of()));
+
+  private final List<X509Certificate> chain;
+  private final Set<X509Certificate> members;
+  private final CertificateChainBuilder builder;
+  private final Store<X509CertificateHolder> certStore;
+
+  private TrustChain(
+      final List<X509Certificate> chain,
+      final CertificateChainBuilder builder,
+      final Store<X509CertificateHolder> store) {
+    this.chain = chain;
+    this.members = Set.copyOf(chain);
+    this.builder = builder;
+    this.certStore = store;
+  }
+
+  /**
+   * Load and validate a trust chain. Duplicate certificates are dropped. The certificates must form
+   * a single chain from the sub CA to a root certificate.
+   *
+   * @param paths files containing the chain, in any order
+   * @return
+   * @throws CertificateException
+   * @throws IOException
+   * @throws InvalidCertificateChain
+   */
+  public static TrustChain load(final Path... paths)
+      throws CertificateException, IOException, InvalidCertificateChain {
+    final var certs = new LinkedHashSet<X509Certificate>();
+    for (final var path : paths) {
+      certs.addAll(List.of(X509Util.loadCertificateChain(path)));
+    }
+    return of(certs);
+  }
+
+  /**
+   * Build and validate a trust chain, including the signatures.
+   *
+   * @param certs the sub CA and its issuers, in any order
+   * @return
+   * @throws CertificateEncodingException
+   * @throws InvalidCertificateChain if the certificates do not form a single chain
+   */
+  @SuppressWarnings("PMD.OnlyOneReturn")
+  public static TrustChain of(final Set<X509Certificate> certs)
+      throws CertificateEncodingException, InvalidCertificateChain {
+    if (certs.isEmpty()) {
+      return EMPTY;
+    }
+    final var builder = CertificateChainBuilder.of(certs);
+    final var subCAs = builder.leaves();
+    if (subCAs.size() != 1) {
+      throw new InvalidCertificateChain(
+          "trust chain must contain exactly one sub CA, got " + subCAs.size());
+    }
+    final var chain = List.of(builder.build(subCAs.get(0)));
+    if (chain.size() != certs.size()) {
+      throw new InvalidCertificateChain(
+          "trust chain contains certificates that are not part of the chain of "
+              + subCAs.get(0).getSubjectX500Principal());
+    }
+    return new TrustChain(chain, builder, new JcaCertStore(chain));
+  }
+
+  /**
+   * Validate the certificates of a requester against this trust chain. Certificates that are
+   * already part of the trust chain are dropped, so {@code leafChain} may contain only the
+   * requester's certificate or the complete chain. The chain of the trust chain itself is
+   * memoized, so only the signatures of the requester's certificates are verified per call. The
+   * complete chain is checked by a {@link CertificateValidator}, the requester's certificate must
+   * allow digitalSignature.
+   *
+   * @param leafChain the requester's certificate, optionally followed by its issuers in any order
+   * @return the certificates of {@code leafChain} that are not part of the trust chain, starting
+   *     with the requester's certificate
+   * @throws InvalidCertificateChain
+   */
+  public X509Certificate[] leafCertificates(final X509Certificate... leafChain)
+      throws InvalidCertificateChain {
+    final var leaves = new ArrayList<X509Certificate>(leafChain.length);
+    for (final var cert : leafChain) {
+      if (!this.members.contains(cert)) {
+        leaves.add(cert);
+      }
+    }
+    if (leaves.isEmpty()) {
+      throw new InvalidCertificateChain("the previous certificate is part of the trust chain");
+    }
+    final var path =
+        this.builder.build(
+            SIGNING,
+            leaves.get(0),
+            leaves.subList(1, leaves.size()).toArray(new X509Certificate[0]));
+    if (!this.chain.isEmpty() && !this.members.contains(path[path.length - 1])) {
+      throw new InvalidCertificateChain(
+          leaves.get(0).getSubjectX500Principal() + " is not issued by the trust chain");
+    }
+    final var result = new ArrayList<X509Certificate>(path.length);
+    for (final var cert : path) {
+      if (!this.members.contains(cert)) {
+        result.add(cert);
+      }
+    }
+    return result.toArray(new X509Certificate[0]);
+  }
+
+  /**
+   * The certificates of the trust chain, converted once for all CMS signatures.
+   *
+   * @return
+   */
+  public Store<X509CertificateHolder> certStore() {
+    return this.certStore;
+  }
+}
@@ -4,35 +4,48 @@ import de.ebsnet.crmf.exception.InvalidCertificateChain;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.KeyPair;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Objects;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
 
 public final class X509Util {
-  private static final int MIN_CHAIN_LENGTH = 2;
+  /** Looking up the factory is not free and instances are not guaranteed to be thread safe. */
+  private static final ThreadLocal<CertificateFactory> FACTORY =
+      ThreadLocal.withInitial(X509Util::newCertificateFactory);
 
-  // TODO: this is a good candidate for unit testing
-  public static void validateCertificateChain(final X509Certificate... chain)
+  /**
+   * Check a single link of a certificate chain.
+   *
+   * @param certificate
+   * @param issuer
+   * @throws InvalidCertificateChain if {@code certificate} is not issued by {@code issuer}
+   */
+  public static void validateIssuedBy(
+      final X509Certificate certificate, final X509Certificate issuer)
       throws InvalidCertificateChain {
-    if (chain.length < MIN_CHAIN_LENGTH) {
+    if (!certificate.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
       throw new InvalidCertificateChain(
-          "supplied certificate chain must contain at least "
-              + MIN_CHAIN_LENGTH
-              + " certificates to be complete. Got "
-              + chain.length);
-    }
-    for (int idx = 0; idx < chain.length - 1; idx++) {
-      if (!chain[idx].getIssuerX500Principal().equals(chain[idx + 1].getSubjectX500Principal())) {
-        throw new InvalidCertificateChain(
-            chain[idx].getSubjectX500Principal()
-                + " is not signed by "
-                + chain[idx + 1].getSubjectX500Principal());
-      }
+          certificate.getSubjectX500Principal()
+              + " is not signed by "
+              + issuer.getSubjectX500Principal());
     }
+  }
 
-    final var root = chain[chain.length - 1];
+  /**
+   * Check that a certificate is self-signed and can therefore be the last element of a chain.
+   *
+   * @param root
+   * @throws InvalidCertificateChain
+   */
+  public static void validateRoot(final X509Certificate root) throws InvalidCertificateChain {
     final var endsWithRoot = root.getSubjectX500Principal().equals(root.getIssuerX500Principal());
     if (!endsWithRoot) {
       throw new InvalidCertificateChain(
@@ -41,12 +54,48 @@ public final class X509Util {
     }
   }
 
-  /** Load a certificate chain from a file. */
+  /**
+   * Check that a certificate belongs to a key pair.
+   *
+   * @param keyPair
+   * @param certificate
+   * @throws CertificateException if the public keys differ
+   */
+  public static void checkPublicKey(final KeyPair keyPair, final X509Certificate certificate)
+      throws CertificateException {
+    final var kpPub = keyPair.getPublic();
+    final var cerPub = certificate.getPublicKey();
+    if (!Objects.equals(kpPub, cerPub)) {
+      final var encoder = Base64.getEncoder();
+      final var message =
+          "KeyPair - Certificate Missmatch. Got KeyPair with PubKey: "
+              + encoder.encodeToString(kpPub.getEncoded())
+              + " certificate with PubKey: "
+              + encoder.encodeToString(cerPub.getEncoded());
+      throw new CertificateException(message);
+    }
+  }
+
+  /**
+   * The SubjectKeyIdentifier of a certificate.
+   *
+   * @param cert
+   * @return the key identifier as lower case hex, or {@code null} if the extension is missing
+   */
+  public static String subjectKeyIdentifier(final X509Certificate cert) {
+    final var value = cert.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+    return value == null
+        ? null
+        : HexFormat.of()
+            .formatHex(
+                SubjectKeyIdentifier.getInstance(ASN1OctetString.getInstance(value).getOctets())
+                    .getKeyIdentifier());
+  }
+
+  /** Load a certificate chain from a file, see {@link CertificateBundle}. */
   public static X509Certificate[] loadCertificateChain(final Path path)
       throws CertificateException, IOException {
-    try (var inStream = Files.newInputStream(path)) {
-      return loadCertificateChain(inStream);
-    }
+    return CertificateBundle.open(path).toArray();
   }
 
   /** Load a certificate chain from memory. */
@@ -59,11 +108,31 @@ public final class X509Util {
 
   private static X509Certificate[] loadCertificateChain(final InputStream inStream)
       throws CertificateException {
-    final var fact = CertificateFactory.getInstance("X.509");
-    return fact.generateCertificates(inStream).stream()
+    return FACTORY.get().generateCertificates(inStream).stream()
         .map(c -> (X509Certificate) c)
         .toArray(X509Certificate[]::new);
   }
 
+  /**
+   * Decode a single DER encoded certificate with the cached {@link CertificateFactory} of the
+   * current thread.
+   *
+   * @param inStream
+   * @return
+   * @throws CertificateException
+   */
+  public static X509Certificate decodeCertificate(final InputStream inStream)
+      throws CertificateException {
+    return (X509Certificate) FACTORY.get().generateCertificate(inStream);
+  }
+
+  private static CertificateFactory newCertificateFactory() {
+    try {
+      return CertificateFactory.getInstance("X.509");
+    } catch (CertificateException ex) {
+      throw new IllegalStateException("X.509 certificate factory is not available", ex);
+    }
+  }
+
   private X509Util() {}
 }
@@ -0,0 +1,139 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.TestCertificates;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+/* default */ final class AuditTest {
+  private static final String ROOT_DN = "CN=Root,O=SM-PKI-DE,C=DE";
+  private static final String SUB_DN = "CN=Sub,O=SM-PKI-DE,C=DE";
+  private static final String LEAF_DN = "CN=Leaf,OU=9978987000008,O=SM-PKI-DE,C=DE";
+  private static final int CA_USAGE = KeyUsage.keyCertSign | KeyUsage.cRLSign;
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  /** Strong reference, loggers without one can be collected together with their handlers. */
+  private final Logger logger = Logger.getLogger(Audit.class.getSimpleName());
+
+  private final List<LogRecord> records = new CopyOnWriteArrayList<>();
+  private final Handler handler =
+      new Handler() {
+        @Override
+        public void publish(final LogRecord logRecord) {
+          AuditTest.this.records.add(logRecord);
+        }
+
+        @Override
+        public void flush() {
+          // nothing is buffered
+        }
+
+        @Override
+        public void close() {
+          // nothing to release
+        }
+      };
+
+  @BeforeEach
+  /* default */ void captureLog() {
+    this.logger.addHandler(this.handler);
+  }
+
+  @AfterEach
+  /* default */ void releaseLog() {
+    this.logger.removeHandler(this.handler);
+  }
+
+  private Path pem(final Path path, final X509Certificate... certs) throws IOException {
+    Files.createDirectories(path.getParent());
+    try (var writer = new JcaPEMWriter(Files.newBufferedWriter(path))) {
+      for (final var cert : certs) {
+        writer.writeObject(cert);
+      }
+    }
+    return path;
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void countsForgedAndExpiredCertificates()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var rootKey = TestCertificates.keyPair();
+    final var root = TestCertificates.builder(ROOT_DN, rootKey).ca(1, CA_USAGE).build();
+    final var subKey = TestCertificates.keyPair();
+    final var sub =
+        TestCertificates.builder(SUB_DN, subKey)
+            .issuedBy(root, rootKey.getPrivate())
+            .ca(0, CA_USAGE)
+            .build();
+    final var trust = pem(this.dir.resolve("trust.pem"), sub, root);
+
+    final var issued = this.dir.resolve("issued");
+    pem(
+        issued.resolve("good.pem"),
+        TestCertificates.builder(LEAF_DN, TestCertificates.keyPair())
+            .issuedBy(sub, subKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build());
+    // the key usage of a SIG certificate, but not issued by the SubCA
+    pem(
+        issued.resolve("forged.pem"),
+        TestCertificates.builder(LEAF_DN, TestCertificates.keyPair())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build());
+    final var now = Instant.now();
+    pem(
+        issued.resolve("expired.pem"),
+        TestCertificates.builder(LEAF_DN, TestCertificates.keyPair())
+            .issuedBy(sub, subKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .validity(now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)))
+            .build());
+
+    final var exitCode =
+        new CommandLine(new Audit())
+            .execute(
+                "--certificates",
+                issued.toString(),
+                "--trust-chain",
+                trust.toString(),
+                "--parallelism",
+                "2");
+
+    Assertions.assertEquals(1, exitCode, "an invalid certificate fails the audit");
+    final var failures =
+        this.records.stream().filter(logRecord -> logRecord.getLevel() == Level.SEVERE).toList();
+    Assertions.assertEquals(2, failures.size(), "the forged and the expired certificate fail");
+    Assertions.assertTrue(
+        failures.stream().noneMatch(logRecord -> logRecord.getMessage().contains("good.pem")),
+        "the certificate issued by the SubCA is valid");
+    Assertions.assertTrue(
+        this.records.stream()
+            .anyMatch(logRecord -> logRecord.getMessage().startsWith("1 of 3 certificates")),
+        "the summary counts the valid certificates");
+  }
+}
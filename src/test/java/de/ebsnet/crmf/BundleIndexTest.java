@@ -0,0 +1,127 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.util.X509Util;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+/* default */ final class BundleIndexTest {
+  private static final String ENC = "/certType/enc.cer";
+  private static final String SIG = "/certType/sig.cer";
+  private static final String TLS = "/certType/tls.cer";
+  private static final String GLN = "9978987000008";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private Path resource(final String name) throws URISyntaxException {
+    return Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+  }
+
+  private Path bundle(final String... names) throws IOException, URISyntaxException {
+    final var bundle = this.dir.resolve("bundle.der");
+    for (final var name : names) {
+      Files.write(
+          bundle,
+          Files.readAllBytes(resource(name)),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    }
+    return bundle;
+  }
+
+  private X509Certificate load(final String name)
+      throws IOException, CertificateException, URISyntaxException {
+    return X509Util.loadCertificateChain(resource(name))[0];
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void looksUpEntries()
+      throws IOException, CertificateException, URISyntaxException {
+    final var tls = load(TLS);
+    final var index = BundleIndex.open(bundle(ENC, SIG, TLS));
+    Assertions.assertEquals(3, index.byGln(GLN).size(), "the GLN is the OU of the subject");
+    Assertions.assertEquals(
+        Optional.of(tls),
+        index.current(GLN, KeyType.TLS, tls.getNotBefore().toInstant()),
+        "the certificate of a key type is selected");
+    Assertions.assertEquals(
+        Optional.empty(),
+        index.current(GLN, KeyType.TLS, tls.getNotAfter().toInstant().plusSeconds(1)),
+        "expired certificates are not current");
+    Assertions.assertEquals(
+        List.of(tls), index.bySerial(tls.getSerialNumber()), "serials are indexed");
+    Assertions.assertEquals(
+        List.of(tls),
+        index.bySki(X509Util.subjectKeyIdentifier(tls).toUpperCase(Locale.ROOT)),
+        "key identifiers are indexed");
+  }
+
+  @Test
+  /* default */ void rebuildsChangedBundle()
+      throws IOException, CertificateException, URISyntaxException {
+    final var bundle = bundle(ENC);
+    Assertions.assertEquals(1, BundleIndex.open(bundle).size(), "the bundle is indexed");
+    Assertions.assertTrue(Files.isRegularFile(BundleIndex.sidecar(bundle)), "the index is stored");
+    bundle(SIG);
+    Assertions.assertEquals(2, BundleIndex.open(bundle).size(), "a changed bundle is reindexed");
+  }
+
+  @Test
+  /* default */ void detectsRewriteWithSameSizeAndTime()
+      throws IOException, CertificateException, URISyntaxException {
+    final var sig = load(SIG);
+    final var bundle = bundle(SIG, TLS);
+    final var modified = Files.getLastModifiedTime(bundle);
+    BundleIndex.open(bundle);
+    // the same certificates in another order have the same size
+    Files.write(bundle, Files.readAllBytes(resource(TLS)));
+    bundle(SIG);
+    Files.setLastModifiedTime(bundle, modified);
+    Assertions.assertEquals(
+        List.of(sig),
+        BundleIndex.open(bundle).bySerial(sig.getSerialNumber()),
+        "a stale index is rebuilt instead of returning another certificate");
+  }
+
+  @Test
+  /* default */ void ignoresIndexOutsideOfBundle()
+      throws IOException, CertificateException, URISyntaxException {
+    final var bundle = bundle(ENC, SIG);
+    BundleIndex.open(bundle);
+    // a copy is not cached by the process yet, so its sidecar is read
+    final var copy = this.dir.resolve("copy.der");
+    Files.copy(bundle, copy, StandardCopyOption.COPY_ATTRIBUTES);
+    final var lines = Files.readAllLines(BundleIndex.sidecar(bundle));
+    lines.set(1, Files.size(bundle) + lines.get(1).substring(lines.get(1).indexOf('\t')));
+    Files.write(BundleIndex.sidecar(copy), lines);
+    Assertions.assertEquals(
+        List.of(load(ENC)),
+        BundleIndex.open(copy).bySerial(load(ENC).getSerialNumber()),
+        "offsets outside of the bundle are not trusted");
+  }
+
+  @Test
+  /* default */ void rejectsMalformedSerial() throws IOException, URISyntaxException {
+    final var args = new String[] {"--bundle", bundle(ENC).toString(), "--serial", "not-hex"};
+    Assertions.assertEquals(
+        2, new CommandLine(new Lookup()).execute(args), "a malformed serial is a usage error");
+  }
+}
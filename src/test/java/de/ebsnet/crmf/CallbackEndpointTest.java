@@ -0,0 +1,175 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.exception.RequestRejected;
+import de.ebsnet.crmf.util.SslContextCache;
+import de.ebsnet.crmf.util.TlsProfile;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.CertificateSequenceType;
+import uri.bsi_bund_de.smart_meter_pki_protocol._1.SendCertificatesReq;
+
+/* default */ final class CallbackEndpointTest {
+  private static final String KEY = "/keyAndCert/a.key";
+  private static final String CERT = "/keyAndCert/a.cer";
+  private static final String MESSAGE_ID = "42";
+  private static final String OK_CERT_AVAILABLE = "ok_cert_available";
+  private static final String OK_RECEIVED_CORRECTLY = "ok_received_correctly";
+  private static final String FAILURE_MESSAGE_ID_UNKNOWN = "failure_messageID_unknown";
+  private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private Path resource(final String name) throws URISyntaxException {
+    return Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+  }
+
+  private CallbackEndpoint start()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    final var cert = resource(CERT);
+    return CallbackEndpoint.start(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        "/SmartMeterService",
+        SslContextCache.get(resource(KEY), Optional.empty(), cert, TlsProfile.TLS13, cert),
+        1);
+  }
+
+  private static SendCertificatesReq callback(
+      final String messageID, final String status, final byte[]... certificates) {
+    final var req = new SendCertificatesReq();
+    req.setMessageID(messageID);
+    req.setStatusInfo(status);
+    if (certificates.length > 0) {
+      final var seq = new CertificateSequenceType();
+      seq.getCertificate().addAll(List.of(certificates));
+      req.setCertificateSeq(seq);
+    }
+    return req;
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void completesExpectedRequest()
+      throws IOException,
+          GeneralSecurityException,
+          URISyntaxException,
+          InterruptedException,
+          ExecutionException,
+          TimeoutException {
+    try (var callbacks = start()) {
+      final var result = callbacks.expect(MESSAGE_ID, TIMEOUT);
+      final var certificate = new byte[] {1, 2, 3};
+      Assertions.assertEquals(
+          OK_RECEIVED_CORRECTLY,
+          callbacks
+              .sendCertificates(callback(MESSAGE_ID, OK_CERT_AVAILABLE, certificate))
+              .getReturnCode(),
+          "the callback of a pending request is received");
+      Assertions.assertArrayEquals(
+          certificate,
+          result.get(1, TimeUnit.SECONDS).get(0),
+          "the request completes with the certificates");
+      Assertions.assertEquals(
+          FAILURE_MESSAGE_ID_UNKNOWN,
+          callbacks
+              .sendCertificates(callback(MESSAGE_ID, OK_CERT_AVAILABLE, certificate))
+              .getReturnCode(),
+          "a request is only completed once");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void rejectsUnknownMessageID()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    try (var callbacks = start()) {
+      final var result = callbacks.expect(MESSAGE_ID, TIMEOUT);
+      Assertions.assertEquals(
+          FAILURE_MESSAGE_ID_UNKNOWN,
+          callbacks
+              .sendCertificates(callback("43", OK_CERT_AVAILABLE, new byte[] {1}))
+              .getReturnCode(),
+          "callbacks of other requests are rejected");
+      Assertions.assertEquals(
+          FAILURE_MESSAGE_ID_UNKNOWN,
+          callbacks.sendCertificates(callback(null, OK_CERT_AVAILABLE)).getReturnCode(),
+          "callbacks without messageID are rejected");
+      Assertions.assertFalse(result.isDone(), "the pending request keeps waiting");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void failsRequestWithFailureStatus()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    try (var callbacks = start()) {
+      final var result = callbacks.expect(MESSAGE_ID, TIMEOUT);
+      Assertions.assertEquals(
+          OK_RECEIVED_CORRECTLY,
+          callbacks
+              .sendCertificates(callback(MESSAGE_ID, "failure_request_not_accepted"))
+              .getReturnCode(),
+          "the failure is received");
+      final var ex =
+          Assertions.assertThrows(
+              ExecutionException.class,
+              () -> result.get(1, TimeUnit.SECONDS),
+              "the request fails");
+      Assertions.assertEquals(
+          "failure_request_not_accepted",
+          ((RequestRejected) ex.getCause()).getReturnCode(),
+          "the status of the SubCA is reported");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void failsRequestAfterTimeout()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    try (var callbacks = start()) {
+      final var result = callbacks.expect(MESSAGE_ID, Duration.ofMillis(50));
+      final var ex =
+          Assertions.assertThrows(
+              ExecutionException.class,
+              () -> result.get(10, TimeUnit.SECONDS),
+              "the request fails without a callback");
+      Assertions.assertInstanceOf(
+          TimeoutException.class, ex.getCause(), "the request fails with a timeout");
+      Assertions.assertEquals(
+          FAILURE_MESSAGE_ID_UNKNOWN,
+          callbacks
+              .sendCertificates(callback(MESSAGE_ID, OK_CERT_AVAILABLE, new byte[] {1}))
+              .getReturnCode(),
+          "a timed out request is forgotten");
+    }
+  }
+
+  @Test
+  /* default */ void closeFailsPendingRequests()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    final var callbacks = start();
+    final var result = callbacks.expect(MESSAGE_ID, TIMEOUT);
+    callbacks.close();
+    final var ex =
+        Assertions.assertThrows(
+            ExecutionException.class,
+            () -> result.get(1, TimeUnit.SECONDS),
+            "a closed endpoint does not leave requests waiting");
+    Assertions.assertInstanceOf(
+        IllegalStateException.class, ex.getCause(), "the request fails with the stop");
+  }
+}
@@ -0,0 +1,66 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* default */ final class CertificateInventoryTest {
+  private static final String GLN = "9978987000008";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private void copy(final String resource, final String name)
+      throws IOException, URISyntaxException {
+    final var target = this.dir.resolve("issued").resolve(name);
+    Files.createDirectories(target.getParent());
+    Files.copy(Path.of(Objects.requireNonNull(getClass().getResource(resource)).toURI()), target);
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void rescansOnlyChangedFiles()
+      throws IOException, URISyntaxException, InterruptedException {
+    copy("/certType/enc.cer", "enc.cer");
+    copy("/certType/sig.cer", "sig.cer");
+    copy("/certType/tls.cer", "tls.cer");
+    copy("/keyAndCert/a.cer", "ca.pem");
+    final var issued = this.dir.resolve("issued");
+    final var index = this.dir.resolve("inventory.tsv");
+
+    final var first = CertificateInventory.open(index);
+    Assertions.assertEquals(0, first.scan(2, issued), "all files can be read");
+    first.write();
+    Assertions.assertEquals(4, first.parsed(), "a new index parses every file");
+
+    final var tls = issued.resolve("tls.cer");
+    Files.setLastModifiedTime(tls, FileTime.from(Instant.now().plusSeconds(60)));
+    Files.delete(issued.resolve("enc.cer"));
+    final var second = CertificateInventory.open(index);
+    second.scan(2, issued);
+    Assertions.assertEquals(1, second.parsed(), "only the changed file is parsed again");
+    Assertions.assertEquals(1, second.removed(), "deleted files are removed");
+    Assertions.assertEquals(3, second.size(), "CA certificates are indexed as well");
+
+    final var renewals = second.schedule(Duration.ofDays(30));
+    Assertions.assertEquals(1, renewals.size(), "one renewal per market participant");
+    Assertions.assertEquals(GLN, renewals.get(0).gln(), "the GLN is taken from the subject");
+    Assertions.assertEquals(
+        KeyType.SIG, renewals.get(0).previousType(), "renewals are signed with the SIG key");
+    Assertions.assertEquals(
+        renewals.get(0).expires().minus(Duration.ofDays(30)),
+        renewals.get(0).due(),
+        "renewals are due before the certificates expire");
+  }
+}
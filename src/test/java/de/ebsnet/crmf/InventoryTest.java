@@ -0,0 +1,128 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import de.ebsnet.crmf.util.KeyPairUtil;
+import de.ebsnet.crmf.util.TestCertificates;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+/* default */ final class InventoryTest {
+  private static final String GLN = "9900000000000";
+  private static final char[] PASS = "secret".toCharArray();
+  private static final CSRMetadata METADATA =
+      new CSRMetadata(
+          "inventory",
+          GLN,
+          URI.create("https://as4.example.com/msh"),
+          "pki@example.com",
+          "SM-PKI-DE",
+          "DE",
+          Optional.empty(),
+          Optional.empty(),
+          Optional.empty(),
+          Optional.empty());
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private Path write(final String name, final X509Certificate cert) throws IOException {
+    final var path = this.dir.resolve(name);
+    Files.createDirectories(path.getParent());
+    try (var writer = new JcaPEMWriter(Files.newBufferedWriter(path))) {
+      writer.writeObject(cert);
+    }
+    return path;
+  }
+
+  @Test
+  /* default */ void manifestRequiresKeys() {
+    final var args =
+        new String[] {
+          "--certificates", this.dir.toString(),
+          "--index", this.dir.resolve("inventory.tsv").toString(),
+          "--out", this.dir.resolve("renewals").toString()
+        };
+    Assertions.assertEquals(
+        2,
+        new CommandLine(new Inventory()).execute(args),
+        "manifests without previous keys cannot be renewed");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void emittedManifestRunsThroughBatch()
+      throws GeneralSecurityException, IOException, OperatorCreationException {
+    final var rootKey = TestCertificates.keyPair();
+    final var root =
+        TestCertificates.builder("CN=Root,O=SM-PKI-DE,C=DE", rootKey)
+            .ca(1, KeyUsage.keyCertSign | KeyUsage.cRLSign)
+            .build();
+    final var subKey = TestCertificates.keyPair();
+    final var sub =
+        TestCertificates.builder("CN=Sub,O=SM-PKI-DE,C=DE", subKey)
+            .issuedBy(root, rootKey.getPrivate())
+            .ca(0, KeyUsage.keyCertSign | KeyUsage.cRLSign)
+            .build();
+    final var sigKey = TestCertificates.keyPair();
+    final var sig =
+        TestCertificates.builder(METADATA, sigKey)
+            .issuedBy(sub, subKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .validity(
+                Instant.now().minus(Duration.ofDays(1)), Instant.now().plus(Duration.ofDays(10)))
+            .build();
+    write("issued/" + GLN + "_sig.pem", sig);
+    final var keys = this.dir.resolve("keys");
+    Files.createDirectories(keys);
+    KeyPairUtil.writeEncryptedKeyPair(
+        keys.resolve(GLN + KeyType.SIG.filename()), sigKey, PASS, new SecureRandom());
+    final var renewals = this.dir.resolve("renewals");
+
+    Assertions.assertEquals(
+        0,
+        new CommandLine(new Inventory())
+            .execute(
+                "--certificates", this.dir.resolve("issued").toString(),
+                "--index", this.dir.resolve("inventory.tsv").toString(),
+                "--out", renewals.toString(),
+                "--keys", keys.toString()),
+        "the certificate is indexed and its renewal is due");
+    final Path manifest;
+    try (var files = Files.list(renewals)) {
+      manifest = files.findFirst().orElseThrow();
+    }
+
+    final var csrs = this.dir.resolve("csrs");
+    Assertions.assertEquals(
+        0,
+        new CommandLine(new Batch())
+            .execute(
+                "--manifest", manifest.toString(),
+                "--out", csrs.toString(),
+                "--key-pass", new String(PASS),
+                "--generate-keys",
+                "--trust-chain", write("sub.pem", sub).toString(),
+                "--trust-chain", write("root.pem", root).toString()),
+        "every row of the emitted manifest is renewed");
+    Assertions.assertTrue(
+        Files.isRegularFile(csrs.resolve(GLN + ".csr")), "the renewal is written per GLN");
+  }
+}
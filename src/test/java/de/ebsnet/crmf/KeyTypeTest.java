@@ -1,9 +1,11 @@
 package de.ebsnet.crmf;
 
+import de.ebsnet.crmf.util.X509Util;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.cert.CertificateException;
 import java.util.Objects;
 import java.util.Optional;
 import org.junit.jupiter.api.Assertions;
@@ -13,6 +15,7 @@ import org.junit.jupiter.api.Test;
   private static final String ENC = "/certType/enc.cer";
   private static final String SIG = "/certType/sig.cer";
   private static final String TLS = "/certType/tls.cer";
+  private static final String CA = "/keyAndCert/a.cer";
 
   static {
     CSRGenerator.init();
@@ -48,4 +51,25 @@ import org.junit.jupiter.api.Test;
     Assertions.assertEquals(
         Optional.of(KeyType.TLS), keyType, "expected to detect transport certificate");
   }
+
+  @Test
+  /* default */ void derMatchesParsedCertificate() throws IOException, CertificateException {
+    for (final var path : new Path[] {enc, sig, tls}) {
+      final var der = Files.readAllBytes(path);
+      Assertions.assertEquals(
+          KeyType.fromCertificate(X509Util.loadCertificateChain(der)[0]),
+          KeyType.fromCertificate(der),
+          "expected the same key type from DER and the parsed certificate of " + path);
+    }
+  }
+
+  @Test
+  /* default */ void withoutKeyUsage() throws IOException, URISyntaxException {
+    final var pem =
+        Files.readAllBytes(Path.of(Objects.requireNonNull(getClass().getResource(CA)).toURI()));
+    Assertions.assertEquals(
+        Optional.empty(),
+        KeyType.fromCertificate(pem),
+        "expected no key type for a PEM certificate without key usage");
+  }
 }
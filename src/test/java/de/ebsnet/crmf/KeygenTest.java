@@ -0,0 +1,57 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.data.Triple;
+import de.ebsnet.crmf.util.TestCertificates;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+/* default */ final class KeygenTest {
+  private static final String NAME = "9978987000008";
+  private static final char[] PASS = "pass".toCharArray();
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void writesNothingIfOneKeyExists() throws IOException, GeneralSecurityException {
+    final var triple =
+        new Triple<>(
+            TestCertificates.keyPair(), TestCertificates.keyPair(), TestCertificates.keyPair());
+    final var sig = Files.writeString(this.dir.resolve(NAME + KeyType.SIG.filename()), "sig");
+
+    Assertions.assertThrows(
+        FileAlreadyExistsException.class,
+        () -> Keygen.writeTriple(this.dir, NAME, triple, PASS, new SecureRandom()),
+        "an existing key is not overwritten");
+    Assertions.assertFalse(
+        Files.exists(this.dir.resolve(NAME + KeyType.ENC.filename())),
+        "no key of the triple is written");
+    Assertions.assertEquals("sig", Files.readString(sig), "the existing key is kept");
+
+    Files.delete(sig);
+    Keygen.writeTriple(this.dir, NAME, triple, PASS, new SecureRandom());
+    Assertions.assertTrue(
+        Files.exists(this.dir.resolve(NAME + KeyType.TLS.filename())), "a rerun writes the triple");
+  }
+
+  @Test
+  /* default */ void rejectsThreadsBelowOne() {
+    Assertions.assertEquals(
+        CommandLine.ExitCode.USAGE,
+        new CommandLine(new Keygen())
+            .execute("--out", this.dir.toString(), "--key-pass", "pass", "--threads", "0"),
+        "key generation needs a thread");
+  }
+}
@@ -1,12 +1,18 @@
 package de.ebsnet.crmf;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.security.cert.CertificateException;
 import java.util.Objects;
 import java.util.Optional;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
 
 /* default */ final class PEM2PKCS12Test {
   private static final String KEY_A = "/keyAndCert/a.key";
@@ -36,6 +42,37 @@ import org.junit.jupiter.api.Test;
         "KeyStore for matching private key and certificate works");
   }
 
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void convertManifest(@TempDir final Path dir)
+      throws IOException, GeneralSecurityException {
+    final var manifest = dir.resolve("manifest.csv");
+    final var out = dir.resolve("fleet.p12");
+    Files.writeString(
+        manifest,
+        String.join(
+            "\n",
+            "keypair,certificate,alias",
+            this.keyA + "," + this.certA + ",first",
+            this.keyA + "," + this.certA + ",second"));
+    final var args =
+        new String[] {
+          "--manifest", manifest.toString(), "--out", out.toString(), "--password", "pass"
+        };
+    Assertions.assertEquals(
+        0, new CommandLine(new PEM2PKCS12()).execute(args), "manifest is converted");
+    Assertions.assertEquals(
+        0, new CommandLine(new PEM2PKCS12()).execute(args), "keystore is replaced");
+
+    final var keyStore = KeyStore.getInstance("PKCS12");
+    try (var stream = Files.newInputStream(out)) {
+      keyStore.load(stream, "pass".toCharArray());
+    }
+    Assertions.assertEquals(2, keyStore.size(), "every row is an entry");
+    Assertions.assertNotNull(
+        keyStore.getKey("second", "pass".toCharArray()), "keys are readable by the JDK");
+  }
+
   @Test
   /* default */ void certAndKeyMissmatch() {
     Assertions.assertThrows(
@@ -45,4 +82,21 @@ import org.junit.jupiter.api.Test;
                 this.keyB, Optional.empty(), this.certA, "alias", "pass".toCharArray()),
         "KeyStore must not be created when private key and certificate do not match");
   }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void rejectsIterationsBelowOne(@TempDir final Path dir) {
+    final var args =
+        new String[] {
+          "--keypair", this.keyA.toString(),
+          "--certificate", this.certA.toString(),
+          "--alias", "alias",
+          "--out", dir.resolve("keystore.p12").toString(),
+          "--password", "pass",
+          "--iterations", "0"
+        };
+    Assertions.assertEquals(
+        2, new CommandLine(new PEM2PKCS12()).execute(args), "a KDF needs at least one iteration");
+    Assertions.assertFalse(Files.exists(dir.resolve("keystore.p12")), "no keystore is written");
+  }
 }
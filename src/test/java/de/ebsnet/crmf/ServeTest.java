@@ -0,0 +1,71 @@
+package de.ebsnet.crmf;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+/* default */ final class ServeTest {
+  private static final String TLS = "/certType/tls.cer";
+  private static final String GLN = "9978987000008";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+  @TempDir private Path outside;
+
+  private Path resource(final String name) throws URISyntaxException {
+    return Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+  }
+
+  private int lookup(final Path root, final String bundle) {
+    return Serve.execute(
+        new String[] {"lookup", "--bundle", bundle, "--gln", GLN},
+        root,
+        new PrintWriter(new StringWriter()));
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void confinesPathsToRoot() throws IOException, URISyntaxException {
+    final var root = this.dir.toRealPath();
+    final var bundle = Files.copy(resource(TLS), this.outside.resolve("bundle.der"));
+    Files.copy(bundle, root.resolve("bundle.der"));
+    Files.createSymbolicLink(root.resolve("link.der"), bundle);
+
+    Assertions.assertEquals(
+        CommandLine.ExitCode.OK, lookup(root, "bundle.der"), "relative paths are in the root");
+    Assertions.assertEquals(
+        CommandLine.ExitCode.USAGE,
+        lookup(root, bundle.toString()),
+        "absolute paths outside of the root are rejected");
+    Assertions.assertEquals(
+        CommandLine.ExitCode.USAGE,
+        lookup(root, "../" + this.outside.getFileName() + "/bundle.der"),
+        "paths cannot leave the root");
+    Assertions.assertEquals(
+        CommandLine.ExitCode.USAGE,
+        lookup(root, "link.der"),
+        "symbolic links cannot leave the root");
+  }
+
+  @Test
+  /* default */ void rejectsManifests() throws IOException {
+    Assertions.assertEquals(
+        CommandLine.ExitCode.USAGE,
+        Serve.execute(
+            new String[] {"pem2p12", "--manifest=rows.csv"},
+            this.dir.toRealPath(),
+            new PrintWriter(new StringWriter())),
+        "the paths of manifest rows cannot be checked");
+  }
+}
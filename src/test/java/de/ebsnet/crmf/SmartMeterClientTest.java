@@ -0,0 +1,56 @@
+package de.ebsnet.crmf;
+
+import de.ebsnet.crmf.exception.RequestRejected;
+import jakarta.xml.soap.SOAPException;
+import jakarta.xml.soap.SOAPFactory;
+import jakarta.xml.ws.WebServiceException;
+import jakarta.xml.ws.soap.SOAPFaultException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import javax.xml.namespace.QName;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class SmartMeterClientTest {
+  private static final QName SERVER =
+      new QName("http://schemas.xmlsoap.org/soap/envelope/", "Server");
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void neverRetriesAnswers() throws SOAPException {
+    final var fault =
+        new SOAPFaultException(SOAPFactory.newInstance().createFault("rejected", SERVER));
+    Assertions.assertFalse(
+        SmartMeterClient.retryable(fault, true), "a SOAP fault is an answer of the webservice");
+    Assertions.assertFalse(
+        SmartMeterClient.retryable(new RequestRejected("failure_request_not_accepted", "-"), true),
+        "a rejected request is an answer of the webservice");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void retriesRequestsThatWereNotSent() {
+    final var refused = new WebServiceException(new ConnectException("Connection refused"));
+    Assertions.assertTrue(
+        SmartMeterClient.retryable(refused, false), "a refused connection is retried");
+    final var connectTimeout =
+        new WebServiceException(new SocketTimeoutException("Connect timed out"));
+    Assertions.assertTrue(
+        SmartMeterClient.retryable(connectTimeout, false), "a connect timeout is retried");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void retriesReadTimeoutsOfIdempotentRequests() {
+    final var readTimeout = new WebServiceException(new SocketTimeoutException("Read timed out"));
+    Assertions.assertTrue(
+        SmartMeterClient.retryable(readTimeout, true), "an idempotent request is sent again");
+    Assertions.assertFalse(
+        SmartMeterClient.retryable(readTimeout, false),
+        "a request that may have been processed is not sent twice");
+  }
+}
@@ -0,0 +1,42 @@
+package de.ebsnet.crmf.data;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class RetryPolicyTest {
+  private static final int SAMPLES = 1000;
+  private static final RetryPolicy POLICY =
+      new RetryPolicy(40, Duration.ofMillis(100), Duration.ofSeconds(5));
+
+  private static void assertBetween(
+      final Duration lower, final Duration upper, final int retry, final String message) {
+    for (int idx = 0; idx < SAMPLES; idx++) {
+      final var backoff = POLICY.backoff(retry);
+      Assertions.assertTrue(
+          backoff.compareTo(lower) >= 0 && backoff.compareTo(upper) <= 0,
+          () -> message + ": " + backoff);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void doublesWithJitter() {
+    assertBetween(Duration.ofMillis(50), Duration.ofMillis(100), 1, "the first retry");
+    assertBetween(Duration.ofMillis(100), Duration.ofMillis(200), 2, "the second retry");
+    assertBetween(Duration.ofMillis(400), Duration.ofMillis(800), 4, "the fourth retry");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void capsAtMaxBackoff() {
+    assertBetween(Duration.ofMillis(2500), Duration.ofSeconds(5), 7, "the first capped retry");
+    assertBetween(Duration.ofMillis(2500), Duration.ofSeconds(5), 40, "the shift is bounded");
+  }
+
+  @Test
+  /* default */ void noneDoesNotWait() {
+    Assertions.assertEquals(
+        Duration.ZERO, RetryPolicy.NONE.backoff(1), "without backoff retries are immediate");
+  }
+}
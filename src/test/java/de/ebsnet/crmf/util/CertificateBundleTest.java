@@ -0,0 +1,63 @@
+package de.ebsnet.crmf.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class CertificateBundleTest {
+  private static final String PEM = "/keyAndCert/a.cer";
+  private static final String DER = "/certType/sig.cer";
+  private static final int COPIES = 3;
+
+  private final Path pem;
+  private final Path der;
+
+  /* default */ CertificateBundleTest() throws URISyntaxException {
+    this.pem = Path.of(Objects.requireNonNull(getClass().getResource(PEM)).toURI());
+    this.der = Path.of(Objects.requireNonNull(getClass().getResource(DER)).toURI());
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void splitsPemBundle() throws CertificateException, IOException {
+    final var expected = X509Util.loadCertificateChain(Files.readAllBytes(this.pem))[0];
+    final var entry = Files.readString(this.pem);
+    final var content = ("comment\n" + entry).repeat(COPIES).getBytes(StandardCharsets.US_ASCII);
+    final var bundle = CertificateBundle.of(ByteBuffer.wrap(content));
+    Assertions.assertEquals(COPIES, bundle.size(), "every PEM block is an entry");
+    Assertions.assertEquals(expected, bundle.get(COPIES - 1), "entries are decoded");
+    Assertions.assertSame(bundle.get(0), bundle.get(0), "decoded entries are kept");
+  }
+
+  @Test
+  /* default */ void splitsDerBundle() throws CertificateException, IOException {
+    final var encoded = Files.readAllBytes(this.der);
+    final var concatenated = new ByteArrayOutputStream();
+    for (int idx = 0; idx < COPIES; idx++) {
+      concatenated.write(encoded);
+    }
+    final var bundle = CertificateBundle.of(ByteBuffer.wrap(concatenated.toByteArray()));
+    Assertions.assertArrayEquals(
+        X509Util.loadCertificateChain(encoded)[0].getEncoded(),
+        bundle.get(COPIES - 1).getEncoded(),
+        "DER certificates are split by their length");
+  }
+
+  @Test
+  /* default */ void rejectsTruncatedDer() throws IOException {
+    final var encoded = Files.readAllBytes(this.der);
+    final var truncated = ByteBuffer.wrap(encoded, 0, encoded.length - 1).slice();
+    Assertions.assertThrows(
+        CertificateException.class,
+        () -> CertificateBundle.of(truncated),
+        "a truncated certificate is not an entry");
+  }
+}
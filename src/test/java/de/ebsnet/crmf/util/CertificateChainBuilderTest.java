@@ -0,0 +1,153 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.Objects;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class CertificateChainBuilderTest {
+  private static final String ROOT = "/keyAndCert/a.cer";
+  private static final String SIG = "/certType/sig.cer";
+  private static final String ROOT_DN = "CN=Root,O=SM-PKI-DE,C=DE";
+  private static final String SUB_DN = "CN=Sub,O=SM-PKI-DE,C=DE";
+  private static final int CA_USAGE = KeyUsage.keyCertSign | KeyUsage.cRLSign;
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private final Path root;
+  private final Path sig;
+
+  /* default */ CertificateChainBuilderTest() throws URISyntaxException {
+    this.root = Path.of(Objects.requireNonNull(getClass().getResource(ROOT)).toURI());
+    this.sig = Path.of(Objects.requireNonNull(getClass().getResource(SIG)).toURI());
+  }
+
+  @Test
+  /* default */ void buildsChainOfRoot()
+      throws CertificateException, IOException, InvalidCertificateChain {
+    final var builder = CertificateChainBuilder.load(this.root);
+    final var root = X509Util.loadCertificateChain(this.root)[0];
+    Assertions.assertArrayEquals(
+        new Object[] {root}, builder.build(root), "a root is its own chain");
+    Assertions.assertArrayEquals(
+        new Object[] {root}, builder.build(root), "memoized chains return the same certificates");
+  }
+
+  @Test
+  /* default */ void rejectsUnknownIssuer() throws CertificateException, IOException {
+    final var builder = CertificateChainBuilder.load(this.root);
+    final var leaf = X509Util.loadCertificateChain(this.sig)[0];
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> builder.build(leaf),
+        "a chain cannot be built without the issuer of the certificate");
+  }
+
+  @Test
+  /* default */ void leavesAreNotIssuers() throws CertificateException, IOException {
+    final var builder = CertificateChainBuilder.load(this.sig, this.root);
+    Assertions.assertEquals(
+        2, builder.leaves().size(), "unrelated certificates are both leaves of the pool");
+  }
+
+  @Test
+  /* default */ void buildsChainFromUnorderedPoolByKeyIdentifier()
+      throws GeneralSecurityException, OperatorCreationException, IOException,
+          InvalidCertificateChain {
+    final var rootKey = TestCertificates.keyPair();
+    final var root = TestCertificates.builder(ROOT_DN, rootKey).ca(1, CA_USAGE).build();
+    final var subKey = TestCertificates.keyPair();
+    final var sub =
+        TestCertificates.builder(SUB_DN, subKey)
+            .issuedBy(root, rootKey.getPrivate())
+            .ca(0, CA_USAGE)
+            .build();
+    // a rekeyed sub CA with the same DN, only the AuthorityKeyIdentifier tells them apart
+    final var oldSub =
+        TestCertificates.builder(SUB_DN, TestCertificates.keyPair())
+            .issuedBy(root, rootKey.getPrivate())
+            .ca(0, CA_USAGE)
+            .build();
+    final var leaf =
+        TestCertificates.builder("CN=Leaf,O=SM-PKI-DE,C=DE", TestCertificates.keyPair())
+            .issuedBy(sub, subKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build();
+    final var builder = CertificateChainBuilder.of(List.of(oldSub, root, sub));
+    Assertions.assertArrayEquals(
+        new Object[] {leaf, sub, root},
+        builder.build(leaf),
+        "the issuer is looked up by its SubjectKeyIdentifier");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void buildsChainFromUnorderedPoolByName()
+      throws GeneralSecurityException, OperatorCreationException, IOException,
+          InvalidCertificateChain {
+    final var rootKey = TestCertificates.keyPair();
+    final var root =
+        TestCertificates.builder(ROOT_DN, rootKey).ca(1, CA_USAGE).withoutKeyIdentifiers().build();
+    final var subKey = TestCertificates.keyPair();
+    final var sub =
+        TestCertificates.builder(SUB_DN, subKey)
+            .issuedBy(root, rootKey.getPrivate())
+            .ca(0, CA_USAGE)
+            .withoutKeyIdentifiers()
+            .build();
+    final var leaf =
+        TestCertificates.builder("CN=Leaf,O=SM-PKI-DE,C=DE", TestCertificates.keyPair())
+            .issuedBy(sub, subKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .withoutKeyIdentifiers()
+            .build();
+    final var builder = CertificateChainBuilder.of(List.of(sub, root));
+    Assertions.assertArrayEquals(
+        new Object[] {leaf, sub, root},
+        builder.build(leaf),
+        "without key identifiers the issuer is looked up by its DN");
+    Assertions.assertEquals(List.of(sub), builder.leaves(), "the sub CA is the only leaf");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void rejectsChainOutsideOfPool()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var rootKey = TestCertificates.keyPair();
+    final var root = TestCertificates.builder(ROOT_DN, rootKey).ca(1, CA_USAGE).build();
+    final var builder = CertificateChainBuilder.of(List.of(root));
+
+    final var selfSigned =
+        TestCertificates.builder("CN=Leaf,O=SM-PKI-DE,C=DE", TestCertificates.keyPair())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build();
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> builder.build(selfSigned),
+        "a self-signed certificate outside of the pool is not a root");
+
+    // a forged root with the name of the trusted one
+    final var foreignKey = TestCertificates.keyPair();
+    final var foreign = TestCertificates.builder(ROOT_DN, foreignKey).ca(1, CA_USAGE).build();
+    final var leaf =
+        TestCertificates.builder("CN=Leaf,O=SM-PKI-DE,C=DE", TestCertificates.keyPair())
+            .issuedBy(foreign, foreignKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build();
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> builder.build(leaf, foreign),
+        "a self-signed intermediate outside of the pool is not a root");
+  }
+}
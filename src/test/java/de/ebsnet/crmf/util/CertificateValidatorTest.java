@@ -0,0 +1,158 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class CertificateValidatorTest {
+  private static final String ROOT_DN = "CN=Root,O=SM-PKI-DE,C=DE";
+  private static final String SUB_DN = "CN=Sub,O=SM-PKI-DE,C=DE";
+  private static final String LEAF_DN = "CN=Leaf,O=SM-PKI-DE,C=DE";
+  private static final int CA_USAGE = KeyUsage.keyCertSign | KeyUsage.cRLSign;
+  private static final Optional<KeyUsage> SIGNATURE =
+      Optional.of(new KeyUsage(KeyUsage.digitalSignature));
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private final KeyPair rootKey;
+  private final X509Certificate root;
+  private final KeyPair subKey;
+
+  /* default */ CertificateValidatorTest()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    this.rootKey = TestCertificates.keyPair();
+    this.root = TestCertificates.builder(ROOT_DN, this.rootKey).ca(1, CA_USAGE).build();
+    this.subKey = TestCertificates.keyPair();
+  }
+
+  private X509Certificate sub(final int pathLength, final int usage)
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    return TestCertificates.builder(SUB_DN, this.subKey)
+        .issuedBy(this.root, this.rootKey.getPrivate())
+        .ca(pathLength, usage)
+        .build();
+  }
+
+  private TestCertificates.Builder leaf(final X509Certificate issuer)
+      throws GeneralSecurityException {
+    return TestCertificates.builder(LEAF_DN, TestCertificates.keyPair())
+        .issuedBy(issuer, this.subKey.getPrivate());
+  }
+
+  private static void assertInvalid(final String message, final X509Certificate... chain) {
+    final var validator = new CertificateValidator(new SignatureCache());
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> validator.validate(new Date(), SIGNATURE, chain),
+        message);
+  }
+
+  @Test
+  /* default */ void acceptsValidChain()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var sub = sub(0, CA_USAGE);
+    final var leaf = leaf(sub).keyUsage(KeyUsage.digitalSignature).build();
+    final var validator = new CertificateValidator(new SignatureCache());
+    Assertions.assertDoesNotThrow(
+        () -> validator.validate(new Date(), SIGNATURE, leaf, sub, this.root),
+        "a complete chain with matching constraints is valid");
+  }
+
+  @Test
+  /* default */ void rejectsExpiredCertificate()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var sub = sub(0, CA_USAGE);
+    final var now = Instant.now();
+    final var leaf =
+        leaf(sub)
+            .keyUsage(KeyUsage.digitalSignature)
+            .validity(now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)))
+            .build();
+    assertInvalid("expired certificates are rejected", leaf, sub, this.root);
+  }
+
+  @Test
+  /* default */ void rejectsCAWithoutKeyCertSign()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var sub = sub(0, KeyUsage.digitalSignature);
+    final var leaf = leaf(sub).keyUsage(KeyUsage.digitalSignature).build();
+    assertInvalid("a CA must be allowed to sign certificates", leaf, sub, this.root);
+  }
+
+  @Test
+  /* default */ void rejectsPathLengthViolation()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var sub = sub(0, CA_USAGE);
+    // a second level SubCA below a SubCA with path length 0
+    final var nestedKey = TestCertificates.keyPair();
+    final var nested =
+        TestCertificates.builder("CN=Nested,O=SM-PKI-DE,C=DE", nestedKey)
+            .issuedBy(sub, this.subKey.getPrivate())
+            .ca(0, CA_USAGE)
+            .build();
+    final var leaf =
+        TestCertificates.builder(LEAF_DN, TestCertificates.keyPair())
+            .issuedBy(nested, nestedKey.getPrivate())
+            .keyUsage(KeyUsage.digitalSignature)
+            .build();
+    assertInvalid("path length constraints are enforced", leaf, nested, sub, this.root);
+  }
+
+  @Test
+  /* default */ void rejectsLeafWithWrongKeyUsage()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var sub = sub(0, CA_USAGE);
+    final var leaf = leaf(sub).keyUsage(KeyUsage.keyEncipherment | KeyUsage.keyAgreement).build();
+    assertInvalid("the end entity must have the required key usage", leaf, sub, this.root);
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void cachesVerifiedSignatures()
+      throws GeneralSecurityException, OperatorCreationException, IOException,
+          InvalidCertificateChain {
+    final var sub = sub(0, CA_USAGE);
+    final var signatures = new SignatureCache();
+    signatures.verify(sub, this.root);
+    Assertions.assertEquals(1, signatures.size(), "a verified signature is cached");
+    signatures.verify(sub, this.root);
+    Assertions.assertEquals(1, signatures.size(), "the second verification is a cache hit");
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> signatures.verify(this.root, sub),
+        "a signature made with another key does not verify");
+    Assertions.assertEquals(1, signatures.size(), "failed verifications are not cached");
+  }
+
+  @Test
+  /* default */ void trustChainRejectsExpiredLeaf()
+      throws GeneralSecurityException, OperatorCreationException, IOException,
+          InvalidCertificateChain {
+    final var sub = sub(0, CA_USAGE);
+    final var trust = TrustChain.of(Set.of(sub, this.root));
+    final var now = Instant.now();
+    final var leaf =
+        leaf(sub)
+            .keyUsage(KeyUsage.digitalSignature)
+            .validity(now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)))
+            .build();
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> trust.leafCertificates(leaf),
+        "renewals are validated like audits");
+  }
+}
@@ -0,0 +1,118 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class HandshakeMetricsTest {
+  private static final String KEY = "/keyAndCert/a.key";
+  private static final String CERT = "/keyAndCert/a.cer";
+  private static final String TLS12 = "TLSv1.2";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private Path resource(final String name) throws URISyntaxException {
+    return Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+  }
+
+  private static SSLSession session(final long created, final String protocol) {
+    return (SSLSession)
+        Proxy.newProxyInstance(
+            SSLSession.class.getClassLoader(),
+            new Class<?>[] {SSLSession.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "getCreationTime" -> created;
+                  case "getProtocol" -> protocol;
+                  default -> throw new UnsupportedOperationException(method.getName());
+                });
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void classifiesBySessionCreation() {
+    final var metrics = new HandshakeMetrics();
+    metrics.record(session(1000, TLS12), 1000);
+    metrics.record(session(999, TLS12), 1000);
+    Assertions.assertEquals(1, metrics.full(), "a session created with the socket is new");
+    Assertions.assertEquals(1, metrics.resumed(), "an older session was taken from the cache");
+    Assertions.assertEquals(
+        Map.of(TLS12, 2L), metrics.protocols(), "handshakes are counted per protocol");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void countsResumedHandshakesOfSockets()
+      throws IOException, GeneralSecurityException, URISyntaxException, InterruptedException {
+    final var context =
+        SslContextCache.get(resource(KEY), Optional.empty(), resource(CERT), TlsProfile.TLS12);
+    final var metrics = new HandshakeMetrics();
+    final var factory = new MeteredSocketFactory(context.getSocketFactory(), metrics);
+    try (var server =
+        (SSLServerSocket)
+            context
+                .getServerSocketFactory()
+                .createServerSocket(0, 2, InetAddress.getLoopbackAddress())) {
+      final var accepting = CompletableFuture.runAsync(() -> accept(server, 2));
+      final var first = handshake(factory, server.getLocalPort());
+      // session creation times have a resolution of milliseconds
+      while (System.currentTimeMillis() <= first.getCreationTime()) {
+        Thread.onSpinWait();
+      }
+      handshake(factory, server.getLocalPort());
+      accepting.join();
+    }
+    // handshake listeners are notified asynchronously
+    final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (metrics.full() + metrics.resumed() < 2 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assertions.assertEquals(1, metrics.full(), "the first connection makes a full handshake");
+    Assertions.assertEquals(1, metrics.resumed(), "the second connection resumes the session");
+    Assertions.assertEquals(
+        Map.of(TLS12, 2L), metrics.protocols(), "the TLS12 profile negotiates TLS 1.2");
+  }
+
+  private static SSLSession handshake(final SSLSocketFactory factory, final int port)
+      throws IOException {
+    // sessions are cached by peer host and port, an address alone does not name the peer
+    final var host = InetAddress.getLoopbackAddress().getHostAddress();
+    try (var socket = (SSLSocket) factory.createSocket(host, port)) {
+      socket.startHandshake();
+      socket.getOutputStream().write(0);
+      socket.getOutputStream().flush();
+      return socket.getSession();
+    }
+  }
+
+  private static void accept(final SSLServerSocket server, final int connections) {
+    try {
+      for (int idx = 0; idx < connections; idx++) {
+        try (var socket = server.accept()) {
+          // reading runs the handshake of the server
+          socket.getInputStream().read();
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* default */ final class KeyPairCacheTest {
+  private static final char[] PASS = "pass".toCharArray();
+  private static final String CURVE = "brainpoolP256r1";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private Path write(final String name) throws GeneralSecurityException, IOException {
+    final var random = Drbg.HASH_SHA512.build();
+    final var path = this.dir.resolve(name);
+    KeyPairUtil.writeEncryptedKeyPair(
+        path, KeyPairUtil.generateKeyPair(CURVE, random), PASS, random);
+    return path;
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void cachesDecryptedKeys() throws GeneralSecurityException, IOException {
+    final var path = write("key.pem");
+    try (var cache = new KeyPairCache(2, Duration.ofMinutes(1))) {
+      final var loaded = cache.load(path, Optional.of(PASS));
+      final var cached = cache.load(path, Optional.of(PASS));
+      Assertions.assertEquals(loaded.getPrivate(), cached.getPrivate(), "the key is cached");
+      Assertions.assertEquals(1, cache.size(), "the key is only cached once");
+      Assertions.assertThrows(
+          IOException.class,
+          () -> cache.load(path, Optional.of("wrong".toCharArray())),
+          "a different password does not hit the cache");
+    }
+  }
+
+  @Test
+  /* default */ void evictsLeastRecentlyUsed() throws GeneralSecurityException, IOException {
+    try (var cache = new KeyPairCache(2, Duration.ofMinutes(1))) {
+      for (final var name : new String[] {"a.pem", "b.pem", "c.pem"}) {
+        cache.load(write(name), Optional.of(PASS));
+      }
+      Assertions.assertEquals(2, cache.size(), "the cache is bounded");
+    }
+  }
+}
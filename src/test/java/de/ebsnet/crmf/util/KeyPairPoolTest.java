@@ -0,0 +1,40 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class KeyPairPoolTest {
+  private static final String CURVE = "brainpoolP256r1";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @Test
+  /* default */ void propagatesGeneratorFailure() throws GeneralSecurityException {
+    final var broken =
+        new SecureRandom() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          public void nextBytes(final byte[] bytes) {
+            throw new IllegalStateException("entropy source failed");
+          }
+        };
+    try (var pool = new KeyPairPool(CURVE, broken, 2, 1)) {
+      Assertions.assertThrows(
+          GeneralSecurityException.class, pool::take, "a failed generator fails the consumer");
+    }
+  }
+
+  @Test
+  /* default */ void closedPoolDoesNotBlock() throws GeneralSecurityException {
+    final var pool = new KeyPairPool(CURVE, Drbg.HASH_SHA512.build(), 1, 1);
+    pool.close();
+    Assertions.assertThrows(
+        IllegalStateException.class, pool::take, "a closed pool does not wait for key pairs");
+  }
+}
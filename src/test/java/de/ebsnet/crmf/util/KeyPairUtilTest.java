@@ -0,0 +1,41 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class KeyPairUtilTest {
+  private static final char[] PASS = "pass".toCharArray();
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void encryptedKeyRoundTrip() throws GeneralSecurityException, IOException {
+    final var random = Drbg.HASH_SHA512.build();
+    final var keyPair = KeyPairUtil.generateKeyPair("brainpoolP256r1", random);
+    final var dir = Files.createTempDirectory("keygen_test");
+    final var path = dir.resolve("key.pem");
+    try {
+      KeyPairUtil.writeEncryptedKeyPair(path, keyPair, PASS, random);
+      final var loaded = KeyPairUtil.loadKeyPair(path, Optional.of(PASS));
+
+      Assertions.assertEquals(keyPair.getPublic(), loaded.getPublic(), "public key round trip");
+      Assertions.assertEquals(keyPair.getPrivate(), loaded.getPrivate(), "private key round trip");
+      Assertions.assertThrows(
+          FileAlreadyExistsException.class,
+          () -> KeyPairUtil.writeEncryptedKeyPair(path, keyPair, PASS, random),
+          "existing keys are never overwritten");
+    } finally {
+      Files.deleteIfExists(path);
+      Files.deleteIfExists(dir);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* default */ final class KeyStoreUpdaterTest {
+  private static final String KEY = "/keyAndCert/a.key";
+  private static final String CERT = "/keyAndCert/a.cer";
+  private static final char[] PASS = "pass".toCharArray();
+  private static final Duration WINDOW = Duration.ofMillis(200);
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private Path resource(final String name) throws URISyntaxException {
+    return Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+  }
+
+  private static KeyStore load(final Path path) throws IOException, GeneralSecurityException {
+    final var keyStore = KeyStore.getInstance("PKCS12");
+    try (var stream = Files.newInputStream(path)) {
+      keyStore.load(stream, PASS);
+    }
+    return keyStore;
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void coalescesChanges()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    final var key = KeyPairUtil.loadKeyPair(resource(KEY), Optional.empty()).getPrivate();
+    final var cert = X509Util.loadCertificateChain(resource(CERT));
+    final var path = this.dir.resolve("keystore.p12");
+    final var updater = KeyStoreUpdater.of(path, PASS, WINDOW, 1);
+
+    CompletableFuture.allOf(updater.add("a", key, cert), updater.add("b", key, cert)).join();
+    Assertions.assertEquals(2, load(path).size(), "changes of a window are written together");
+    Assertions.assertFalse(
+        Files.exists(path.resolveSibling("keystore.p12.1")), "a single write has no generation");
+
+    updater.remove("a").join();
+    Assertions.assertEquals(1, load(path).size(), "aliases are removed");
+    Assertions.assertEquals(
+        2, load(path.resolveSibling("keystore.p12.1")).size(), "the previous version is kept");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void writesWithProfile()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    final var key = KeyPairUtil.loadKeyPair(resource(KEY), Optional.empty()).getPrivate();
+    final var cert = X509Util.loadCertificateChain(resource(CERT));
+    final var path = this.dir.resolve("fast.p12");
+    final var existing = new PKCS12Builder(PASS, PKCS12Profile.PBES2_AES256, 1);
+    existing.addCertificate("ca", cert[0]);
+    Files.write(path, existing.build());
+
+    KeyStoreUpdater.of(path, PASS, WINDOW, 0, PKCS12Profile.PBES2_AES256, 1)
+        .add("a", key, cert)
+        .join();
+    final var keyStore = load(path);
+    Assertions.assertEquals(key, keyStore.getKey("a", PASS), "the key can be decrypted");
+    Assertions.assertTrue(
+        keyStore.isCertificateEntry("ca"), "trusted certificates are kept as trusted entries");
+  }
+
+  @Test
+  /* default */ void rejectsConflictingSettings() {
+    final var path = this.dir.resolve("shared.p12");
+    KeyStoreUpdater.of(path, PASS, WINDOW, 1);
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> KeyStoreUpdater.of(path, PASS, WINDOW, 2),
+        "an updater in use is not silently reconfigured");
+  }
+}
@@ -0,0 +1,57 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidManifest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class ManifestReaderTest {
+  private static final Path MANIFEST = Path.of("manifests", "batch.csv");
+
+  @Test
+  /* default */ void splitsQuotedFields() throws InvalidManifest {
+    final var fields =
+        ManifestReader.parseLine(MANIFEST, 1, "a,\"Street 1, Berlin\",\"say \"\"hi\"\"\",");
+    Assertions.assertEquals(
+        List.of("a", "Street 1, Berlin", "say \"hi\"", ""), fields, "quoted fields are unescaped");
+  }
+
+  @Test
+  /* default */ void rejectsUnterminatedQuote() {
+    Assertions.assertThrows(
+        InvalidManifest.class,
+        () -> ManifestReader.parseLine(MANIFEST, 1, "a,\"b"),
+        "unterminated quotes are an error");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void readsRowsByHeader() throws IOException, InvalidManifest {
+    final var dir = Files.createTempDirectory("manifest_test");
+    final var manifest = dir.resolve("batch.csv");
+    try {
+      Files.writeString(
+          manifest,
+          "# comment\nName,GLN,tls\n\nexample,1234,keys/tls.key\nother,5678,/abs/tls.key\n");
+      final var rows = ManifestReader.read(manifest);
+
+      Assertions.assertEquals(2, rows.size(), "comments and empty lines are skipped");
+      Assertions.assertEquals("1234", rows.get(0).required("gln"), "columns are case insensitive");
+      Assertions.assertEquals(4, rows.get(0).line(), "line numbers refer to the file");
+      Assertions.assertEquals(
+          dir.resolve("keys/tls.key"),
+          rows.get(0).requiredPath("tls"),
+          "relative paths are resolved against the manifest");
+      Assertions.assertEquals(
+          Path.of("/abs/tls.key"), rows.get(1).requiredPath("tls"), "absolute paths are kept");
+      Assertions.assertThrows(
+          InvalidManifest.class, () -> rows.get(0).required("uri"), "missing columns fail");
+    } finally {
+      Files.deleteIfExists(manifest);
+      Files.deleteIfExists(dir);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class PemKeyManagerTest {
+  private static final String ALIAS = "tls";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private final PemKeyManager keyManager;
+  private final X509Certificate certificate;
+
+  /* default */ PemKeyManagerTest()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    // keys of the BouncyCastle ECDSA key factory, as read from PEM files
+    final var gen = KeyPairGenerator.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+    gen.initialize(new ECGenParameterSpec("brainpoolP256r1"));
+    final var keyPair = gen.generateKeyPair();
+    this.certificate = TestCertificates.builder("CN=TLS,O=SM-PKI-DE,C=DE", keyPair).build();
+    this.keyManager = new PemKeyManager(keyPair.getPrivate(), this.certificate);
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void mapsECDSAToEC() {
+    Assertions.assertEquals(
+        ALIAS, this.keyManager.chooseServerAlias("EC", null, null), "JSSE calls EC keys EC");
+    Assertions.assertEquals(
+        ALIAS,
+        this.keyManager.chooseClientAlias(new String[] {"EC_EC"}, null, null),
+        "key types with a signature algorithm of the issuer are matched by prefix");
+    Assertions.assertArrayEquals(
+        new String[] {ALIAS},
+        this.keyManager.getClientAliases("EC", null),
+        "the key is offered for EC");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void selectsAliasByKeyType() {
+    Assertions.assertEquals(
+        ALIAS,
+        this.keyManager.chooseClientAlias(new String[] {"RSA", "EC"}, null, null),
+        "the first matching key type selects the key");
+    Assertions.assertNull(
+        this.keyManager.chooseEngineServerAlias("RSA", null, null),
+        "the key is not offered for other key types");
+    Assertions.assertEquals(
+        0, this.keyManager.getServerAliases("RSA", null).length, "no aliases for other key types");
+    Assertions.assertArrayEquals(
+        new X509Certificate[] {this.certificate},
+        this.keyManager.getCertificateChain(ALIAS),
+        "the chain is returned for the alias");
+    Assertions.assertNull(this.keyManager.getPrivateKey("other"), "unknown aliases have no key");
+  }
+}
@@ -0,0 +1,128 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Objects;
+import java.util.Set;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class PkixTrustManagerTest {
+  private static final String ROOT = "/keyAndCert/a.cer";
+  private static final String TLS = "/certType/tls.cer";
+  private static final String AUTH_TYPE = "ECDHE_ECDSA";
+  private static final String HOST = "subca.example.com";
+
+  static {
+    CSRGenerator.init();
+  }
+
+  private final Path root;
+  private final Path tls;
+
+  /* default */ PkixTrustManagerTest() throws URISyntaxException {
+    this.root = Path.of(Objects.requireNonNull(getClass().getResource(ROOT)).toURI());
+    this.tls = Path.of(Objects.requireNonNull(getClass().getResource(TLS)).toURI());
+  }
+
+  @Test
+  /* default */ void acceptsTrustAnchor() throws CertificateException, IOException {
+    final var trustManager = PkixTrustManager.load(this.root);
+    final var chain = X509Util.loadCertificateChain(this.root);
+    Assertions.assertDoesNotThrow(
+        () -> trustManager.checkServerTrusted(chain, AUTH_TYPE),
+        "a trust anchor presented by the server is trusted");
+  }
+
+  @Test
+  /* default */ void rejectsCertificateFromOtherIssuer() throws CertificateException, IOException {
+    final var trustManager = PkixTrustManager.load(this.root);
+    final var chain = X509Util.loadCertificateChain(this.tls);
+    Assertions.assertThrows(
+        CertificateException.class,
+        () -> trustManager.checkServerTrusted(chain, AUTH_TYPE),
+        "the server certificate must be issued by a trust anchor");
+    Assertions.assertThrows(
+        CertificateException.class,
+        () -> trustManager.checkServerTrusted(chain, AUTH_TYPE),
+        "a rejected chain must not be cached");
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void rejectsCertificateForOtherHost()
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    final var caKeys = TestCertificates.keyPair();
+    final var ca =
+        TestCertificates.builder("CN=SubCA,O=SM-PKI-DE,C=DE", caKeys)
+            .ca(0, KeyUsage.keyCertSign)
+            .build();
+    final var trustManager = new PkixTrustManager(Set.of(ca));
+    final var engine = engine(HOST);
+
+    final var subca = server(ca, caKeys.getPrivate(), HOST, KeyPurposeId.id_kp_serverAuth);
+    Assertions.assertDoesNotThrow(
+        () -> trustManager.checkServerTrusted(new X509Certificate[] {subca}, AUTH_TYPE, engine),
+        "the certificate is issued for the host");
+
+    final var other =
+        server(ca, caKeys.getPrivate(), "other.example.com", KeyPurposeId.id_kp_serverAuth);
+    Assertions.assertThrows(
+        CertificateException.class,
+        () -> trustManager.checkServerTrusted(new X509Certificate[] {other}, AUTH_TYPE, engine),
+        "a validly chained certificate of another host is rejected");
+    Assertions.assertDoesNotThrow(
+        () ->
+            trustManager.checkServerTrusted(
+                new X509Certificate[] {other}, AUTH_TYPE, engine("other.example.com")),
+        "the validated chain is cached, but the host is checked again");
+
+    final var client = server(ca, caKeys.getPrivate(), HOST, KeyPurposeId.id_kp_clientAuth);
+    Assertions.assertThrows(
+        CertificateException.class,
+        () -> trustManager.checkServerTrusted(new X509Certificate[] {client}, AUTH_TYPE, engine),
+        "the certificate of a server must be issued for serverAuth");
+  }
+
+  private static X509Certificate server(
+      final X509Certificate ca,
+      final PrivateKey caKey,
+      final String host,
+      final KeyPurposeId purpose)
+      throws GeneralSecurityException, OperatorCreationException, IOException {
+    return TestCertificates.builder("CN=" + host + ",O=SM-PKI-DE,C=DE", TestCertificates.keyPair())
+        .issuedBy(ca, caKey)
+        .keyUsage(KeyUsage.digitalSignature)
+        .extension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(purpose))
+        .extension(
+            Extension.subjectAlternativeName,
+            false,
+            new GeneralNames(new GeneralName(GeneralName.dNSName, host)))
+        .build();
+  }
+
+  /** A client engine that asks for HTTPS endpoint identification like HttpsURLConnection. */
+  private static SSLEngine engine(final String host) throws GeneralSecurityException {
+    final var engine = SSLContext.getDefault().createSSLEngine(host, 443);
+    engine.setUseClientMode(true);
+    final var params = engine.getSSLParameters();
+    params.setEndpointIdentificationAlgorithm("HTTPS");
+    engine.setSSLParameters(params);
+    return engine;
+  }
+}
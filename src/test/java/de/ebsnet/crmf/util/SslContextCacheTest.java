@@ -0,0 +1,55 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.CSRGenerator;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Objects;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/* default */ final class SslContextCacheTest {
+  private static final String KEY = "/keyAndCert/a.key";
+  private static final String CERT = "/keyAndCert/a.cer";
+  private static final char[] PASS = "pass".toCharArray();
+
+  static {
+    CSRGenerator.init();
+  }
+
+  @TempDir private Path dir;
+
+  private Path copy(final String name) throws IOException, URISyntaxException {
+    final var source = Path.of(Objects.requireNonNull(getClass().getResource(name)).toURI());
+    return Files.copy(source, this.dir.resolve(source.getFileName()));
+  }
+
+  @Test
+  @SuppressWarnings("PMD.UnitTestContainsTooManyAsserts")
+  /* default */ void cachesByContent()
+      throws IOException, GeneralSecurityException, URISyntaxException {
+    final var key = copy(KEY);
+    final var cert = copy(CERT);
+    final var plain = SslContextCache.get(key, Optional.empty(), cert, TlsProfile.TLS13);
+    Assertions.assertSame(
+        plain,
+        SslContextCache.get(key, Optional.empty(), cert, TlsProfile.TLS13),
+        "the same files share a context");
+
+    // the password of an unencrypted key is not used, but part of the identity of the context
+    final var withPassword = SslContextCache.get(key, Optional.of(PASS), cert, TlsProfile.TLS13);
+    Assertions.assertNotSame(plain, withPassword, "another password creates another context");
+
+    final var keyPair = KeyPairUtil.loadKeyPair(key, Optional.empty());
+    Files.delete(key);
+    KeyPairUtil.writeEncryptedKeyPair(key, keyPair, PASS, Drbg.HASH_SHA512.build());
+    Assertions.assertNotSame(
+        withPassword,
+        SslContextCache.get(key, Optional.of(PASS), cert, TlsProfile.TLS13),
+        "a changed key file creates another context");
+  }
+}
@@ -0,0 +1,188 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.data.CSRMetadata;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Certificates generated on the fly for tests that need complete chains. A certificate is
+ * self-signed and valid for a day unless {@link Builder#issuedBy} or {@link Builder#validity} is
+ * called.
+ */
+public final class TestCertificates {
+  private static final AtomicLong SERIAL = new AtomicLong(1);
+
+  private TestCertificates() {}
+
+  /**
+   * A brainpoolP256r1 key pair.
+   *
+   * @return
+   * @throws GeneralSecurityException
+   */
+  public static KeyPair keyPair() throws GeneralSecurityException {
+    final var gen = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+    gen.initialize(new ECGenParameterSpec("brainpoolP256r1"));
+    return gen.generateKeyPair();
+  }
+
+  /**
+   * Start a certificate.
+   *
+   * @param subject
+   * @param keyPair key pair of the subject
+   * @return
+   */
+  public static Builder builder(final String subject, final KeyPair keyPair) {
+    return new Builder(new X500Name(subject), keyPair);
+  }
+
+  /**
+   * Start the certificate of a market participant, with the subject and subjectAltNames that
+   * {@link CSRMetadata#fromCertificate} reads.
+   *
+   * @param metadata
+   * @param keyPair key pair of the subject
+   * @return
+   */
+  public static Builder builder(final CSRMetadata metadata, final KeyPair keyPair) {
+    return new Builder(metadata.toSubject(), keyPair)
+        .extension(
+            Extension.subjectAlternativeName,
+            false,
+            new GeneralNames(
+                new GeneralName[] {
+                  new GeneralName(
+                      GeneralName.uniformResourceIdentifier, metadata.uri().toString()),
+                  new GeneralName(GeneralName.rfc822Name, metadata.email())
+                }));
+  }
+
+  /** Builder of a single certificate. */
+  public static final class Builder {
+    private final X500Name subject;
+    private final KeyPair keyPair;
+    private final List<Ext> extensions = new ArrayList<>();
+    private X509Certificate issuer;
+    private PrivateKey signer;
+    private Instant notBefore = Instant.now().minus(Duration.ofHours(1));
+    private Instant notAfter = Instant.now().plus(Duration.ofDays(1));
+    private boolean keyIdentifiers = true;
+
+    private Builder(final X500Name subject, final KeyPair keyPair) {
+      this.subject = subject;
+      this.keyPair = keyPair;
+      this.signer = keyPair.getPrivate();
+    }
+
+    public Builder issuedBy(final X509Certificate issuerCert, final PrivateKey issuerKey) {
+      this.issuer = issuerCert;
+      this.signer = issuerKey;
+      return this;
+    }
+
+    public Builder validity(final Instant from, final Instant until) {
+      this.notBefore = from;
+      this.notAfter = until;
+      return this;
+    }
+
+    /**
+     * Make the certificate a CA.
+     *
+     * @param pathLength maximum number of CA certificates below this one
+     * @param usage keyUsage flags, e.g. {@link KeyUsage#keyCertSign}
+     * @return
+     */
+    public Builder ca(final int pathLength, final int usage) {
+      return extension(Extension.basicConstraints, true, new BasicConstraints(pathLength))
+          .keyUsage(usage);
+    }
+
+    public Builder keyUsage(final int usage) {
+      return extension(Extension.keyUsage, true, new KeyUsage(usage));
+    }
+
+    public Builder extension(
+        final ASN1ObjectIdentifier oid, final boolean critical, final ASN1Encodable value) {
+      this.extensions.add(new Ext(oid, critical, value));
+      return this;
+    }
+
+    /**
+     * Leave out the SubjectKeyIdentifier and AuthorityKeyIdentifier, so the issuer can only be
+     * found by its DN.
+     *
+     * @return
+     */
+    public Builder withoutKeyIdentifiers() {
+      this.keyIdentifiers = false;
+      return this;
+    }
+
+    public X509Certificate build()
+        throws GeneralSecurityException, OperatorCreationException, CertIOException {
+      final var builder =
+          new JcaX509v3CertificateBuilder(
+              this.issuer == null
+                  ? this.subject
+                  : X500Name.getInstance(this.issuer.getSubjectX500Principal().getEncoded()),
+              BigInteger.valueOf(SERIAL.getAndIncrement()),
+              Date.from(this.notBefore),
+              Date.from(this.notAfter),
+              this.subject,
+              this.keyPair.getPublic());
+      for (final var ext : this.extensions) {
+        builder.addExtension(ext.oid(), ext.critical(), ext.value());
+      }
+      if (this.keyIdentifiers) {
+        final var utils = new JcaX509ExtensionUtils();
+        builder.addExtension(
+            Extension.subjectKeyIdentifier,
+            false,
+            utils.createSubjectKeyIdentifier(this.keyPair.getPublic()));
+        builder.addExtension(
+            Extension.authorityKeyIdentifier,
+            false,
+            this.issuer == null
+                ? utils.createAuthorityKeyIdentifier(this.keyPair.getPublic())
+                : utils.createAuthorityKeyIdentifier(this.issuer));
+      }
+      return new JcaX509CertificateConverter()
+          .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+          .getCertificate(
+              builder.build(
+                  new JcaContentSignerBuilder("SHA256withECDSA")
+                      .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                      .build(this.signer)));
+    }
+  }
+
+  private record Ext(ASN1ObjectIdentifier oid, boolean critical, ASN1Encodable value) {}
+}
@@ -0,0 +1,53 @@
+package de.ebsnet.crmf.util;
+
+import de.ebsnet.crmf.exception.InvalidCertificateChain;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.security.cert.CertificateException;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/* default */ final class TrustChainTest {
+  private static final String ROOT = "/keyAndCert/a.cer";
+  private static final String SIG = "/certType/sig.cer";
+
+  private final Path root;
+  private final Path sig;
+
+  /* default */ TrustChainTest() throws URISyntaxException {
+    this.root = Path.of(Objects.requireNonNull(getClass().getResource(ROOT)).toURI());
+    this.sig = Path.of(Objects.requireNonNull(getClass().getResource(SIG)).toURI());
+  }
+
+  @Test
+  /* default */ void rejectsChainWithoutRoot() {
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> TrustChain.load(this.sig),
+        "a trust chain must end with a root certificate");
+  }
+
+  @Test
+  /* default */ void rejectsLeafFromOtherIssuer()
+      throws CertificateException, IOException, InvalidCertificateChain {
+    final var trust = TrustChain.load(this.root, this.root);
+    final var leaf = X509Util.loadCertificateChain(this.sig);
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> trust.leafCertificates(leaf),
+        "the previous certificate must be issued by the trust chain");
+  }
+
+  @Test
+  /* default */ void rejectsLeafInsideTrustChain()
+      throws CertificateException, IOException, InvalidCertificateChain {
+    final var trust = TrustChain.load(this.root);
+    final var leaf = X509Util.loadCertificateChain(this.root);
+    Assertions.assertThrows(
+        InvalidCertificateChain.class,
+        () -> trust.leafCertificates(leaf),
+        "the previous certificate cannot be part of the trust chain");
+  }
+}